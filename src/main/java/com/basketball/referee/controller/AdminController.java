@@ -29,9 +29,11 @@ import com.basketball.referee.model.Referee;
 import com.basketball.referee.model.Tournament;
 import com.basketball.referee.model.User;
 import com.basketball.referee.service.CourtService;
+import com.basketball.referee.service.FixtureService;
 import com.basketball.referee.service.GradeService;
 import com.basketball.referee.service.MatchAssignmentService;
 import com.basketball.referee.service.MatchService;
+import com.basketball.referee.service.NotificationDispatcher;
 import com.basketball.referee.service.RefereeService;
 import com.basketball.referee.service.TournamentService;
 import com.basketball.referee.service.UserService;
@@ -58,12 +60,18 @@ public class AdminController {
     @Autowired
     private MatchService matchService;
 
+    @Autowired
+    private FixtureService fixtureService;
+
     @Autowired
     private MatchAssignmentService assignmentsService;
     
     @Autowired
     private GradeService gradeService;
 
+    @Autowired
+    private NotificationDispatcher notificationDispatcher;
+
     // Dashboard
     @GetMapping("/dashboard")
     public String dashboard(Model model) {
@@ -102,6 +110,13 @@ public class AdminController {
         return "admin/dashboard";
     }
 
+    // Delivery counters of the notification outbox, for monitoring
+    @GetMapping("/notifications/metrics")
+    @ResponseBody
+    public ResponseEntity<NotificationDispatcher.Metrics> notificationMetrics() {
+        return ResponseEntity.ok(notificationDispatcher.getMetrics());
+    }
+
     // CRUD referees
     @GetMapping("/referees")
     public String listReferees(@RequestParam(required = false) String search,
@@ -336,6 +351,62 @@ public class AdminController {
         return "admin/tournaments/view";
     }
 
+    @GetMapping("/tournaments/{id}/fixture")
+    public String fixtureForm(@PathVariable Long id, Model model) {
+        Optional<Tournament> tournamentOpt = tournamentService.findById(id);
+        if (tournamentOpt.isEmpty()) {
+            return "redirect:/admin/tournaments";
+        }
+
+        FixtureService.FixtureRequest request = new FixtureService.FixtureRequest();
+        request.setStartDate(tournamentOpt.get().getStartDate());
+        request.setEndDate(tournamentOpt.get().getEndDate());
+        model.addAttribute("tournament", tournamentOpt.get());
+        model.addAttribute("fixture", request);
+        model.addAttribute("courts", courtService.findActive());
+        model.addAttribute("formats", FixtureService.Format.values());
+        model.addAttribute("title", "Generar Fixture");
+        return "admin/tournaments/fixture";
+    }
+
+    @PostMapping("/tournaments/{id}/fixture")
+    public String generateFixture(@PathVariable Long id,
+                                  @ModelAttribute("fixture") FixtureService.FixtureRequest request,
+                                  Model model,
+                                  RedirectAttributes redirectAttributes) {
+        try {
+            FixtureService.FixtureResult fixtureResult = fixtureService.generate(id, request);
+            redirectAttributes.addFlashAttribute("fixtureResult", fixtureResult);
+            redirectAttributes.addFlashAttribute("successMessage",
+                    "Fixture generado: " + fixtureResult.getGenerated() + " matches programados");
+            return "redirect:/admin/tournaments/" + id;
+        } catch (Exception e) {
+            Optional<Tournament> tournamentOpt = tournamentService.findById(id);
+            if (tournamentOpt.isEmpty()) {
+                return "redirect:/admin/tournaments";
+            }
+            model.addAttribute("errorMessage", "Error al generar fixture: " + e.getMessage());
+            model.addAttribute("tournament", tournamentOpt.get());
+            model.addAttribute("courts", courtService.findActive());
+            model.addAttribute("formats", FixtureService.Format.values());
+            model.addAttribute("title", "Generar Fixture");
+            return "admin/tournaments/fixture";
+        }
+    }
+
+    @GetMapping("/tournaments/{id}/conflicts")
+    public String tournamentConflicts(@PathVariable Long id, Model model) {
+        Optional<Tournament> tournamentOpt = tournamentService.findById(id);
+        if (tournamentOpt.isEmpty()) {
+            return "redirect:/admin/tournaments";
+        }
+
+        model.addAttribute("tournament", tournamentOpt.get());
+        model.addAttribute("conflicts", matchService.findCourtConflicts(id));
+        model.addAttribute("title", "Conflictos de Courts");
+        return "admin/tournaments/conflicts";
+    }
+
     @GetMapping("/tournaments/{id}/edit")
     public String editTournament(@PathVariable Long id, Model model) {
         Optional<Tournament> tournamentOpt = tournamentService.findById(id);
@@ -3,8 +3,23 @@ package com.basketball.referee.controller;
 import com.basketball.referee.model.*;
 import com.basketball.referee.service.*;
 import com.basketball.referee.service.SettlementService.SettlementData;
+import com.basketball.referee.service.SettlementService.SettlementSummary;
+import com.basketball.referee.service.SettlementRunService.SettlementRun;
+import com.basketball.referee.service.FinancialRollupService.FinancialDashboard;
+import com.basketball.referee.service.FeeSimulationService.ScenarioResult;
+import com.basketball.referee.service.FeeSimulationService.SimulationRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -12,9 +27,14 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
+import java.security.Principal;
+import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import java.math.BigDecimal;
 
 @Controller
@@ -28,8 +48,23 @@ public class FinancialController {
     @Autowired
     private SettlementService settlementService;
 
-//  @Autowired
-//  private PdfService pdfService;
+    @Autowired
+    private SettlementLedgerService settlementLedgerService;
+
+    @Autowired
+    private SettlementSnapshotService settlementSnapshotService;
+
+    @Autowired
+    private SettlementRunService settlementRunService;
+
+    @Autowired
+    private SettlementExportService settlementExportService;
+
+    @Autowired
+    private PdfRenderService pdfRenderService;
+
+    @Autowired
+    private FinancialRollupService financialRollupService;
 
     @Autowired
     private TournamentService tournamentService;
@@ -37,9 +72,18 @@ public class FinancialController {
     @Autowired
     private RefereeService refereeService;
 
+    @Autowired
+    private FeeSimulationService feeSimulationService;
+
     // Dashboard
     @GetMapping("/dashboard")
     public String dashboard(Model model) {
+        FinancialDashboard dashboard = financialRollupService.getDashboard();
+        Map<Long, String> tournamentNames = tournamentService.findAll().stream()
+            .collect(Collectors.toMap(Tournament::getId, Tournament::getName));
+
+        model.addAttribute("dashboard", dashboard);
+        model.addAttribute("tournamentNames", tournamentNames);
         model.addAttribute("title", "Dashboard Financiero");
         return "admin/financial/dashboard";
     }
@@ -49,18 +93,14 @@ public class FinancialController {
     public String listFees(@RequestParam(required = false) String search,
                              @RequestParam(required = false) String tournament,
                              @RequestParam(required = false) String rank,
+                             @PageableDefault(size = 25, sort = "id") Pageable pageable,
                              Model model) {
-        List<Fee> fees;
-        
-        if (search != null || tournament != null || rank != null) {
-            fees = feeService.findByFilters(search, tournament, rank);
-        } else {
-            fees = feeService.findAll();
-        }
+        Page<Fee> page = feeService.findByFilters(search, tournament, rank, pageable);
         
         List<Tournament> tournaments = tournamentService.findAll();
         
-        model.addAttribute("fees", fees);
+        model.addAttribute("fees", page.getContent());
+        model.addAttribute("page", page);
         model.addAttribute("tournaments", tournaments);
         model.addAttribute("rankes", Referee.Rank.values());
         model.addAttribute("title", "Gestión de Fees");
@@ -124,6 +164,7 @@ public class FinancialController {
     public String updateFee(@PathVariable Long id,
                               @Valid Fee fee,
                               BindingResult result,
+                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate versionFrom,
                               Model model,
                               RedirectAttributes redirectAttributes) {
         
@@ -136,7 +177,7 @@ public class FinancialController {
         }
 
         try {
-            feeService.update(id, fee);
+            feeService.update(id, fee, versionFrom);
             redirectAttributes.addFlashAttribute("successMessage", "Fee actualizada exitosamente");
             return "redirect:/admin/financial/fees";
         } catch (Exception e) {
@@ -149,6 +190,50 @@ public class FinancialController {
         }
     }
 
+    @PostMapping("/fees/generate")
+    public String generateFeeMatrix(@RequestParam Long tournamentId,
+                                    @RequestParam BigDecimal amountTournament,
+                                    RedirectAttributes redirectAttributes) {
+        try {
+            int created = feeService.generateMatrix(tournamentId, amountTournament);
+            redirectAttributes.addFlashAttribute("successMessage",
+                created == 0 ? "El tournament ya tiene todas las fees" : "Se crearon " + created + " fees");
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Error al generar fees: " + e.getMessage());
+        }
+        return "redirect:/admin/financial/fees";
+    }
+
+    // The page builds the scenarios and posts them as JSON to simulateFees, with the CSRF header
+    @GetMapping("/fees/simulate")
+    public String simulateFeesForm(Model model) {
+        model.addAttribute("tournaments", tournamentService.findActive());
+        model.addAttribute("rankes", Referee.Rank.values());
+        model.addAttribute("roles", MatchAssignment.RefereeRole.values());
+        model.addAttribute("title", "Simulación de Fees");
+        return "admin/financial/fees/simulate";
+    }
+
+    @PostMapping("/fees/simulate")
+    @ResponseBody
+    public List<ScenarioResult> simulateFees(@RequestBody SimulationRequest request) {
+        return feeSimulationService.simulate(request.getStart(), request.getEnd(),
+            request.getScenarios() != null ? request.getScenarios() : List.of());
+    }
+
+    @PostMapping("/fees/simulate/refresh")
+    @ResponseBody
+    public Map<String, String> refreshFeeSimulation() {
+        feeSimulationService.refresh();
+        return Map.of("status", "ok");
+    }
+
+    @GetMapping("/fees/cache-stats")
+    @ResponseBody
+    public Map<String, Long> feeCacheStats() {
+        return feeService.getCacheStats();
+    }
+
     // Settlements
     @GetMapping("/settlements")
     public String settlements(Model model) {
@@ -158,10 +243,181 @@ public class FinancialController {
         return "admin/financial/settlements/index";
     }
 
+    @GetMapping("/settlements/summary")
+    public String settlementSummary(@RequestParam(required = false) String month,
+                                    @RequestParam(required = false) String year,
+                                    Model model) {
+
+        YearMonth yearMonth = YearMonth.now();
+        if (month != null && year != null) {
+            yearMonth = YearMonth.of(Integer.parseInt(year), Integer.parseInt(month));
+        }
+
+        List<SettlementSummary> summaries = settlementService.generateMonthlySummary(yearMonth);
+        BigDecimal totalAmount = summaries.stream()
+            .map(SettlementSummary::getTotalAmount)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        model.addAttribute("summaries", summaries);
+        model.addAttribute("totalAmount", totalAmount);
+        model.addAttribute("closed", settlementSnapshotService.isClosed(yearMonth));
+        model.addAttribute("yearMonth", yearMonth);
+        model.addAttribute("title", "Resumen Mensual de Settlements");
+        return "admin/financial/settlements/summary";
+    }
+
+    @GetMapping("/settlements/export")
+    public void exportSettlements(@RequestParam(required = false) String month,
+                                  @RequestParam(required = false) String year,
+                                  @RequestParam(required = false) Long tournament,
+                                  @RequestParam(defaultValue = "csv") String format,
+                                  HttpServletResponse response) throws IOException {
+        YearMonth yearMonth = null;
+        if (month != null && year != null) {
+            yearMonth = YearMonth.of(Integer.parseInt(year), Integer.parseInt(month));
+        }
+        if (yearMonth == null && tournament == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Debe indicar un mes o un tournament");
+            return;
+        }
+
+        SettlementExportService.Format exportFormat;
+        try {
+            exportFormat = SettlementExportService.Format.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Formato no soportado: " + format);
+            return;
+        }
+        String filename = "settlements"
+            + (yearMonth != null ? "-" + yearMonth : "")
+            + (tournament != null ? "-tournament-" + tournament : "")
+            + (exportFormat == SettlementExportService.Format.XLSX ? ".xlsx" : ".csv");
+
+        response.setContentType(exportFormat == SettlementExportService.Format.XLSX
+            ? "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"
+            : "text/csv; charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
+        settlementExportService.export(yearMonth, tournament, exportFormat, response.getOutputStream());
+    }
+
+    @PostMapping("/settlements/referee/{refereeId}/pdf")
+    public String renderSettlementPdf(@PathVariable Long refereeId,
+                                      @RequestParam Integer month,
+                                      @RequestParam Integer year,
+                                      RedirectAttributes redirectAttributes) {
+        PdfRenderService.RenderJob job = pdfRenderService.request(refereeId, YearMonth.of(year, month));
+        if (job.getState() == PdfRenderService.RenderState.FAILED) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Error al generar el PDF: " + job.getError());
+        } else {
+            redirectAttributes.addFlashAttribute("successMessage", "El PDF se está generando");
+        }
+        return "redirect:/admin/financial/settlements/referee/" + refereeId + "?month=" + month + "&year=" + year;
+    }
+
+    @GetMapping("/settlements/referee/{refereeId}/pdf/status")
+    @ResponseBody
+    public ResponseEntity<?> settlementPdfStatus(@PathVariable Long refereeId,
+                                                 @RequestParam Integer month,
+                                                 @RequestParam Integer year) {
+        return pdfRenderService.findJob(refereeId, YearMonth.of(year, month))
+            .<ResponseEntity<?>>map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/settlements/referee/{refereeId}/pdf")
+    public ResponseEntity<Resource> downloadSettlementPdf(@PathVariable Long refereeId,
+                                                          @RequestParam Integer month,
+                                                          @RequestParam Integer year) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        return pdfRenderService.findOutput(refereeId, yearMonth)
+            .map(path -> ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"liquidacion-" + refereeId + "-" + yearMonth + ".pdf\"")
+                .<Resource>body(new FileSystemResource(path)))
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/settlements/pdf")
+    @ResponseBody
+    public Map<String, Object> renderAllSettlementPdfs(@RequestParam Integer month, @RequestParam Integer year) {
+        int queued = pdfRenderService.requestAll(YearMonth.of(year, month));
+        return Map.of("queued", queued);
+    }
+
+    @PostMapping("/settlements/close")
+    public String closeMonth(@RequestParam Integer month,
+                             @RequestParam Integer year,
+                             Principal principal,
+                             RedirectAttributes redirectAttributes) {
+        YearMonth yearMonth = YearMonth.of(year, month);
+        try {
+            int snapshots = settlementSnapshotService.closeMonth(yearMonth, principal != null ? principal.getName() : null);
+            redirectAttributes.addFlashAttribute("successMessage",
+                "Mes " + yearMonth + " cerrado con " + snapshots + " liquidaciones");
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Error al cerrar el mes: " + e.getMessage());
+        }
+        return "redirect:/admin/financial/settlements/summary?month=" + month + "&year=" + year;
+    }
+
+    @PostMapping("/settlements/runs")
+    @ResponseBody
+    public ResponseEntity<?> startSettlementRun(@RequestParam Integer month, @RequestParam Integer year) {
+        try {
+            return ResponseEntity.ok(settlementRunService.start(YearMonth.of(year, month)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error al iniciar la liquidación: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/settlements/runs")
+    @ResponseBody
+    public List<SettlementRun> settlementRuns() {
+        return settlementRunService.findAll();
+    }
+
+    @GetMapping("/settlements/runs/{runId}")
+    @ResponseBody
+    public ResponseEntity<?> settlementRun(@PathVariable String runId) {
+        return settlementRunService.findById(runId)
+            .<ResponseEntity<?>>map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/settlements/runs/{runId}/retry")
+    @ResponseBody
+    public ResponseEntity<?> retrySettlementRun(@PathVariable String runId) {
+        try {
+            return ResponseEntity.ok(settlementRunService.retry(runId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error al reintentar la liquidación: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/settlements/ledger/rebuild")
+    @ResponseBody
+    public ResponseEntity<?> rebuildLedger() {
+        try {
+            int rows = settlementLedgerService.rebuild();
+            return ResponseEntity.ok(Map.of("rows", rows));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error al reconstruir el ledger: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/settlements/ledger/verify")
+    @ResponseBody
+    public Map<String, Object> verifyLedger() {
+        List<String> differences = settlementLedgerService.verify();
+        return Map.of("consistent", differences.isEmpty(), "differences", differences);
+    }
+
     @GetMapping("/settlements/referee/{refereeId}")
     public String settlementReferee(@PathVariable Long refereeId,
                                    @RequestParam(required = false) String month,
                                    @RequestParam(required = false) String year,
+                                   @RequestParam(defaultValue = "false") boolean detail,
                                    Model model) {
         
         YearMonth yearMonth = YearMonth.now();
@@ -174,7 +430,8 @@ public class FinancialController {
             return "redirect:/admin/financial/settlements";
         }
 
-        SettlementData settlement = settlementService.calculateSettlement(refereeId, yearMonth);
+        // The match list is only read when asked for; the totals alone are one ledger read
+        SettlementData settlement = settlementService.calculateSettlement(refereeId, yearMonth, detail);
         
         model.addAttribute("referee", refereeOpt.get());
         model.addAttribute("settlement", settlement);
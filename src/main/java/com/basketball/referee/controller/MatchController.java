@@ -2,8 +2,16 @@ package com.basketball.referee.controller;
 
 import com.basketball.referee.model.*;
 import com.basketball.referee.service.*;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUpload;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.UploadContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
@@ -12,12 +20,15 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Controller
 @RequestMapping("/admin/matches")
@@ -39,23 +50,36 @@ public class MatchController {
     @Autowired
     private MatchAssignmentService assignmentService;
 
+    @Autowired
+    private MatchCalendarService calendarService;
+
+    @Autowired
+    private MatchImportService importService;
+
+    @Autowired
+    private FreeSlotService freeSlotService;
+
+    @Autowired
+    private AssignmentOptimizerService optimizerService;
+
+    @Value("${matches.import.max-size:104857600}")
+    private long importMaxSize;
+
     @GetMapping
     public String listMatches(@RequestParam(required = false) String search,
             @RequestParam(required = false) String tournament,
             @RequestParam(required = false) String state,
             @RequestParam(required = false) String date,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size,
             Model model) {
-        List<Match> matches;
-
-        if (search != null || tournament != null || state != null || date != null) {
-            matches = matchService.findByFilters(search, tournament, state, date);
-        } else {
-            matches = matchService.findAll();
-        }
+        MatchService.MatchPage page = matchService.findByFilters(search, tournament, state, date, after,
+                Math.max(1, Math.min(size, 200)));
 
         List<Tournament> tournaments = tournamentService.findAll();
 
-        model.addAttribute("matches", matches);
+        model.addAttribute("matches", page.getMatches());
+        model.addAttribute("nextCursor", page.getNextCursor());
         model.addAttribute("tournaments", tournaments);
         model.addAttribute("states", Match.MatchState.values());
         model.addAttribute("title", "Gestión de Matches");
@@ -165,13 +189,22 @@ public class MatchController {
         }
 
         Match match = matchOpt.get();
+        // Referees already holding an overlapping match are left out of the candidates
         List<Referee> refereesField = refereeService.findBySpecialty(Referee.Specialty.FIELD);
         List<Referee> refereesTable = refereeService.findBySpecialty(Referee.Specialty.TABLE);
+        int candidates = refereesField.size() + refereesTable.size();
+        refereesField = refereesField.stream()
+            .filter(referee -> assignmentService.isRefereeAvailable(referee.getId(), match))
+            .toList();
+        refereesTable = refereesTable.stream()
+            .filter(referee -> assignmentService.isRefereeAvailable(referee.getId(), match))
+            .toList();
         List<MatchAssignment> assignmentsExistentes = assignmentService.findByMatch(id);
 
         model.addAttribute("match", match);
         model.addAttribute("refereesField", refereesField);
         model.addAttribute("refereesTable", refereesTable);
+        model.addAttribute("busyReferees", candidates - refereesField.size() - refereesTable.size());
         model.addAttribute("assignmentsExistentes", assignmentsExistentes);
         model.addAttribute("roles", MatchAssignment.RefereeRole.values());
         model.addAttribute("title", "Asignar Árbitros");
@@ -184,8 +217,10 @@ public class MatchController {
             @RequestParam List<String> roles,
             RedirectAttributes redirectAttributes) {
         try {
-            assignmentService.assignReferees(id, refereeIds, roles);
-            redirectAttributes.addFlashAttribute("successMessage", "Árbitros asignados exitosamente");
+            MatchAssignmentService.Reconciliation result = assignmentService.assignReferees(id, refereeIds, roles);
+            redirectAttributes.addFlashAttribute("successMessage", "Árbitros asignados exitosamente ("
+                + result.getAdded() + " nuevos, " + result.getKept() + " sin cambios, "
+                + result.getRemoved() + " quitados)");
             return "redirect:/admin/matches/" + id;
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", "Error al asignar árbitros: " + e.getMessage());
@@ -193,18 +228,47 @@ public class MatchController {
         }
     }
 
+    /**
+     * Sets the referees of several matches in one transaction, e.g. a whole
+     * round. The body maps each match id to its referees:
+     * {@code {"12": [{"refereeId": 3, "role": "FIRST_REFEREE"}, ...], ...}}.
+     */
+    @PostMapping("/bulk-assign")
+    @ResponseBody
+    public ResponseEntity<?> bulkAssign(@RequestBody Map<Long, List<MatchAssignmentService.RefereeSlot>> assignments) {
+        try {
+            return ResponseEntity.ok(assignmentService.reconcileAssignments(assignments));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error al asignar árbitros: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/{id}/cancel")
     @ResponseBody
     public ResponseEntity<?> cancelMatch(@PathVariable Long id) {
         try {
             matchService.updateState(id, Match.MatchState.CANCELED);
-            assignmentService.cancelAllAssignments(id);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error al cancelar match: " + e.getMessage());
         }
     }
 
+    /**
+     * Cancels or finishes several matches in one go (e.g. a whole round);
+     * their assignments follow as in the single-match actions.
+     */
+    @PostMapping("/bulk-state")
+    @ResponseBody
+    public ResponseEntity<?> changeStates(@RequestParam List<Long> ids, @RequestParam String state) {
+        try {
+            int updated = matchService.changeStates(ids, Match.MatchState.valueOf(state));
+            return ResponseEntity.ok(Map.of("updated", updated));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error al actualizar matches: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/{id}/complete")
     public String completeMatch(@PathVariable Long id,
             @RequestParam Integer localResult,
@@ -228,19 +292,144 @@ public class MatchController {
             date = LocalDate.of(Integer.parseInt(year), Integer.parseInt(month), 1);
         }
 
-        LocalDateTime startOfMonth = date.withDayOfMonth(1).atStartOfDay();
-        LocalDateTime endOfMonth = date.withDayOfMonth(date.lengthOfMonth()).atTime(23, 59, 59);
-
-        List<Match> matches = matchService.findByDateRange(startOfMonth, endOfMonth);
-
-        Map<String, List<Match>> matchesByDate = matches.stream()
-                .collect(Collectors.groupingBy(m -> m.getDateHour().toLocalDate().toString()));
-        model.addAttribute("matchesByDate", matchesByDate);
-
-        model.addAttribute("matches", matches);
+        model.addAttribute("calendar", calendarService.getMonth(YearMonth.from(date)));
         model.addAttribute("currentDate", date);
-        model.addAttribute("matchesByDate", matchesByDate);
         model.addAttribute("title", "Calendario de Matches");
         return "admin/matches/calendar";
     }
+
+    /**
+     * Free court time for rescheduling, e.g. the first free two hours of any
+     * active court in a city next week:
+     * {@code /admin/matches/free-slots?city=X&from=...&to=...&minMinutes=120&firstOnly=true}.
+     */
+    @GetMapping("/free-slots")
+    @ResponseBody
+    public ResponseEntity<?> freeSlots(@RequestParam(required = false) List<Long> courtIds,
+            @RequestParam(required = false) String city,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "08:00") @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime dayStart,
+            @RequestParam(defaultValue = "22:00") @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime dayEnd,
+            @RequestParam(defaultValue = "120") int minMinutes,
+            @RequestParam(defaultValue = "false") boolean firstOnly) {
+        try {
+            return ResponseEntity.ok(freeSlotService.findFreeSlots(courtIds, city, from, to,
+                    dayStart, dayEnd, minMinutes, firstOnly));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Error al buscar horarios libres: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Proposed referees for the open roles of the programmed matches in a
+     * period, optionally limited to one tournament. Nothing is stored until
+     * the proposal is accepted.
+     */
+    @GetMapping("/optimize")
+    public String optimize(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                           @RequestParam(required = false) Long tournamentId,
+                           @RequestParam(required = false) List<MatchAssignment.RefereeRole> roles,
+                           @RequestParam(defaultValue = "60") int travelBufferMinutes,
+                           Model model) {
+        List<MatchAssignment.RefereeRole> selectedRoles =
+            roles == null || roles.isEmpty() ? AssignmentOptimizerService.DEFAULT_ROLES : roles;
+        model.addAttribute("title", "Asignación Automática");
+        model.addAttribute("tournaments", tournamentService.findAllActive());
+        model.addAttribute("allRoles", MatchAssignment.RefereeRole.values());
+        model.addAttribute("from", from);
+        model.addAttribute("to", to);
+        model.addAttribute("tournamentId", tournamentId);
+        model.addAttribute("roles", selectedRoles);
+        model.addAttribute("travelBufferMinutes", travelBufferMinutes);
+        if (from != null && to != null) {
+            try {
+                model.addAttribute("proposal",
+                    optimizerService.propose(from, to, tournamentId, selectedRoles, travelBufferMinutes));
+            } catch (Exception e) {
+                model.addAttribute("errorMessage", "Error al calcular la propuesta: " + e.getMessage());
+            }
+        }
+        return "admin/matches/optimize";
+    }
+
+    @PostMapping("/optimize/apply")
+    public String applyOptimization(@RequestParam(required = false) List<String> selected,
+                                    @RequestParam(defaultValue = "60") int travelBufferMinutes,
+                                    RedirectAttributes redirectAttributes) {
+        try {
+            int created = optimizerService.apply(selected != null ? selected : List.of(), travelBufferMinutes);
+            redirectAttributes.addFlashAttribute("successMessage", created + " asignaciones creadas");
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Error al guardar las asignaciones: " + e.getMessage());
+        }
+        return "redirect:/admin/matches";
+    }
+
+    @GetMapping("/import")
+    public String importForm(Model model) {
+        model.addAttribute("title", "Importar Matches");
+        return "admin/matches/import";
+    }
+
+    /**
+     * Reads the "file" part straight from the request body with the streaming
+     * API of commons-fileupload, so the CSV is never buffered to disk or
+     * memory; multipart resolution is lazy for that reason. The CSRF token has
+     * to travel in the header, since reading it as a parameter would consume
+     * the body first.
+     */
+    @PostMapping("/import")
+    @ResponseBody
+    public ResponseEntity<?> importMatches(HttpServletRequest request) {
+        // FileUpload.isMultipartContent also has a javax.servlet overload, which does not resolve under Jakarta
+        String contentType = request.getContentType();
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Se esperaba un archivo CSV"));
+        }
+        FileUpload upload = new FileUpload();
+        upload.setSizeMax(importMaxSize);
+        try {
+            FileItemIterator items = upload.getItemIterator(new RequestUploadContext(request));
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (!item.isFormField() && "file".equals(item.getFieldName())) {
+                    try (InputStream csv = item.openStream()) {
+                        return ResponseEntity.ok(importService.importCsv(csv));
+                    }
+                }
+            }
+            return ResponseEntity.badRequest().body(Map.of("error", "No se recibió ningún archivo"));
+        } catch (FileUploadException | IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Error al leer el archivo: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", "Error al importar matches: " + e.getMessage()));
+        }
+    }
+
+    // commons-fileupload 1.x only ships a javax.servlet adapter
+    private static class RequestUploadContext implements UploadContext {
+        private final HttpServletRequest request;
+
+        RequestUploadContext(HttpServletRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public String getCharacterEncoding() { return request.getCharacterEncoding(); }
+
+        @Override
+        public String getContentType() { return request.getContentType(); }
+
+        @Override
+        @Deprecated
+        public int getContentLength() { return request.getContentLength(); }
+
+        @Override
+        public long contentLength() { return request.getContentLengthLong(); }
+
+        @Override
+        public InputStream getInputStream() throws IOException { return request.getInputStream(); }
+    }
 }
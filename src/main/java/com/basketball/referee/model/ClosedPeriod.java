@@ -0,0 +1,48 @@
+package com.basketball.referee.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+import java.time.LocalDateTime;
+
+@Entity
+@Immutable
+@Table(name = "settlement_closed_periods")
+public class ClosedPeriod {
+    
+    // Year-month in ISO format (yyyy-MM)
+    @Id
+    @Column(length = 7)
+    private String period;
+    
+    @Column(name = "closed_by")
+    private String closedBy;
+    
+    @Column(name = "closed_at")
+    private LocalDateTime closedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        closedAt = LocalDateTime.now();
+    }
+    
+    // Constructors
+    public ClosedPeriod() {}
+    
+    public ClosedPeriod(String period, String closedBy) {
+        this.period = period;
+        this.closedBy = closedBy;
+    }
+    
+    // Getters
+    public String getPeriod() {
+        return period;
+    }
+    
+    public String getClosedBy() {
+        return closedBy;
+    }
+    
+    public LocalDateTime getClosedAt() {
+        return closedAt;
+    }
+}
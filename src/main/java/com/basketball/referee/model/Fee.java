@@ -3,11 +3,18 @@ package com.basketball.referee.model;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
+import org.springframework.format.annotation.DateTimeFormat;
+
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "fee")
+@Table(name = "fee", indexes = {
+    @Index(name = "idx_fee_tournament_rank_role_active", columnList = "tournament_id, rank, role, active")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_fee_version", columnNames = {"tournament_id", "rank", "role", "effective_from"})
+})
 public class Fee {
     
     @Id
@@ -35,6 +42,16 @@ public class Fee {
     
     @Column(nullable = false)
     private boolean active = true;
+
+    // First day this version prices matches; null means since always
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    @Column(name = "effective_from")
+    private LocalDate effectiveFrom;
+
+    // Last day this version prices matches; null means until further notice
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    @Column(name = "effective_to")
+    private LocalDate effectiveTo;
     
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -120,6 +137,22 @@ public class Fee {
         this.active = active;
     }
     
+    public LocalDate getEffectiveFrom() {
+        return effectiveFrom;
+    }
+    
+    public void setEffectiveFrom(LocalDate effectiveFrom) {
+        this.effectiveFrom = effectiveFrom;
+    }
+    
+    public LocalDate getEffectiveTo() {
+        return effectiveTo;
+    }
+    
+    public void setEffectiveTo(LocalDate effectiveTo) {
+        this.effectiveTo = effectiveTo;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
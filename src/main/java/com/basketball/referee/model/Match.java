@@ -13,6 +13,7 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
@@ -23,7 +24,11 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
 @Entity
-@Table(name = "matches")
+@Table(name = "matches", indexes = {
+    @Index(name = "idx_match_date_hour", columnList = "date_hour, id"),
+    @Index(name = "idx_match_state_date_hour", columnList = "state, date_hour, id"),
+    @Index(name = "idx_match_tournament_date_hour", columnList = "tournament_id, date_hour, id")
+})
 public class Match {
     
     @Id
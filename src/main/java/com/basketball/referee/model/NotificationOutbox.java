@@ -0,0 +1,134 @@
+package com.basketball.referee.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+@Entity
+@Table(name = "notification_outbox", indexes = {
+    @Index(name = "idx_outbox_status_next_attempt", columnList = "status, next_attempt_at")
+})
+public class NotificationOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false)
+    private EventType eventType;
+
+    @Column(name = "referee_id", nullable = false)
+    private Long refereeId;
+
+    @Column(name = "match_id", nullable = false)
+    private Long matchId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private MatchAssignment.RefereeRole role;
+
+    // Match as it was when the event happened, e.g. "A vs B - 12/10/2025 20:00 - Court"
+    @Column(nullable = false)
+    private String summary;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    // Comma-terminated names of the channels that already took this event, e.g. "email,"
+    @Column(name = "delivered_channels")
+    private String deliveredChannels;
+
+    public enum EventType {
+        ASSIGNMENT_CREATED("Nueva asignación"),
+        ASSIGNMENT_ACCEPTED("Asignación aceptada"),
+        ASSIGNMENT_REJECTED("Asignación rechazada"),
+        ASSIGNMENT_CANCELLED("Asignación cancelada");
+
+        private final String displayName;
+
+        EventType(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    public enum Status {
+        PENDING, SENT, FAILED
+    }
+
+    // Constructors
+    public NotificationOutbox() {}
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public EventType getEventType() {
+        return eventType;
+    }
+
+    public Long getRefereeId() {
+        return refereeId;
+    }
+
+    public Long getMatchId() {
+        return matchId;
+    }
+
+    public MatchAssignment.RefereeRole getRole() {
+        return role;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public boolean isDeliveredTo(String channel) {
+        return deliveredChannels != null && Arrays.asList(deliveredChannels.split(",")).contains(channel);
+    }
+}
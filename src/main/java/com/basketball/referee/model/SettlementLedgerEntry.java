@@ -0,0 +1,104 @@
+package com.basketball.referee.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "settlement_ledger", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_ledger_referee_period_role", columnNames = {"referee_id", "period", "role"})
+})
+public class SettlementLedgerEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "referee_id", nullable = false)
+    private Long refereeId;
+    
+    // Year-month in ISO format (yyyy-MM)
+    @Column(nullable = false, length = 7)
+    private String period;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private MatchAssignment.RefereeRole role;
+    
+    @Column(nullable = false)
+    private int matches;
+    
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal amount = BigDecimal.ZERO;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+    
+    // Constructors
+    public SettlementLedgerEntry() {}
+    
+    public SettlementLedgerEntry(Long refereeId, String period, MatchAssignment.RefereeRole role) {
+        this.refereeId = refereeId;
+        this.period = period;
+        this.role = role;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getRefereeId() {
+        return refereeId;
+    }
+    
+    public void setRefereeId(Long refereeId) {
+        this.refereeId = refereeId;
+    }
+    
+    public String getPeriod() {
+        return period;
+    }
+    
+    public void setPeriod(String period) {
+        this.period = period;
+    }
+    
+    public MatchAssignment.RefereeRole getRole() {
+        return role;
+    }
+    
+    public void setRole(MatchAssignment.RefereeRole role) {
+        this.role = role;
+    }
+    
+    public int getMatches() {
+        return matches;
+    }
+    
+    public void setMatches(int matches) {
+        this.matches = matches;
+    }
+    
+    public BigDecimal getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
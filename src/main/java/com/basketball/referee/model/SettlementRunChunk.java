@@ -0,0 +1,99 @@
+package com.basketball.referee.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Entity
+@Table(name = "settlement_run_chunks", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_run_chunk_index", columnNames = {"run_id", "chunk_index"})
+})
+public class SettlementRunChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "run_id", nullable = false)
+    private SettlementRunRecord run;
+
+    @Column(name = "chunk_index", nullable = false)
+    private int chunkIndex;
+
+    // Comma-separated referee ids, fixed when the run starts so a retry recomputes the same referees
+    @Column(name = "referee_ids", nullable = false, columnDefinition = "TEXT")
+    private String refereeIds;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private State state = State.PENDING;
+
+    @Column(length = 500)
+    private String error;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public enum State { PENDING, DONE, FAILED }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    // Constructors
+    public SettlementRunChunk() {}
+
+    public SettlementRunChunk(int chunkIndex, List<Long> refereeIds) {
+        this.chunkIndex = chunkIndex;
+        this.refereeIds = refereeIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public SettlementRunRecord getRun() {
+        return run;
+    }
+
+    public void setRun(SettlementRunRecord run) {
+        this.run = run;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public List<Long> getRefereeIds() {
+        if (refereeIds == null || refereeIds.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(refereeIds.split(",")).map(Long::valueOf).toList();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,81 @@
+package com.basketball.referee.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Entity
+@Table(name = "settlement_runs")
+public class SettlementRunRecord {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    // Year-month in ISO format (yyyy-MM)
+    @Column(nullable = false, length = 7)
+    private String period;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    // Time spent running over all attempts
+    @Column(name = "elapsed_millis", nullable = false)
+    private long elapsedMillis;
+
+    @Column(nullable = false)
+    private boolean running;
+
+    @OneToMany(mappedBy = "run", cascade = CascadeType.PERSIST, fetch = FetchType.LAZY)
+    @OrderBy("chunkIndex")
+    private List<SettlementRunChunk> chunks = new ArrayList<>();
+
+    // Constructors
+    public SettlementRunRecord() {}
+
+    public SettlementRunRecord(String id, String period, LocalDateTime startedAt) {
+        this.id = id;
+        this.period = period;
+        this.startedAt = startedAt;
+        this.running = true;
+    }
+
+    public void addChunk(SettlementRunChunk chunk) {
+        chunk.setRun(this);
+        chunks.add(chunk);
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    public List<SettlementRunChunk> getChunks() {
+        return chunks;
+    }
+}
@@ -0,0 +1,103 @@
+package com.basketball.referee.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Entity
+@Immutable
+@Table(name = "settlement_snapshots", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_snapshot_referee_period", columnNames = {"referee_id", "period"})
+})
+public class SettlementSnapshot {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "referee_id", nullable = false, updatable = false)
+    private Long refereeId;
+    
+    @Column(name = "referee_name", updatable = false)
+    private String refereeName;
+    
+    // Year-month in ISO format (yyyy-MM)
+    @Column(nullable = false, length = 7, updatable = false)
+    private String period;
+    
+    @Column(name = "total_matches", nullable = false, updatable = false)
+    private int totalMatches;
+    
+    @Column(name = "total_amount", nullable = false, precision = 12, scale = 2, updatable = false)
+    private BigDecimal totalAmount;
+    
+    @Column(name = "closed_at", updatable = false)
+    private LocalDateTime closedAt;
+    
+    @OneToMany(mappedBy = "snapshot", cascade = CascadeType.PERSIST, fetch = FetchType.LAZY)
+    @OrderBy("matchDate")
+    private List<SettlementSnapshotLine> lines = new ArrayList<>();
+    
+    @PrePersist
+    protected void onCreate() {
+        closedAt = LocalDateTime.now();
+    }
+    
+    // Constructors
+    public SettlementSnapshot() {}
+    
+    public SettlementSnapshot(Long refereeId, String refereeName, String period) {
+        this.refereeId = refereeId;
+        this.refereeName = refereeName;
+        this.period = period;
+    }
+    
+    public void addLine(SettlementSnapshotLine line) {
+        line.setSnapshot(this);
+        lines.add(line);
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public Long getRefereeId() {
+        return refereeId;
+    }
+    
+    public String getRefereeName() {
+        return refereeName;
+    }
+    
+    public String getPeriod() {
+        return period;
+    }
+    
+    public int getTotalMatches() {
+        return totalMatches;
+    }
+    
+    public void setTotalMatches(int totalMatches) {
+        this.totalMatches = totalMatches;
+    }
+    
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+    
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+    
+    public LocalDateTime getClosedAt() {
+        return closedAt;
+    }
+    
+    public List<SettlementSnapshotLine> getLines() {
+        return lines;
+    }
+}
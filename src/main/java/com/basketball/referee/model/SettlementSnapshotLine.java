@@ -0,0 +1,100 @@
+package com.basketball.referee.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Immutable
+@Table(name = "settlement_snapshot_lines")
+public class SettlementSnapshotLine {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "snapshot_id", nullable = false, updatable = false)
+    private SettlementSnapshot snapshot;
+    
+    @Column(name = "assignment_id", updatable = false)
+    private Long assignmentId;
+    
+    @Column(name = "match_date", nullable = false, updatable = false)
+    private LocalDateTime matchDate;
+    
+    @Column(name = "tournament_id", updatable = false)
+    private Long tournamentId;
+    
+    @Column(name = "tournament_name", updatable = false)
+    private String tournamentName;
+    
+    // Rank of the referee when the month was closed; empty on lines closed before it was recorded
+    @Enumerated(EnumType.STRING)
+    @Column(name = "referee_rank", updatable = false)
+    private Referee.Rank rank;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private MatchAssignment.RefereeRole role;
+    
+    @Column(nullable = false, precision = 10, scale = 2, updatable = false)
+    private BigDecimal amount;
+    
+    // Constructors
+    public SettlementSnapshotLine() {}
+    
+    public SettlementSnapshotLine(Long assignmentId, LocalDateTime matchDate, Long tournamentId,
+                                  String tournamentName, Referee.Rank rank, MatchAssignment.RefereeRole role,
+                                  BigDecimal amount) {
+        this.assignmentId = assignmentId;
+        this.matchDate = matchDate;
+        this.tournamentId = tournamentId;
+        this.tournamentName = tournamentName;
+        this.rank = rank;
+        this.role = role;
+        this.amount = amount;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public SettlementSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
+    public void setSnapshot(SettlementSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+    
+    public Long getAssignmentId() {
+        return assignmentId;
+    }
+    
+    public LocalDateTime getMatchDate() {
+        return matchDate;
+    }
+    
+    public Long getTournamentId() {
+        return tournamentId;
+    }
+    
+    public String getTournamentName() {
+        return tournamentName;
+    }
+    
+    public Referee.Rank getRank() {
+        return rank;
+    }
+    
+    public MatchAssignment.RefereeRole getRole() {
+        return role;
+    }
+    
+    public BigDecimal getAmount() {
+        return amount;
+    }
+}
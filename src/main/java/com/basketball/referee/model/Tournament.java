@@ -38,6 +38,11 @@ public class Tournament {
     @Column(nullable = false)
     private boolean active = true;
     
+    // Lowest referee rank allowed to work this tournament's matches; null admits any rank
+    @Enumerated(EnumType.STRING)
+    @Column(name = "required_rank")
+    private Referee.Rank requiredRank;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -145,6 +150,14 @@ public class Tournament {
         this.active = active;
     }
     
+    public Referee.Rank getRequiredRank() {
+        return requiredRank;
+    }
+    
+    public void setRequiredRank(Referee.Rank requiredRank) {
+        this.requiredRank = requiredRank;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
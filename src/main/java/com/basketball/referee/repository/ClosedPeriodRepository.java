@@ -0,0 +1,9 @@
+package com.basketball.referee.repository;
+
+import com.basketball.referee.model.ClosedPeriod;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ClosedPeriodRepository extends JpaRepository<ClosedPeriod, String> {
+}
@@ -1,9 +1,14 @@
 package com.basketball.referee.repository;
 
 import com.basketball.referee.model.Court;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,4 +21,11 @@ public interface CourtRepository extends JpaRepository<Court, Long> {
     List<Court> findByNameContainingIgnoreCase(String name);
     
     List<Court> findByActiveTrueOrderByName();
+
+    long countByActiveTrue();
+
+    // Serializes bookings of the courts; rows are locked in id order so overlapping sets cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Court c WHERE c.id IN :ids ORDER BY c.id")
+    List<Court> lockByIds(@Param("ids") Collection<Long> ids);
 }
@@ -4,6 +4,7 @@ import com.basketball.referee.model.Fee;
 import com.basketball.referee.model.Referee;
 import com.basketball.referee.model.MatchAssignment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,7 +13,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface FeeRepository extends JpaRepository<Fee, Long> {
+public interface FeeRepository extends JpaRepository<Fee, Long>, JpaSpecificationExecutor<Fee> {
     
     List<Fee> findByTournamentId(Long tournamentId);
     
@@ -23,7 +24,8 @@ public interface FeeRepository extends JpaRepository<Fee, Long> {
     @Query("SELECT t FROM Fee t WHERE t.rank = :rank")
     List<Fee> findByRank(Referee.Rank rank);
     
-    Optional<Fee> findByTournamentIdAndRankAndRole(Long tournamentId, 
+    // Every version of the combination
+    List<Fee> findByTournamentIdAndRankAndRole(Long tournamentId, 
                                                       Referee.Rank rank, 
                                                       MatchAssignment.RefereeRole role);
     
@@ -0,0 +1,51 @@
+package com.basketball.referee.repository;
+
+import com.basketball.referee.model.Fee;
+import com.basketball.referee.model.Referee;
+import com.basketball.referee.model.Tournament;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class FeeSpecifications {
+
+    private FeeSpecifications() {
+    }
+
+    /**
+     * Fees matching the list filters; null or blank values are ignored. The
+     * tournament is fetch-joined for the page query so rendering the list does
+     * not load it per row, and plain-joined for the count query.
+     */
+    public static Specification<Fee> withFilters(String search, Long tournamentId, Referee.Rank rank) {
+        return (root, query, cb) -> {
+            Join<Fee, Tournament> tournament;
+            if (Long.class != query.getResultType() && long.class != query.getResultType()) {
+                @SuppressWarnings("unchecked")
+                Join<Fee, Tournament> fetched = (Join<Fee, Tournament>) root.<Fee, Tournament>fetch("tournament", JoinType.INNER);
+                tournament = fetched;
+            } else {
+                tournament = root.join("tournament", JoinType.INNER);
+            }
+
+            List<Predicate> predicates = new ArrayList<>();
+            if (search != null && !search.isBlank()) {
+                String pattern = "%" + search.trim().toLowerCase() + "%";
+                predicates.add(cb.or(
+                    cb.like(cb.lower(root.get("description")), pattern),
+                    cb.like(cb.lower(tournament.get("name")), pattern)));
+            }
+            if (tournamentId != null) {
+                predicates.add(cb.equal(tournament.get("id"), tournamentId));
+            }
+            if (rank != null) {
+                predicates.add(cb.equal(root.get("rank"), rank));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
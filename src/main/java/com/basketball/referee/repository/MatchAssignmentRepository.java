@@ -1,13 +1,20 @@
 package com.basketball.referee.repository;
 
 import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.model.Referee;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface MatchAssignmentRepository extends JpaRepository<MatchAssignment, Long> {
@@ -15,6 +22,8 @@ public interface MatchAssignmentRepository extends JpaRepository<MatchAssignment
     List<MatchAssignment> findByRefereeId(Long refereeId);
     
     List<MatchAssignment> findByMatchId(Long matchId);
+
+    List<MatchAssignment> findByMatchIdIn(Collection<Long> matchIds);
     
     List<MatchAssignment> findByState(MatchAssignment.AssignmentState state);
     
@@ -30,4 +39,232 @@ public interface MatchAssignmentRepository extends JpaRepository<MatchAssignment
     
     @Query("SELECT a FROM MatchAssignment a WHERE a.referee.id = :refereeId AND a.state = 'ACCEPTED' AND a.match.state = 'FINISHED'")
     List<MatchAssignment> findCompletedAssignmentsByReferee(@Param("refereeId") Long refereeId);
+
+    @Query("""
+        SELECT a FROM MatchAssignment a
+        JOIN FETCH a.match m
+        JOIN FETCH m.tournament
+        WHERE a.referee.id = :refereeId AND a.state = 'COMPLETED' AND m.dateHour BETWEEN :start AND :end
+        ORDER BY m.dateHour
+    """)
+    List<MatchAssignment> findCompletedByRefereeAndDateRange(@Param("refereeId") Long refereeId,
+                                                             @Param("start") LocalDateTime start,
+                                                             @Param("end") LocalDateTime end);
+
+    @Query("""
+        SELECT a FROM MatchAssignment a
+        JOIN FETCH a.match m
+        JOIN FETCH m.tournament
+        JOIN FETCH a.referee r
+        JOIN FETCH r.user
+        WHERE a.state = 'COMPLETED' AND m.dateHour BETWEEN :start AND :end
+        ORDER BY r.id, m.dateHour
+    """)
+    List<MatchAssignment> findCompletedByDateRange(@Param("start") LocalDateTime start,
+                                                   @Param("end") LocalDateTime end);
+
+    // Completed assignments counted per referee, day and pricing combination; the day picks the fee version
+    @Query("""
+        SELECT r.id AS refereeId, YEAR(m.dateHour) AS periodYear, MONTH(m.dateHour) AS periodMonth,
+               DAY(m.dateHour) AS periodDay,
+               m.tournament.id AS tournamentId, r.rank AS rank, a.refereeRole AS role, COUNT(a) AS matches
+        FROM MatchAssignment a
+        JOIN a.match m
+        JOIN a.referee r
+        WHERE a.state = 'COMPLETED'
+        GROUP BY r.id, YEAR(m.dateHour), MONTH(m.dateHour), DAY(m.dateHour), m.tournament.id, r.rank, a.refereeRole
+    """)
+    List<CompletedCounts> countCompletedByPeriod();
+
+    @Query("""
+        SELECT r.id AS refereeId, YEAR(m.dateHour) AS periodYear, MONTH(m.dateHour) AS periodMonth,
+               DAY(m.dateHour) AS periodDay,
+               m.tournament.id AS tournamentId, r.rank AS rank, a.refereeRole AS role, COUNT(a) AS matches
+        FROM MatchAssignment a
+        JOIN a.match m
+        JOIN a.referee r
+        WHERE a.state = 'COMPLETED' AND m.tournament.id = :tournamentId
+          AND r.rank = :rank AND a.refereeRole = :role
+        GROUP BY r.id, YEAR(m.dateHour), MONTH(m.dateHour), DAY(m.dateHour), m.tournament.id, r.rank, a.refereeRole
+    """)
+    List<CompletedCounts> countCompletedByCombination(@Param("tournamentId") Long tournamentId,
+                                                      @Param("rank") Referee.Rank rank,
+                                                      @Param("role") MatchAssignment.RefereeRole role);
+
+    @Query("""
+        SELECT r.id AS refereeId, YEAR(m.dateHour) AS periodYear, MONTH(m.dateHour) AS periodMonth,
+               DAY(m.dateHour) AS periodDay,
+               m.tournament.id AS tournamentId, r.rank AS rank, a.refereeRole AS role, COUNT(a) AS matches
+        FROM MatchAssignment a
+        JOIN a.match m
+        JOIN a.referee r
+        WHERE a.state = 'COMPLETED' AND r.id IN :refereeIds AND m.dateHour BETWEEN :start AND :end
+        GROUP BY r.id, YEAR(m.dateHour), MONTH(m.dateHour), DAY(m.dateHour), m.tournament.id, r.rank, a.refereeRole
+    """)
+    List<CompletedCounts> countCompletedByRefereesAndDateRange(@Param("refereeIds") Collection<Long> refereeIds,
+                                                               @Param("start") LocalDateTime start,
+                                                               @Param("end") LocalDateTime end);
+
+    @Query("""
+        SELECT r.id AS refereeId, YEAR(m.dateHour) AS periodYear, MONTH(m.dateHour) AS periodMonth,
+               DAY(m.dateHour) AS periodDay,
+               m.tournament.id AS tournamentId, r.rank AS rank, a.refereeRole AS role, COUNT(a) AS matches
+        FROM MatchAssignment a
+        JOIN a.match m
+        JOIN a.referee r
+        WHERE a.state = 'COMPLETED' AND r.id = :refereeId
+        GROUP BY r.id, YEAR(m.dateHour), MONTH(m.dateHour), DAY(m.dateHour), m.tournament.id, r.rank, a.refereeRole
+    """)
+    List<CompletedCounts> countCompletedByReferee(@Param("refereeId") Long refereeId);
+
+    // Same grouping as the ledger, for the assignments of some matches in one state
+    @Query("""
+        SELECT r.id AS refereeId, YEAR(m.dateHour) AS periodYear, MONTH(m.dateHour) AS periodMonth,
+               DAY(m.dateHour) AS periodDay,
+               m.tournament.id AS tournamentId, r.rank AS rank, a.refereeRole AS role, COUNT(a) AS matches
+        FROM MatchAssignment a
+        JOIN a.match m
+        JOIN a.referee r
+        WHERE a.state = :state AND m.id IN :matchIds
+        GROUP BY r.id, YEAR(m.dateHour), MONTH(m.dateHour), DAY(m.dateHour), m.tournament.id, r.rank, a.refereeRole
+    """)
+    List<CompletedCounts> countByMatchesAndState(@Param("matchIds") Collection<Long> matchIds,
+                                                 @Param("state") MatchAssignment.AssignmentState state);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE MatchAssignment a SET a.state = :newState, a.updatedAt = :now
+        WHERE a.match.id IN :matchIds AND a.state IN :fromStates
+    """)
+    int updateStateByMatches(@Param("matchIds") Collection<Long> matchIds,
+                             @Param("fromStates") Collection<MatchAssignment.AssignmentState> fromStates,
+                             @Param("newState") MatchAssignment.AssignmentState newState,
+                             @Param("now") LocalDateTime now);
+
+    @Query("SELECT a.state AS state, COUNT(a) AS total FROM MatchAssignment a GROUP BY a.state")
+    List<StateCount> countGroupedByState();
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM MatchAssignment a WHERE a.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    // Pending and accepted assignments of a referee with their match, for the referee schedule index
+    @Query("""
+        SELECT a FROM MatchAssignment a
+        JOIN FETCH a.match
+        WHERE a.referee.id = :refereeId
+          AND a.state IN (com.basketball.referee.model.MatchAssignment.AssignmentState.PENDING,
+                          com.basketball.referee.model.MatchAssignment.AssignmentState.ACCEPTED)
+    """)
+    List<MatchAssignment> findHeldByReferee(@Param("refereeId") Long refereeId);
+
+    @Query("SELECT DISTINCT a.referee.id FROM MatchAssignment a WHERE a.match.id IN :matchIds")
+    List<Long> findRefereeIdsByMatches(@Param("matchIds") Collection<Long> matchIds);
+
+    // Assignments still holding a referee (not rejected) for matches in a period
+    @Query("""
+        SELECT a.referee.id AS refereeId, m.id AS matchId, a.refereeRole AS role,
+               m.dateHour AS dateHour, m.court.id AS courtId
+        FROM MatchAssignment a
+        JOIN a.match m
+        WHERE a.state <> com.basketball.referee.model.MatchAssignment.AssignmentState.REJECTED
+          AND m.dateHour BETWEEN :start AND :end
+    """)
+    List<RefereeBooking> findBookingsBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("""
+        SELECT a.referee.id AS refereeId, m.id AS matchId, a.refereeRole AS role,
+               m.dateHour AS dateHour, m.court.id AS courtId
+        FROM MatchAssignment a
+        JOIN a.match m
+        WHERE a.state <> com.basketball.referee.model.MatchAssignment.AssignmentState.REJECTED
+          AND m.id IN :matchIds
+    """)
+    List<RefereeBooking> findBookingsByMatches(@Param("matchIds") Collection<Long> matchIds);
+
+    // Flat rows for exports; streamed so the caller never holds the whole result
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+        @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("""
+        SELECT r.id AS refereeId, u.firstName AS firstName, u.lastName AS lastName, r.rank AS rank,
+               m.dateHour AS matchDate, t.id AS tournamentId, t.name AS tournamentName, a.refereeRole AS role
+        FROM MatchAssignment a
+        JOIN a.match m
+        JOIN m.tournament t
+        JOIN a.referee r
+        JOIN r.user u
+        WHERE a.state = 'COMPLETED'
+          AND (:tournamentId IS NULL OR t.id = :tournamentId)
+          AND (:start IS NULL OR m.dateHour >= :start)
+          AND (:end IS NULL OR m.dateHour <= :end)
+        ORDER BY u.lastName, u.firstName, r.id, m.dateHour
+    """)
+    Stream<ExportRow> streamCompletedForExport(@Param("tournamentId") Long tournamentId,
+                                               @Param("start") LocalDateTime start,
+                                               @Param("end") LocalDateTime end);
+
+    // Minimal columns of every completed assignment, in date order, for the fee simulator
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.fetchSize", value = "1000"),
+        @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("""
+        SELECT r.id AS refereeId, r.rank AS rank, a.refereeRole AS role,
+               m.tournament.id AS tournamentId, m.dateHour AS matchDate
+        FROM MatchAssignment a
+        JOIN a.match m
+        JOIN a.referee r
+        WHERE a.state = 'COMPLETED'
+        ORDER BY m.dateHour
+    """)
+    Stream<SimulationRow> streamCompletedForSimulation();
+
+    interface StateCount {
+        MatchAssignment.AssignmentState getState();
+        long getTotal();
+    }
+
+    interface RefereeBooking {
+        Long getRefereeId();
+        Long getMatchId();
+        MatchAssignment.RefereeRole getRole();
+        LocalDateTime getDateHour();
+        Long getCourtId();
+    }
+
+    interface SimulationRow {
+        Long getRefereeId();
+        Referee.Rank getRank();
+        MatchAssignment.RefereeRole getRole();
+        Long getTournamentId();
+        LocalDateTime getMatchDate();
+    }
+
+    interface ExportRow {
+        Long getRefereeId();
+        String getFirstName();
+        String getLastName();
+        Referee.Rank getRank();
+        LocalDateTime getMatchDate();
+        Long getTournamentId();
+        String getTournamentName();
+        MatchAssignment.RefereeRole getRole();
+    }
+
+    interface CompletedCounts {
+        Long getRefereeId();
+        Integer getPeriodYear();
+        Integer getPeriodMonth();
+        Integer getPeriodDay();
+        Long getTournamentId();
+        Referee.Rank getRank();
+        MatchAssignment.RefereeRole getRole();
+        Long getMatches();
+
+        default LocalDate getMatchDay() {
+            return LocalDate.of(getPeriodYear(), getPeriodMonth(), getPeriodDay());
+        }
+    }
 }
@@ -2,15 +2,18 @@ package com.basketball.referee.repository;
 
 import com.basketball.referee.model.Match;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface MatchRepository extends JpaRepository<Match, Long> {
+public interface MatchRepository extends JpaRepository<Match, Long>, JpaSpecificationExecutor<Match> {
     
     List<Match> findByTournamentId(Long tournamentId);
     
@@ -27,6 +30,120 @@ public interface MatchRepository extends JpaRepository<Match, Long> {
     @Query("SELECT p FROM Match p JOIN p.assignments a WHERE a.referee.id = :refereeId ORDER BY p.dateHour DESC")
     List<Match> findByRefereeId(@Param("refereeId") Long refereeId);
     
+    // Only what a calendar cell shows, with court and tournament joined in the same query
+    @Query("""
+        SELECT p.id AS id, p.dateHour AS dateHour, p.localTeam AS localTeam, p.visitorTeam AS visitorTeam,
+               p.state AS state, c.name AS courtName, t.name AS tournamentName
+        FROM Match p
+        JOIN p.court c
+        JOIN p.tournament t
+        WHERE p.dateHour BETWEEN :start AND :end
+        ORDER BY p.dateHour, p.id
+    """)
+    List<CalendarRow> findCalendarRows(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    
     @Query("SELECT COUNT(p) FROM Match p WHERE p.state = :state")
     Long countByState(@Param("state") Match.MatchState state);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Match p SET p.state = :state, p.updatedAt = :now WHERE p.id IN :ids")
+    int updateStateByIds(@Param("ids") Collection<Long> ids, @Param("state") Match.MatchState state,
+                         @Param("now") LocalDateTime now);
+
+    @Query("SELECT p.state AS state, COUNT(p) AS total FROM Match p GROUP BY p.state")
+    List<StateCount> countGroupedByState();
+
+    // Programmed matches of a period with what referee assignment needs already joined
+    @Query("""
+        SELECT p FROM Match p
+        JOIN FETCH p.tournament t
+        JOIN FETCH p.court
+        WHERE p.dateHour BETWEEN :start AND :end
+          AND p.state = com.basketball.referee.model.Match.MatchState.PROGRAMMED
+          AND (:tournamentId IS NULL OR t.id = :tournamentId)
+        ORDER BY p.dateHour, p.id
+    """)
+    List<Match> findProgrammedForAssignment(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                            @Param("tournamentId") Long tournamentId);
+
+    // The same matches by id, for storing an accepted proposal; those no longer programmed drop out
+    @Query("""
+        SELECT p FROM Match p
+        JOIN FETCH p.tournament
+        JOIN FETCH p.court
+        WHERE p.id IN :ids
+          AND p.state = com.basketball.referee.model.Match.MatchState.PROGRAMMED
+        ORDER BY p.dateHour, p.id
+    """)
+    List<Match> findProgrammedForAssignmentByIds(@Param("ids") Collection<Long> ids);
+
+    // Non-cancelled matches already holding the given courts, for fixture generation
+    @Query("""
+        SELECT p.court.id AS courtId, p.dateHour AS dateHour
+        FROM Match p
+        WHERE p.court.id IN :courtIds AND p.dateHour BETWEEN :start AND :end
+          AND p.state <> com.basketball.referee.model.Match.MatchState.CANCELED
+        ORDER BY p.dateHour
+    """)
+    List<CourtBooking> findCourtBookings(@Param("courtIds") Collection<Long> courtIds,
+                                         @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    long countByTournamentIdAndStateNot(Long tournamentId, Match.MatchState state);
+
+    // Non-cancelled matches of the given teams (names in lower case), for team rest in fixture generation
+    @Query("""
+        SELECT p.localTeam AS localTeam, p.visitorTeam AS visitorTeam, p.dateHour AS dateHour
+        FROM Match p
+        WHERE (LOWER(p.localTeam) IN :teams OR LOWER(p.visitorTeam) IN :teams)
+          AND p.dateHour BETWEEN :start AND :end
+          AND p.state <> com.basketball.referee.model.Match.MatchState.CANCELED
+        ORDER BY p.dateHour
+    """)
+    List<TeamBooking> findTeamBookings(@Param("teams") Collection<String> teams,
+                                       @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Natural keys of non-cancelled matches on the given courts, for duplicate checks on import
+    @Query("""
+        SELECT p.tournament.id AS tournamentId, p.court.id AS courtId, p.dateHour AS dateHour,
+               p.localTeam AS localTeam, p.visitorTeam AS visitorTeam
+        FROM Match p
+        WHERE p.court.id IN :courtIds AND p.dateHour BETWEEN :start AND :end
+          AND p.state <> com.basketball.referee.model.Match.MatchState.CANCELED
+    """)
+    List<MatchKeyRow> findMatchKeys(@Param("courtIds") Collection<Long> courtIds,
+                                    @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    interface StateCount {
+        Match.MatchState getState();
+        long getTotal();
+    }
+
+    interface CalendarRow {
+        Long getId();
+        LocalDateTime getDateHour();
+        String getLocalTeam();
+        String getVisitorTeam();
+        Match.MatchState getState();
+        String getCourtName();
+        String getTournamentName();
+    }
+
+    interface CourtBooking {
+        Long getCourtId();
+        LocalDateTime getDateHour();
+    }
+
+    interface TeamBooking {
+        String getLocalTeam();
+        String getVisitorTeam();
+        LocalDateTime getDateHour();
+    }
+
+    interface MatchKeyRow {
+        Long getTournamentId();
+        Long getCourtId();
+        LocalDateTime getDateHour();
+        String getLocalTeam();
+        String getVisitorTeam();
+    }
 }
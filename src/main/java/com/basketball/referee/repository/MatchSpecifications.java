@@ -0,0 +1,66 @@
+package com.basketball.referee.repository;
+
+import com.basketball.referee.model.Match;
+import com.basketball.referee.model.Tournament;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class MatchSpecifications {
+
+    private MatchSpecifications() {
+    }
+
+    /**
+     * Matches for the admin list, newest first. Null or blank filters are
+     * ignored. When {@code afterDateHour}/{@code afterId} are given, only rows
+     * that sort after that (date_hour, id) pair are returned, so each page is
+     * an index seek instead of an offset scan. Tournament and court are
+     * fetch-joined so rendering the page does not load them per row.
+     */
+    public static Specification<Match> forList(String search, Long tournamentId, Match.MatchState state,
+                                               LocalDate date, LocalDateTime afterDateHour, Long afterId) {
+        return (root, query, cb) -> {
+            Join<Match, Tournament> tournament;
+            if (Long.class != query.getResultType() && long.class != query.getResultType()) {
+                @SuppressWarnings("unchecked")
+                Join<Match, Tournament> fetched = (Join<Match, Tournament>) root.<Match, Tournament>fetch("tournament", JoinType.INNER);
+                tournament = fetched;
+                root.fetch("court", JoinType.INNER);
+            } else {
+                tournament = root.join("tournament", JoinType.INNER);
+            }
+
+            List<Predicate> predicates = new ArrayList<>();
+            if (search != null && !search.isBlank()) {
+                String pattern = "%" + search.trim().toLowerCase() + "%";
+                predicates.add(cb.or(
+                    cb.like(cb.lower(root.get("localTeam")), pattern),
+                    cb.like(cb.lower(root.get("visitorTeam")), pattern),
+                    cb.like(cb.lower(tournament.get("name")), pattern)));
+            }
+            if (tournamentId != null) {
+                predicates.add(cb.equal(root.get("tournament").get("id"), tournamentId));
+            }
+            if (state != null) {
+                predicates.add(cb.equal(root.get("state"), state));
+            }
+            if (date != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("dateHour"), date.atStartOfDay()));
+                predicates.add(cb.lessThan(root.get("dateHour"), date.plusDays(1).atStartOfDay()));
+            }
+            if (afterDateHour != null && afterId != null) {
+                predicates.add(cb.or(
+                    cb.lessThan(root.get("dateHour"), afterDateHour),
+                    cb.and(cb.equal(root.get("dateHour"), afterDateHour), cb.lessThan(root.get("id"), afterId))));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
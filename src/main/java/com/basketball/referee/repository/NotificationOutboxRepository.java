@@ -0,0 +1,65 @@
+package com.basketball.referee.repository;
+
+import com.basketball.referee.model.NotificationOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+    // Oldest pending events whose next attempt is due, in the order they were written
+    @Query("""
+        SELECT o FROM NotificationOutbox o
+        WHERE o.status = com.basketball.referee.model.NotificationOutbox.Status.PENDING
+          AND o.nextAttemptAt <= :now
+        ORDER BY o.id
+    """)
+    List<NotificationOutbox> findDue(@Param("now") LocalDateTime now, Pageable page);
+
+    long countByStatus(NotificationOutbox.Status status);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE NotificationOutbox o
+        SET o.status = com.basketball.referee.model.NotificationOutbox.Status.SENT, o.sentAt = :now
+        WHERE o.id IN :ids
+    """)
+    int markSent(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // Remembers that a channel took these events, so a retry after another channel failed skips it
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE NotificationOutbox o
+        SET o.deliveredChannels = CONCAT(COALESCE(o.deliveredChannels, ''), :channel, ',')
+        WHERE o.id IN :ids
+    """)
+    int markDelivered(@Param("ids") Collection<Long> ids, @Param("channel") String channel);
+
+    // Retries later, or gives up once the events have been tried maxAttempts times
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+        UPDATE NotificationOutbox o
+        SET o.attempts = o.attempts + 1, o.lastError = :error, o.nextAttemptAt = :nextAttempt,
+            o.status = CASE WHEN o.attempts + 1 >= :maxAttempts
+                            THEN com.basketball.referee.model.NotificationOutbox.Status.FAILED
+                            ELSE com.basketball.referee.model.NotificationOutbox.Status.PENDING END
+        WHERE o.id IN :ids
+    """)
+    int markFailed(@Param("ids") Collection<Long> ids, @Param("error") String error,
+                   @Param("nextAttempt") LocalDateTime nextAttempt, @Param("maxAttempts") int maxAttempts);
+
+    @Modifying
+    @Query("""
+        DELETE FROM NotificationOutbox o
+        WHERE o.status = com.basketball.referee.model.NotificationOutbox.Status.SENT AND o.sentAt < :before
+    """)
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
@@ -1,11 +1,14 @@
 package com.basketball.referee.repository;
 
 import com.basketball.referee.model.Referee;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,6 +32,12 @@ public interface RefereeRepository extends JpaRepository<Referee, Long> {
     List<Referee> findByFilters(String search, String rank, String specialty, Boolean active);
     
     List<Referee> findByActiveTrue();
+
+    @Query("SELECT r FROM Referee r JOIN FETCH r.user WHERE r.active = true")
+    List<Referee> findActiveWithUser();
+
+    @Query("SELECT r FROM Referee r JOIN FETCH r.user WHERE r.id IN :ids")
+    List<Referee> findWithUserByIdIn(@Param("ids") Collection<Long> ids);
     
     List<Referee> findBySpecialty(Referee.Specialty specialty);
     
@@ -40,5 +49,19 @@ public interface RefereeRepository extends JpaRepository<Referee, Long> {
     @Query("SELECT a FROM Referee a JOIN a.assignments asig WHERE asig.state = 'ACCEPTED' GROUP BY a ORDER BY COUNT(asig) DESC")
     List<Referee> findMostActiveReferees();
     
+    // Row locks taken in id order, so two transactions locking overlapping sets cannot deadlock on each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Referee r WHERE r.id IN :ids ORDER BY r.id")
+    List<Referee> lockByIds(@Param("ids") Collection<Long> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Referee r ORDER BY r.id")
+    List<Referee> lockAll();
+
+    @Query("SELECT a.id FROM Referee a WHERE a.active = true ORDER BY a.id")
+    List<Long> findActiveIds();
+    
     boolean existsByDocument(String document);
+
+    long countByActiveTrue();
 }
@@ -0,0 +1,66 @@
+package com.basketball.referee.repository;
+
+import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.model.SettlementLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SettlementLedgerRepository extends JpaRepository<SettlementLedgerEntry, Long> {
+    
+    List<SettlementLedgerEntry> findByRefereeIdAndPeriod(Long refereeId, String period);
+    
+    List<SettlementLedgerEntry> findByPeriod(String period);
+    
+    Optional<SettlementLedgerEntry> findByRefereeIdAndPeriodAndRole(Long refereeId, String period,
+                                                                     MatchAssignment.RefereeRole role);
+    
+    // One row per (referee, role) with matches and amount owed in the period, ordered by referee name
+    @Query("""
+        SELECT l.refereeId AS refereeId, u.firstName AS firstName, u.lastName AS lastName,
+               l.role AS role, CAST(l.matches AS Long) AS matches, l.amount AS amount
+        FROM SettlementLedgerEntry l
+        JOIN Referee r ON r.id = l.refereeId
+        JOIN r.user u
+        WHERE l.period = :period AND l.matches <> 0
+        ORDER BY u.lastName, u.firstName, l.refereeId, l.role
+    """)
+    List<RoleTotals> summarizeByPeriod(@Param("period") String period);
+    
+    // Adds to the row in place, so concurrent writers of the same row cannot lose each other's update
+    @Modifying(flushAutomatically = true)
+    @Query("""
+        UPDATE SettlementLedgerEntry l
+        SET l.matches = l.matches + :matches, l.amount = l.amount + :amount, l.updatedAt = :now
+        WHERE l.refereeId = :refereeId AND l.period = :period AND l.role = :role
+    """)
+    int addToEntry(@Param("refereeId") Long refereeId, @Param("period") String period,
+                   @Param("role") MatchAssignment.RefereeRole role, @Param("matches") int matches,
+                   @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM SettlementLedgerEntry l")
+    int deleteAllEntries();
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM SettlementLedgerEntry l WHERE l.refereeId IN :refereeIds AND l.period = :period")
+    int deleteByRefereesAndPeriod(@Param("refereeIds") Collection<Long> refereeIds, @Param("period") String period);
+
+    interface RoleTotals {
+        Long getRefereeId();
+        String getFirstName();
+        String getLastName();
+        MatchAssignment.RefereeRole getRole();
+        Long getMatches();
+        BigDecimal getAmount();
+    }
+}
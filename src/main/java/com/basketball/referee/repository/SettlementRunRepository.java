@@ -0,0 +1,55 @@
+package com.basketball.referee.repository;
+
+import com.basketball.referee.model.SettlementRunChunk;
+import com.basketball.referee.model.SettlementRunRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SettlementRunRepository extends JpaRepository<SettlementRunRecord, String> {
+
+    @Query("SELECT r FROM SettlementRunRecord r LEFT JOIN FETCH r.chunks WHERE r.id = :id")
+    Optional<SettlementRunRecord> findWithChunks(@Param("id") String id);
+
+    @Query("SELECT DISTINCT r FROM SettlementRunRecord r LEFT JOIN FETCH r.chunks ORDER BY r.startedAt DESC")
+    List<SettlementRunRecord> findAllWithChunks();
+
+    @Modifying
+    @Query("""
+        UPDATE SettlementRunChunk c SET c.state = :state, c.error = :error, c.updatedAt = :now
+        WHERE c.run.id = :runId AND c.chunkIndex = :chunkIndex
+    """)
+    int updateChunk(@Param("runId") String runId, @Param("chunkIndex") int chunkIndex,
+                    @Param("state") SettlementRunChunk.State state, @Param("error") String error,
+                    @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("""
+        UPDATE SettlementRunChunk c SET c.state = 'PENDING', c.error = NULL, c.updatedAt = :now
+        WHERE c.run.id = :runId AND c.state = 'FAILED'
+    """)
+    int resetFailedChunks(@Param("runId") String runId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE SettlementRunRecord r SET r.running = :running, r.elapsedMillis = :elapsedMillis WHERE r.id = :id")
+    int updateRun(@Param("id") String id, @Param("running") boolean running, @Param("elapsedMillis") long elapsedMillis);
+
+    // Chunks left pending by runs that were still going when the application stopped
+    @Modifying
+    @Query("""
+        UPDATE SettlementRunChunk c SET c.state = 'FAILED', c.error = :error, c.updatedAt = :now
+        WHERE c.state = 'PENDING' AND c.run.id IN (SELECT r.id FROM SettlementRunRecord r WHERE r.running = true)
+    """)
+    int failInterruptedChunks(@Param("error") String error, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE SettlementRunRecord r SET r.running = false WHERE r.running = true")
+    int stopInterruptedRuns();
+}
@@ -0,0 +1,71 @@
+package com.basketball.referee.repository;
+
+import com.basketball.referee.model.SettlementSnapshot;
+import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.model.Referee;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+@Repository
+public interface SettlementSnapshotRepository extends JpaRepository<SettlementSnapshot, Long> {
+    
+    @Query("SELECT s FROM SettlementSnapshot s LEFT JOIN FETCH s.lines WHERE s.refereeId = :refereeId AND s.period = :period")
+    Optional<SettlementSnapshot> findWithLines(@Param("refereeId") Long refereeId, @Param("period") String period);
+    
+    @Query("SELECT s FROM SettlementSnapshot s WHERE s.period = :period ORDER BY s.refereeName")
+    List<SettlementSnapshot> findByPeriod(@Param("period") String period);
+    
+    @Query("SELECT DISTINCT s FROM SettlementSnapshot s LEFT JOIN FETCH s.lines WHERE s.period = :period")
+    List<SettlementSnapshot> findByPeriodWithLines(@Param("period") String period);
+    
+    @QueryHints({
+        @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+        @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("""
+        SELECT s.refereeId AS refereeId, s.refereeName AS refereeName, l.matchDate AS matchDate,
+               l.tournamentName AS tournamentName, l.role AS role, l.amount AS amount
+        FROM SettlementSnapshotLine l JOIN l.snapshot s
+        WHERE s.period = :period AND (:tournamentId IS NULL OR l.tournamentId = :tournamentId)
+        ORDER BY s.refereeName, s.refereeId, l.matchDate
+    """)
+    Stream<LineExportRow> streamLinesForExport(@Param("period") String period, @Param("tournamentId") Long tournamentId);
+    
+    // Frozen amounts per dashboard cell; lines without a recorded rank take the referee's current one
+    @Query("""
+        SELECT l.tournamentId AS tournamentId, s.period AS period, COALESCE(l.rank, r.rank) AS rank,
+               l.role AS role, COUNT(l) AS matches, SUM(l.amount) AS amount
+        FROM SettlementSnapshotLine l JOIN l.snapshot s
+        LEFT JOIN Referee r ON r.id = s.refereeId
+        GROUP BY l.tournamentId, s.period, COALESCE(l.rank, r.rank), l.role
+    """)
+    List<SnapshotCell> sumByCell();
+    
+    interface SnapshotCell {
+        Long getTournamentId();
+        String getPeriod();
+        Referee.Rank getRank();
+        MatchAssignment.RefereeRole getRole();
+        Long getMatches();
+        BigDecimal getAmount();
+    }
+    
+    interface LineExportRow {
+        Long getRefereeId();
+        String getRefereeName();
+        LocalDateTime getMatchDate();
+        String getTournamentName();
+        MatchAssignment.RefereeRole getRole();
+        BigDecimal getAmount();
+    }
+}
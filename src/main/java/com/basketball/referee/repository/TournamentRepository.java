@@ -1,12 +1,16 @@
 package com.basketball.referee.repository;
 
 import com.basketball.referee.model.Tournament;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface TournamentRepository extends JpaRepository<Tournament, Long> {
@@ -24,4 +28,11 @@ public interface TournamentRepository extends JpaRepository<Tournament, Long> {
     List<Tournament> findCurrentTournaments();
     
     List<Tournament> findByNameContainingIgnoreCase(String name);
+
+    long countByActiveTrue();
+
+    // Serializes writers of the tournament's fee matrix and fixture
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Tournament t WHERE t.id = :id")
+    Optional<Tournament> lockById(@Param("id") Long id);
 }
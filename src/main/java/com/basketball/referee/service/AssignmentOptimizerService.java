@@ -0,0 +1,472 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.Match;
+import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.model.Referee;
+import com.basketball.referee.repository.MatchAssignmentRepository;
+import com.basketball.referee.repository.MatchAssignmentRepository.RefereeBooking;
+import com.basketball.referee.repository.MatchRepository;
+import com.basketball.referee.repository.RefereeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Proposes referees for every open role of the programmed matches in a
+ * period.
+ *
+ * Matches are grouped into blocks of matches that are all being played at
+ * the same moment. Within a block every referee can take at most one role, so
+ * each block is a min-cost assignment between open roles and referees, solved
+ * exactly with the Hungarian method. A referee is eligible for a role when
+ * their specialty covers it, their rank reaches the tournament's required
+ * rank, and they are free once the travel buffer to or from another court is
+ * counted. The cost grows with the referee's load in the period, so work is
+ * spread out. Blocks go in time order and each one sees the referees booked
+ * by earlier blocks, so a referee can take back-to-back matches that do not
+ * overlap, and the travel buffer between blocks is checked on the timelines.
+ */
+@Service
+@Transactional
+public class AssignmentOptimizerService {
+
+    public static final List<MatchAssignment.RefereeRole> DEFAULT_ROLES = List.of(
+        MatchAssignment.RefereeRole.FIRST_REFEREE, MatchAssignment.RefereeRole.SECOND_REFEREE,
+        MatchAssignment.RefereeRole.ANNOTATOR, MatchAssignment.RefereeRole.TIMEKEEPER);
+
+    private static final Set<MatchAssignment.RefereeRole> FIELD_ROLES = EnumSet.of(
+        MatchAssignment.RefereeRole.FIRST_REFEREE, MatchAssignment.RefereeRole.SECOND_REFEREE,
+        MatchAssignment.RefereeRole.THIRD_REFEREE);
+
+    // Leaving a role open costs less than any forbidden pairing and more than any allowed one
+    private static final long FORBIDDEN = 1_000_000_000L;
+    private static final long UNFILLED = 1_000_000L;
+    private static final long WORKLOAD_WEIGHT = 100;
+    private static final long RANK_SURPLUS_WEIGHT = 10;
+    private static final long BOTH_ON_TABLE_WEIGHT = 5;
+
+    @Autowired
+    private MatchRepository matchRepository;
+
+    @Autowired
+    private MatchAssignmentRepository assignmentRepository;
+
+    @Autowired
+    private RefereeRepository refereeRepository;
+
+    @Autowired
+    private CourtScheduleIndex courtScheduleIndex;
+
+    @Autowired
+    private MatchAssignmentService assignmentService;
+
+    @Transactional(readOnly = true)
+    public Proposal propose(LocalDate from, LocalDate to, Long tournamentId,
+                            List<MatchAssignment.RefereeRole> roles, int travelBufferMinutes) {
+        long started = System.nanoTime();
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new RuntimeException("El rango de fechas no es válido");
+        }
+        if (roles == null || roles.isEmpty()) {
+            roles = DEFAULT_ROLES;
+        }
+        int duration = courtScheduleIndex.getDurationMinutes();
+        int buffer = Math.max(0, travelBufferMinutes);
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.atTime(LocalTime.MAX);
+
+        List<Match> matches = matchRepository.findProgrammedForAssignment(start, end, tournamentId);
+        List<Referee> referees = refereeRepository.findActiveWithUser();
+        Map<Long, Integer> refereeIndex = new HashMap<>();
+        Timeline[] timelines = new Timeline[referees.size()];
+        int[] load = new int[referees.size()];
+        for (int r = 0; r < referees.size(); r++) {
+            refereeIndex.put(referees.get(r).getId(), r);
+            timelines[r] = new Timeline(duration, buffer);
+        }
+
+        Set<String> filledRoles = new HashSet<>();
+        for (RefereeBooking booking : assignmentRepository.findBookingsBetween(
+                start.minusMinutes(duration + buffer), end.plusMinutes(buffer))) {
+            filledRoles.add(booking.getMatchId() + "/" + booking.getRole());
+            Integer r = refereeIndex.get(booking.getRefereeId());
+            if (r == null) {
+                continue;
+            }
+            timelines[r].add(booking.getDateHour(), booking.getCourtId());
+            if (!booking.getDateHour().isBefore(start) && !booking.getDateHour().isAfter(end)) {
+                load[r]++;
+            }
+        }
+
+        Proposal proposal = new Proposal();
+        proposal.matches = matches.size();
+        int i = 0;
+        while (i < matches.size()) {
+            // A block is every match starting while the first one is still being played, so all of them
+            // overlap each other; the block end is not extended, or a busy day would chain into one block
+            int j = i;
+            LocalDateTime blockEnd = matches.get(i).getDateHour().plusMinutes(duration);
+            List<Slot> slots = new ArrayList<>();
+            while (j < matches.size() && (j == i || matches.get(j).getDateHour().isBefore(blockEnd))) {
+                Match match = matches.get(j);
+                for (MatchAssignment.RefereeRole role : roles) {
+                    if (!filledRoles.contains(match.getId() + "/" + role)) {
+                        slots.add(new Slot(match, role));
+                    }
+                }
+                j++;
+            }
+            assignBlock(slots, referees, timelines, load, proposal);
+            i = j;
+        }
+
+        proposal.slots = proposal.assignments.size() + proposal.unfilled.size();
+        for (int r = 0; r < referees.size(); r++) {
+            if (load[r] > proposal.maxLoad) {
+                proposal.maxLoad = load[r];
+            }
+        }
+        proposal.assignments.sort(Comparator.comparing(ProposedAssignment::getDateHour)
+            .thenComparing(ProposedAssignment::getMatchId).thenComparing(a -> a.getRole().ordinal()));
+        proposal.elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        return proposal;
+    }
+
+    /**
+     * Stores the accepted proposals, given as "matchId:refereeId:ROLE", as
+     * PENDING assignments with one batched insert. Every entry is checked
+     * again as {@link #propose} would: the match must still be programmed,
+     * the role and the referee still free on it, the referee still active and
+     * qualified, and free at that time with {@code travelBufferMinutes}
+     * counted between courts. Entries that fail are skipped. Returns the
+     * number of assignments created.
+     */
+    public int apply(List<String> selections, int travelBufferMinutes) {
+        Map<String, long[]> requested = new LinkedHashMap<>();
+        Map<String, MatchAssignment.RefereeRole> requestedRoles = new HashMap<>();
+        for (String selection : selections) {
+            String[] parts = selection.split(":");
+            if (parts.length != 3) {
+                throw new RuntimeException("Propuesta inválida: " + selection);
+            }
+            long matchId = Long.parseLong(parts[0]);
+            long refereeId = Long.parseLong(parts[1]);
+            MatchAssignment.RefereeRole role = MatchAssignment.RefereeRole.valueOf(parts[2]);
+            String key = matchId + "/" + role;
+            requested.putIfAbsent(key, new long[] {matchId, refereeId});
+            requestedRoles.putIfAbsent(key, role);
+        }
+        if (requested.isEmpty()) {
+            return 0;
+        }
+        // Other assignments of these referees wait until this batch is checked and inserted
+        Set<Long> refereeIds = new HashSet<>();
+        requested.values().forEach(ids -> refereeIds.add(ids[1]));
+        Map<Long, Referee> referees = new HashMap<>();
+        for (Referee referee : refereeRepository.lockByIds(refereeIds)) {
+            if (referee.isActive()) {
+                referees.put(referee.getId(), referee);
+            }
+        }
+
+        Set<Long> matchIds = new HashSet<>();
+        requested.values().forEach(ids -> matchIds.add(ids[0]));
+        Map<Long, Match> matches = new HashMap<>();
+        matchRepository.findProgrammedForAssignmentByIds(matchIds).forEach(match -> matches.put(match.getId(), match));
+        if (matches.isEmpty() || referees.isEmpty()) {
+            return 0;
+        }
+
+        int duration = courtScheduleIndex.getDurationMinutes();
+        int buffer = Math.max(0, travelBufferMinutes);
+        LocalDateTime first = matches.values().stream().map(Match::getDateHour).min(Comparator.naturalOrder()).get();
+        LocalDateTime last = matches.values().stream().map(Match::getDateHour).max(Comparator.naturalOrder()).get();
+        Map<Long, Timeline> timelines = new HashMap<>();
+        referees.keySet().forEach(id -> timelines.put(id, new Timeline(duration, buffer)));
+        Set<String> takenRoles = new HashSet<>();
+        Set<String> takenReferees = new HashSet<>();
+        for (RefereeBooking booking : assignmentRepository.findBookingsBetween(
+                first.minusMinutes(duration + buffer), last.plusMinutes(duration + buffer))) {
+            if (matches.containsKey(booking.getMatchId())) {
+                takenRoles.add(booking.getMatchId() + "/" + booking.getRole());
+                takenReferees.add(booking.getMatchId() + "/" + booking.getRefereeId());
+            }
+            Timeline timeline = timelines.get(booking.getRefereeId());
+            if (timeline != null) {
+                timeline.add(booking.getDateHour(), booking.getCourtId());
+            }
+        }
+
+        List<MatchAssignmentService.NewAssignment> rows = new ArrayList<>();
+        for (Map.Entry<String, long[]> e : requested.entrySet()) {
+            Match match = matches.get(e.getValue()[0]);
+            Referee referee = referees.get(e.getValue()[1]);
+            MatchAssignment.RefereeRole role = requestedRoles.get(e.getKey());
+            if (match == null || referee == null || takenRoles.contains(e.getKey())
+                    || takenReferees.contains(match.getId() + "/" + referee.getId())
+                    || !qualifies(referee, role, match.getTournament().getRequiredRank())) {
+                continue;
+            }
+            // Rows of this same batch go on the timeline as they are accepted
+            Timeline timeline = timelines.get(referee.getId());
+            if (!timeline.isFree(match.getDateHour(), match.getCourt().getId())) {
+                continue;
+            }
+            timeline.add(match.getDateHour(), match.getCourt().getId());
+            takenReferees.add(match.getId() + "/" + referee.getId());
+            rows.add(new MatchAssignmentService.NewAssignment(match.getId(), referee.getId(), role));
+        }
+        assignmentService.insertPending(rows);
+        return rows.size();
+    }
+
+    private void assignBlock(List<Slot> slots, List<Referee> referees, Timeline[] timelines, int[] load,
+                             Proposal proposal) {
+        if (slots.isEmpty()) {
+            return;
+        }
+        int n = slots.size();
+        int candidates = referees.size();
+        // One dummy column per slot stands for leaving it open
+        long[][] cost = new long[n][candidates + n];
+        boolean[] anyQualified = new boolean[n];
+        for (int s = 0; s < n; s++) {
+            Slot slot = slots.get(s);
+            Referee.Rank required = slot.match.getTournament().getRequiredRank();
+            for (int r = 0; r < candidates; r++) {
+                Referee referee = referees.get(r);
+                if (!qualifies(referee, slot.role, required)) {
+                    cost[s][r] = FORBIDDEN;
+                    continue;
+                }
+                anyQualified[s] = true;
+                if (!timelines[r].isFree(slot.match.getDateHour(), slot.match.getCourt().getId())) {
+                    cost[s][r] = FORBIDDEN;
+                    continue;
+                }
+                cost[s][r] = cost(referee, slot.role, required, load[r]);
+            }
+            Arrays.fill(cost[s], candidates, candidates + n, UNFILLED);
+        }
+
+        int[] chosen = Hungarian.solve(cost);
+        for (int s = 0; s < n; s++) {
+            Slot slot = slots.get(s);
+            int r = chosen[s];
+            if (r < candidates && cost[s][r] < UNFILLED) {
+                Referee referee = referees.get(r);
+                timelines[r].add(slot.match.getDateHour(), slot.match.getCourt().getId());
+                load[r]++;
+                proposal.assignments.add(new ProposedAssignment(slot.match, slot.role, referee));
+            } else {
+                proposal.unfilled.add(new UnfilledRole(slot.match, slot.role, anyQualified[s]
+                    ? "Todos los árbitros aptos están ocupados a esa hora"
+                    : "Ningún árbitro activo cumple especialidad y rango"));
+            }
+        }
+    }
+
+    private static boolean qualifies(Referee referee, MatchAssignment.RefereeRole role, Referee.Rank required) {
+        Referee.Specialty specialty = referee.getSpecialty();
+        if (specialty == null || referee.getRank() == null) {
+            return false;
+        }
+        boolean fieldRole = FIELD_ROLES.contains(role);
+        if (specialty != Referee.Specialty.BOTH
+                && specialty != (fieldRole ? Referee.Specialty.FIELD : Referee.Specialty.TABLE)) {
+            return false;
+        }
+        // Ranks are declared from highest to lowest
+        return required == null || referee.getRank().ordinal() <= required.ordinal();
+    }
+
+    // Marginal cost of squared load keeps work even; surplus rank and BOTH referees are kept for where they are needed
+    private static long cost(Referee referee, MatchAssignment.RefereeRole role, Referee.Rank required, int load) {
+        int lowest = required != null ? required.ordinal() : Referee.Rank.values().length - 1;
+        long cost = WORKLOAD_WEIGHT * (2L * load + 1)
+            + RANK_SURPLUS_WEIGHT * (lowest - referee.getRank().ordinal());
+        if (referee.getSpecialty() == Referee.Specialty.BOTH && !FIELD_ROLES.contains(role)) {
+            cost += BOTH_ON_TABLE_WEIGHT;
+        }
+        return cost;
+    }
+
+    private record Slot(Match match, MatchAssignment.RefereeRole role) {}
+
+    // Start minute -> court of every booking of one referee; all bookings last the same
+    private static final class Timeline {
+        private final TreeMap<Long, Long> byStart = new TreeMap<>();
+        private final int duration;
+        private final int buffer;
+
+        Timeline(int duration, int buffer) {
+            this.duration = duration;
+            this.buffer = buffer;
+        }
+
+        void add(LocalDateTime start, Long courtId) {
+            byStart.put(minute(start), courtId);
+        }
+
+        // Moving to another court needs the travel buffer; staying on the same court does not
+        boolean isFree(LocalDateTime start, Long courtId) {
+            long s = minute(start);
+            long reach = duration + buffer;
+            for (Map.Entry<Long, Long> other : byStart.subMap(s - reach, false, s + reach, false).entrySet()) {
+                long gap = Objects.equals(other.getValue(), courtId) ? 0 : buffer;
+                if (other.getKey() < s + duration + gap && s < other.getKey() + duration + gap) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long minute(LocalDateTime dateTime) {
+            return dateTime.toEpochSecond(ZoneOffset.UTC) / 60;
+        }
+    }
+
+    /** Min-cost assignment of every row to a distinct column; needs rows <= columns. */
+    static final class Hungarian {
+        private static final long INF = Long.MAX_VALUE / 4;
+
+        private Hungarian() {}
+
+        static int[] solve(long[][] cost) {
+            int n = cost.length;
+            int m = cost[0].length;
+            long[] u = new long[n + 1];
+            long[] v = new long[m + 1];
+            int[] rowOfColumn = new int[m + 1];
+            int[] way = new int[m + 1];
+            for (int i = 1; i <= n; i++) {
+                rowOfColumn[0] = i;
+                int j0 = 0;
+                long[] minv = new long[m + 1];
+                Arrays.fill(minv, INF);
+                boolean[] used = new boolean[m + 1];
+                do {
+                    used[j0] = true;
+                    int i0 = rowOfColumn[j0];
+                    int j1 = 0;
+                    long delta = INF;
+                    for (int j = 1; j <= m; j++) {
+                        if (!used[j]) {
+                            long current = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                            if (current < minv[j]) {
+                                minv[j] = current;
+                                way[j] = j0;
+                            }
+                            if (minv[j] < delta) {
+                                delta = minv[j];
+                                j1 = j;
+                            }
+                        }
+                    }
+                    for (int j = 0; j <= m; j++) {
+                        if (used[j]) {
+                            u[rowOfColumn[j]] += delta;
+                            v[j] -= delta;
+                        } else {
+                            minv[j] -= delta;
+                        }
+                    }
+                    j0 = j1;
+                } while (rowOfColumn[j0] != 0);
+                do {
+                    int j1 = way[j0];
+                    rowOfColumn[j0] = rowOfColumn[j1];
+                    j0 = j1;
+                } while (j0 != 0);
+            }
+            int[] columnOfRow = new int[n];
+            for (int j = 1; j <= m; j++) {
+                if (rowOfColumn[j] != 0) {
+                    columnOfRow[rowOfColumn[j] - 1] = j - 1;
+                }
+            }
+            return columnOfRow;
+        }
+    }
+
+    public static class Proposal {
+        private int matches;
+        private int slots;
+        private int maxLoad;
+        private long elapsedMillis;
+        private final List<ProposedAssignment> assignments = new ArrayList<>();
+        private final List<UnfilledRole> unfilled = new ArrayList<>();
+
+        public int getMatches() { return matches; }
+        public int getSlots() { return slots; }
+        // Highest number of assignments any referee ends up with in the period, bookings included
+        public int getMaxLoad() { return maxLoad; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public List<ProposedAssignment> getAssignments() { return assignments; }
+        public List<UnfilledRole> getUnfilled() { return unfilled; }
+    }
+
+    public static class ProposedAssignment {
+        private final Long matchId;
+        private final String matchDescription;
+        private final LocalDateTime dateHour;
+        private final String courtName;
+        private final MatchAssignment.RefereeRole role;
+        private final Long refereeId;
+        private final String refereeName;
+        private final Referee.Rank rank;
+
+        ProposedAssignment(Match match, MatchAssignment.RefereeRole role, Referee referee) {
+            this.matchId = match.getId();
+            this.matchDescription = match.getLocalTeam() + " vs " + match.getVisitorTeam();
+            this.dateHour = match.getDateHour();
+            this.courtName = match.getCourt().getName();
+            this.role = role;
+            this.refereeId = referee.getId();
+            this.refereeName = referee.getUser().getFullName();
+            this.rank = referee.getRank();
+        }
+
+        public Long getMatchId() { return matchId; }
+        public String getMatchDescription() { return matchDescription; }
+        public LocalDateTime getDateHour() { return dateHour; }
+        public String getCourtName() { return courtName; }
+        public MatchAssignment.RefereeRole getRole() { return role; }
+        public Long getRefereeId() { return refereeId; }
+        public String getRefereeName() { return refereeName; }
+        public Referee.Rank getRank() { return rank; }
+
+        // Value posted back when the proposal is accepted
+        public String getKey() { return matchId + ":" + refereeId + ":" + role.name(); }
+    }
+
+    public static class UnfilledRole {
+        private final Long matchId;
+        private final String matchDescription;
+        private final LocalDateTime dateHour;
+        private final MatchAssignment.RefereeRole role;
+        private final String reason;
+
+        UnfilledRole(Match match, MatchAssignment.RefereeRole role, String reason) {
+            this.matchId = match.getId();
+            this.matchDescription = match.getLocalTeam() + " vs " + match.getVisitorTeam();
+            this.dateHour = match.getDateHour();
+            this.role = role;
+            this.reason = reason;
+        }
+
+        public Long getMatchId() { return matchId; }
+        public String getMatchDescription() { return matchDescription; }
+        public LocalDateTime getDateHour() { return dateHour; }
+        public MatchAssignment.RefereeRole getRole() { return role; }
+        public String getReason() { return reason; }
+    }
+}
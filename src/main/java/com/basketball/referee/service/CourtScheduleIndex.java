@@ -0,0 +1,165 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.Match;
+import com.basketball.referee.repository.MatchRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-court index of the time each non-cancelled match holds its court,
+ * loaded on first use from the court's matches. Every match is taken to last
+ * {@code matches.duration-minutes}, so the matches overlapping a time are
+ * found with one range lookup on start times instead of a scan of the court's
+ * history.
+ *
+ * A match change evicts its courts instead of patching them: while the
+ * changing transaction is open its courts are read from the database on every
+ * call and not cached, and they are evicted again when it ends. A patch
+ * applied after commit could miss an entry that was still being loaded, or
+ * land on one loaded after the commit that already had it. Callers that
+ * check a court before booking it lock the court row first, so the check and
+ * the booking cannot interleave with another booking of the same court.
+ */
+@Service
+public class CourtScheduleIndex {
+
+    private static final Comparator<Booking> BY_START =
+        Comparator.comparing(Booking::getStart).thenComparing(Booking::getMatchId);
+
+    @Autowired
+    private MatchRepository matchRepository;
+
+    @Value("${matches.duration-minutes:120}")
+    private int durationMinutes;
+
+    private final Map<Long, CourtBookings> courts = new ConcurrentHashMap<>();
+    // Courts with a match change in a transaction that has not finished yet
+    private final Map<Long, Integer> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Matches on the court that overlap a match starting at {@code dateHour},
+     * leaving out {@code excludeMatchId} (the match being edited, may be null).
+     */
+    public List<Booking> findOverlaps(Long courtId, LocalDateTime dateHour, Long excludeMatchId) {
+        if (courtId == null || dateHour == null) {
+            return List.of();
+        }
+        List<Booking> overlaps =
+            bookings(courtId).overlapping(dateHour, dateHour.plusMinutes(durationMinutes), durationMinutes);
+        overlaps.removeIf(booking -> booking.getMatchId().equals(excludeMatchId));
+        return overlaps;
+    }
+
+    /** Matches on the court holding it at any time in [from, to), by start. */
+    public List<Booking> findBetween(Long courtId, LocalDateTime from, LocalDateTime to) {
+        return bookings(courtId).overlapping(from, to, durationMinutes);
+    }
+
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    /**
+     * Evicts the courts the match holds now and held before the change.
+     * {@code previousCourtId} is the court it held before, if it moved.
+     */
+    public void onSave(Match match, Long previousCourtId) {
+        Set<Long> ids = new HashSet<>();
+        ids.add(match.getCourt().getId());
+        if (previousCourtId != null) {
+            ids.add(previousCourtId);
+        }
+        evict(ids);
+    }
+
+    public void onDelete(Long courtId, Long matchId) {
+        evict(List.of(courtId));
+    }
+
+    // Also for writes that bypass the entities (bulk inserts); the courts are reloaded on next use
+    public void evict(Collection<Long> courtIds) {
+        List<Long> ids = List.copyOf(courtIds);
+        for (Long id : ids) {
+            writers.merge(id, 1, Integer::sum);
+            courts.remove(id);
+        }
+        TransactionHooks.afterCompletion(() -> {
+            for (Long id : ids) {
+                writers.computeIfPresent(id, (key, count) -> count == 1 ? null : count - 1);
+                courts.remove(id);
+            }
+        });
+    }
+
+    private CourtBookings bookings(Long courtId) {
+        if (writers.containsKey(courtId)) {
+            return load(courtId);
+        }
+        return courts.computeIfAbsent(courtId, this::load);
+    }
+
+    private CourtBookings load(Long courtId) {
+        CourtBookings court = new CourtBookings();
+        for (Match match : matchRepository.findByCourtId(courtId)) {
+            if (match.getState() != Match.MatchState.CANCELED) {
+                court.add(new Booking(match, durationMinutes));
+            }
+        }
+        return court;
+    }
+
+    private static final class CourtBookings {
+        private final NavigableSet<Booking> byStart = new TreeSet<>(BY_START);
+
+        synchronized void add(Booking booking) {
+            byStart.add(booking);
+        }
+
+        // Every booking lasts durationMinutes, so only those starting in (start - duration, end) can overlap
+        synchronized List<Booking> overlapping(LocalDateTime start, LocalDateTime end, int durationMinutes) {
+            Booking from = Booking.probe(start.minusMinutes(durationMinutes), Long.MAX_VALUE);
+            Booking to = Booking.probe(end, Long.MIN_VALUE);
+            return new ArrayList<>(byStart.subSet(from, false, to, false));
+        }
+    }
+
+    // Immutable copy of what the index needs from a match
+    public static class Booking {
+        private final Long matchId;
+        private final Long tournamentId;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final String description;
+
+        Booking(Match match, int durationMinutes) {
+            this.matchId = match.getId();
+            this.tournamentId = match.getTournament().getId();
+            this.start = match.getDateHour();
+            this.end = match.getDateHour().plusMinutes(durationMinutes);
+            this.description = match.getLocalTeam() + " vs " + match.getVisitorTeam();
+        }
+
+        private Booking(LocalDateTime start, Long matchId) {
+            this.matchId = matchId;
+            this.tournamentId = null;
+            this.start = start;
+            this.end = start;
+            this.description = null;
+        }
+
+        static Booking probe(LocalDateTime start, long matchId) {
+            return new Booking(start, matchId);
+        }
+
+        public Long getMatchId() { return matchId; }
+        public Long getTournamentId() { return tournamentId; }
+        public LocalDateTime getStart() { return start; }
+        public LocalDateTime getEnd() { return end; }
+        public String getDescription() { return description; }
+    }
+}
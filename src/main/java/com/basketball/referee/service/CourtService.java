@@ -17,6 +17,12 @@ public class CourtService {
     @Autowired
     private CourtRepository courtRepository;
 
+    @Autowired
+    private MatchCalendarService calendarService;
+
+    @Autowired
+    private StatisticsRegistry statistics;
+
     public List<Court> findAll() {
         return courtRepository.findAll();
     }
@@ -46,11 +52,13 @@ public class CourtService {
     }
 
     public Court save(Court court) {
+        statistics.invalidate();
         return courtRepository.save(court);
     }
 
     public Court create(Court court) {
         court.setActive(true);
+        statistics.activeChanged(StatisticsRegistry.Counter.COURTS, false, true);
         return courtRepository.save(court);
     }
 
@@ -61,6 +69,7 @@ public class CourtService {
             court.setName(courtDetails.getName());
             court.setCity(courtDetails.getCity()); // Fixed field name to match model
             court.setAddress(courtDetails.getAddress()); // Added capacity field
+            calendarService.evictAll();
             return courtRepository.save(court);
         }
         throw new RuntimeException("Court no encontrada");
@@ -72,15 +81,17 @@ public class CourtService {
             Court court = courtOpt.get();
             court.setActive(!court.isActive());
             courtRepository.save(court);
+            statistics.activeChanged(StatisticsRegistry.Counter.COURTS, !court.isActive(), court.isActive());
         }
     }
 
     public void deleteById(Long id) {
         courtRepository.deleteById(id);
+        statistics.invalidate();
     }
 
     public long countActive() {
-        return courtRepository.findByActiveTrue().size();
+        return statistics.countActive(StatisticsRegistry.Counter.COURTS);
     }
 
     public List<Court> findByFilters(String search, String active) {
@@ -0,0 +1,149 @@
+package com.basketball.referee.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Emails each digest to the referee. With {@code notifications.email.host}
+ * set, it speaks plain SMTP to that server (a local catcher such as MailHog
+ * in development); otherwise the message is only written to the log.
+ */
+@Service
+public class EmailNotificationChannel implements NotificationChannel {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailNotificationChannel.class);
+    private static final int TIMEOUT_MILLIS = 10_000;
+    // 45 UTF-8 bytes are 60 Base64 characters, which keeps each encoded word under RFC 2047's 75
+    private static final int ENCODED_WORD_BYTES = 45;
+
+    @Value("${notifications.email.enabled:true}")
+    private boolean enabled;
+
+    @Value("${notifications.email.host:}")
+    private String host;
+
+    @Value("${notifications.email.port:1025}")
+    private int port;
+
+    @Value("${notifications.email.from:no-reply@caba-pro.local}")
+    private String from;
+
+    @Override
+    public String getName() {
+        return "email";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void deliver(NotificationDigest digest) throws IOException {
+        if (digest.getEmail() == null || digest.getEmail().isBlank()) {
+            log.info("Árbitro {} sin email, se omite la notificación", digest.getRefereeId());
+            return;
+        }
+        if (host == null || host.isBlank()) {
+            log.info("Email para {} <{}>: {}\n{}", digest.getRefereeName(), digest.getEmail(),
+                digest.getSubject(), digest.getBody());
+            return;
+        }
+        send(digest.getEmail(), digest.getSubject(), digest.getBody());
+    }
+
+    private void send(String to, String subject, String body) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), TIMEOUT_MILLIS);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            expect(in, 220);
+            command(out, in, "HELO localhost", 250);
+            command(out, in, "MAIL FROM:<" + from + ">", 250);
+            command(out, in, "RCPT TO:<" + to + ">", 250);
+            command(out, in, "DATA", 354);
+            out.write("From: " + from + "\r\n");
+            out.write("To: " + to + "\r\n");
+            out.write("Subject: " + encodeHeader(subject) + "\r\n");
+            out.write("MIME-Version: 1.0\r\n");
+            out.write("Content-Type: text/plain; charset=UTF-8\r\n\r\n");
+            for (String line : body.split("\n")) {
+                // Dot-stuffing, so a line with a single dot does not end the message
+                out.write((line.startsWith(".") ? "." : "") + line + "\r\n");
+            }
+            command(out, in, ".", 250);
+            command(out, in, "QUIT", 221);
+        }
+    }
+
+    /**
+     * Headers may only hold ASCII, so a subject with accents or team names in
+     * other scripts is sent as RFC 2047 encoded words, folded onto
+     * continuation lines. Words are split on code points, never inside one.
+     */
+    static String encodeHeader(String value) {
+        if (value.chars().allMatch(c -> c >= 0x20 && c < 0x7f)) {
+            return value;
+        }
+        StringBuilder header = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        int wordBytes = 0;
+        for (int i = 0; i < value.length(); ) {
+            int codePoint = value.codePointAt(i);
+            String character = new String(Character.toChars(codePoint));
+            int bytes = character.getBytes(StandardCharsets.UTF_8).length;
+            if (wordBytes + bytes > ENCODED_WORD_BYTES) {
+                appendEncodedWord(header, word.toString());
+                word.setLength(0);
+                wordBytes = 0;
+            }
+            word.append(character);
+            wordBytes += bytes;
+            i += Character.charCount(codePoint);
+        }
+        appendEncodedWord(header, word.toString());
+        return header.toString();
+    }
+
+    private static void appendEncodedWord(StringBuilder header, String text) {
+        if (!header.isEmpty()) {
+            header.append("\r\n ");
+        }
+        header.append("=?UTF-8?B?")
+            .append(Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8)))
+            .append("?=");
+    }
+
+    private static void command(Writer out, BufferedReader in, String line, int expected) throws IOException {
+        out.write(line + "\r\n");
+        out.flush();
+        expect(in, expected);
+    }
+
+    // Multi-line replies repeat the code followed by '-' on every line but the last
+    private static void expect(BufferedReader in, int expected) throws IOException {
+        String reply;
+        do {
+            reply = in.readLine();
+            if (reply == null) {
+                throw new IOException("El servidor SMTP cerró la conexión");
+            }
+        } while (reply.length() > 3 && reply.charAt(3) == '-');
+        if (!reply.startsWith(String.valueOf(expected))) {
+            throw new IOException("Respuesta SMTP inesperada: " + reply);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.Fee;
+import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.model.Referee;
+import com.basketball.referee.repository.FeeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-tournament fee matrix indexed by rank and role ordinal. Each cell holds
+ * the fee versions of that combination keyed by effective-from date, so the
+ * amount in force on a given day is a floor lookup and pricing an assignment
+ * needs no query once the tournament has been loaded. Inactive fees are left
+ * out: they do not price anything until they are switched back on.
+ */
+@Component
+public class FeeMatrixCache {
+
+    private static final Logger log = LoggerFactory.getLogger(FeeMatrixCache.class);
+
+    private static final int RANKS = Referee.Rank.values().length;
+    private static final int ROLES = MatchAssignment.RefereeRole.values().length;
+
+    @Autowired
+    private FeeRepository feeRepository;
+
+    private final Map<Long, FeeSchedule[]> matrices = new ConcurrentHashMap<>();
+    // Tournaments with a fee change in a transaction that has not finished yet
+    private final Map<Long, Integer> writers = new ConcurrentHashMap<>();
+    // Bumped when a fee change starts and when it ends, so a load that overlapped one is not cached
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public BigDecimal getAmount(Long tournamentId, Referee.Rank rank, MatchAssignment.RefereeRole role, LocalDate date) {
+        return getSchedule(tournamentId, rank, role).amountAt(date);
+    }
+
+    /**
+     * While a transaction that changed the tournament's fees is open, the
+     * matrix is read from the database on every call and not cached: the
+     * writing transaction would otherwise share its uncommitted rows, and
+     * could itself be handed a matrix another request cached before them.
+     */
+    public FeeSchedule getSchedule(Long tournamentId, Referee.Rank rank, MatchAssignment.RefereeRole role) {
+        if (writers.containsKey(tournamentId)) {
+            misses.incrementAndGet();
+            return cell(load(tournamentId), rank, role);
+        }
+        FeeSchedule[] matrix = matrices.get(tournamentId);
+        if (matrix != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            // Loaded outside the map so the query does not hold the bin lock other tournaments hash to
+            long generation = evictions.get();
+            FeeSchedule[] loaded = load(tournamentId);
+            if (evictions.get() == generation && !writers.containsKey(tournamentId)) {
+                FeeSchedule[] cached = matrices.putIfAbsent(tournamentId, loaded);
+                matrix = cached != null ? cached : loaded;
+            } else {
+                matrix = loaded;
+            }
+        }
+        return cell(matrix, rank, role);
+    }
+
+    /** The combination's versions as the current transaction sees them, never cached. */
+    public FeeSchedule loadSchedule(Long tournamentId, Referee.Rank rank, MatchAssignment.RefereeRole role) {
+        return cell(load(tournamentId), rank, role);
+    }
+
+    /**
+     * Drops the tournament's matrix now and again once the surrounding
+     * transaction ends, committed or rolled back, so neither a concurrent
+     * reload nor a rolled back change stays cached. Until then the
+     * tournament is not cached at all.
+     */
+    public void evict(Long tournamentId) {
+        if (tournamentId == null) {
+            return;
+        }
+        writers.merge(tournamentId, 1, Integer::sum);
+        evictions.incrementAndGet();
+        matrices.remove(tournamentId);
+        TransactionHooks.afterCompletion(() -> {
+            writers.computeIfPresent(tournamentId, (id, count) -> count == 1 ? null : count - 1);
+            evictions.incrementAndGet();
+            matrices.remove(tournamentId);
+        });
+    }
+
+    public void evictAll() {
+        matrices.clear();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("tournaments", (long) matrices.size());
+        return stats;
+    }
+
+    private FeeSchedule[] load(Long tournamentId) {
+        List<List<Fee>> versions = new ArrayList<>(Collections.nCopies(RANKS * ROLES, null));
+        for (Fee fee : feeRepository.findByTournamentIdAndActiveTrue(tournamentId)) {
+            int i = index(fee.getRank(), fee.getRole());
+            if (versions.get(i) == null) {
+                versions.set(i, new ArrayList<>());
+            }
+            versions.get(i).add(fee);
+        }
+
+        FeeSchedule[] matrix = new FeeSchedule[RANKS * ROLES];
+        for (int i = 0; i < matrix.length; i++) {
+            if (versions.get(i) != null) {
+                matrix[i] = FeeSchedule.of(versions.get(i));
+            }
+        }
+        return matrix;
+    }
+
+    private static FeeSchedule cell(FeeSchedule[] matrix, Referee.Rank rank, MatchAssignment.RefereeRole role) {
+        FeeSchedule schedule = matrix[index(rank, role)];
+        return schedule != null ? schedule : FeeSchedule.EMPTY;
+    }
+
+    private static int index(Referee.Rank rank, MatchAssignment.RefereeRole role) {
+        return rank.ordinal() * ROLES + role.ordinal();
+    }
+
+    /**
+     * Immutable fee versions of one (tournament, rank, role) combination. A
+     * version prices from its effective-from day until its effective-to day;
+     * a day past the end of the latest version that started before it falls
+     * back to the previous one still in force.
+     */
+    public static final class FeeSchedule {
+
+        static final FeeSchedule EMPTY = new FeeSchedule(new TreeMap<>());
+
+        private final NavigableMap<LocalDate, Version> versions;
+
+        private FeeSchedule(NavigableMap<LocalDate, Version> versions) {
+            this.versions = versions;
+        }
+
+        /**
+         * Builds the schedule from the combination's active rows. Versions
+         * starting the same day, or both without a start, are rejected when
+         * fees are saved; rows left over from before that check are resolved
+         * in favour of the most recent id, and logged so they can be cleaned
+         * up.
+         */
+        static FeeSchedule of(Collection<Fee> fees) {
+            NavigableMap<LocalDate, Fee> byStart = new TreeMap<>();
+            for (Fee fee : fees) {
+                LocalDate from = fee.getEffectiveFrom() != null ? fee.getEffectiveFrom() : LocalDate.MIN;
+                Fee current = byStart.putIfAbsent(from, fee);
+                if (current != null) {
+                    Fee winner = preferred(current, fee);
+                    byStart.put(from, winner);
+                    log.warn("Fees {} y {} comienzan el mismo día ({}); se usa la fee {}", current.getId(),
+                        fee.getId(), fee.getEffectiveFrom() != null ? fee.getEffectiveFrom() : "sin fecha",
+                        winner.getId());
+                }
+            }
+            NavigableMap<LocalDate, Version> versions = new TreeMap<>();
+            byStart.forEach((from, fee) -> versions.put(from, new Version(fee.getEffectiveTo(), fee.getAmount())));
+            return new FeeSchedule(Collections.unmodifiableNavigableMap(versions));
+        }
+
+        private static Fee preferred(Fee a, Fee b) {
+            Comparator<Fee> byId = Comparator.comparing(Fee::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+            return byId.compare(a, b) >= 0 ? a : b;
+        }
+
+        public BigDecimal amountAt(LocalDate date) {
+            for (Map.Entry<LocalDate, Version> entry = versions.floorEntry(date); entry != null;
+                 entry = versions.lowerEntry(entry.getKey())) {
+                Version version = entry.getValue();
+                if (version.effectiveTo() == null || !date.isAfter(version.effectiveTo())) {
+                    return version.amount();
+                }
+            }
+            return BigDecimal.ZERO;
+        }
+
+        public boolean isEmpty() {
+            return versions.isEmpty();
+        }
+
+        private record Version(LocalDate effectiveTo, BigDecimal amount) {}
+    }
+}
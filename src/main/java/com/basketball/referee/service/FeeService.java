@@ -2,13 +2,22 @@ package com.basketball.referee.service;
 
 import com.basketball.referee.model.*;
 import com.basketball.referee.repository.FeeRepository;
+import com.basketball.referee.repository.FeeSpecifications;
+import com.basketball.referee.repository.TournamentRepository;
+import com.basketball.referee.service.FeeMatrixCache.FeeSchedule;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.util.List;
-import java.util.Optional;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
 
 @Service
 @Transactional
@@ -17,6 +26,29 @@ public class FeeService {
     @Autowired
     private FeeRepository feeRepository;
 
+    @Autowired
+    private TournamentRepository tournamentRepository;
+
+    @Autowired
+    private FeeMatrixCache feeMatrixCache;
+
+    @Autowired
+    private SettlementLedgerService ledgerService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private Environment environment;
+
+    private static final Map<Referee.Rank, BigDecimal> DEFAULT_BASE_AMOUNTS = new EnumMap<>(Map.of(
+        Referee.Rank.FIBA, new BigDecimal("1500000.00"),
+        Referee.Rank.FIRST, new BigDecimal("800000.00"),
+        Referee.Rank.SECOND, new BigDecimal("500000.00"),
+        Referee.Rank.THIRD, new BigDecimal("300000.00"),
+        Referee.Rank.FORMATION, new BigDecimal("150000.00")
+    ));
+
     public List<Fee> findAll() {
         return feeRepository.findAll();
     }
@@ -37,88 +69,246 @@ public class FeeService {
         return feeRepository.findByRank(rank);
     }
 
+    // The version of the combination in force today
     public Optional<Fee> findByTournamentRankAndRol(Long tournamentId, Referee.Rank rank, MatchAssignment.RefereeRole role) {
-        return feeRepository.findByTournamentIdAndRankAndRole(tournamentId, rank, role);
+        LocalDate today = LocalDate.now();
+        return feeRepository.findByTournamentIdAndRankAndRole(tournamentId, rank, role).stream()
+            .filter(f -> f.getEffectiveFrom() == null || !f.getEffectiveFrom().isAfter(today))
+            .filter(f -> f.getEffectiveTo() == null || !f.getEffectiveTo().isBefore(today))
+            .max(Comparator.comparing(Fee::getEffectiveFrom, Comparator.nullsFirst(Comparator.naturalOrder())));
     }
 
     public Fee save(Fee fee) {
-        return feeRepository.save(fee);
+        Fee saved = feeRepository.save(fee);
+        feeMatrixCache.evict(saved.getTournament().getId());
+        return saved;
     }
 
     public Fee create(Fee fee, BigDecimal amountTournament) {
+        lockTournament(fee.getTournament().getId());
+        checkNoOverlap(fee, fee.getEffectiveFrom(), fee.getEffectiveTo(), null);
         fee.setActive(true);
-        BigDecimal amountBase;
-        if (fee.getRank() == Referee.Rank.FIBA){ amountBase = new BigDecimal("1500000.00"); }
-        else if (fee.getRank() == Referee.Rank.FIRST){amountBase = new BigDecimal("800000.00");}
-        else if (fee.getRank() == Referee.Rank.SECOND){amountBase = new BigDecimal("500000.00");}
-        else if (fee.getRank() == Referee.Rank.THIRD){amountBase = new BigDecimal("300000.00");}
-        else if (fee.getRank() == Referee.Rank.FORMATION){amountBase = new BigDecimal("150000.00");}
-        else {amountBase = new BigDecimal("100000.00");}
-        fee.setAmount(amountBase.add(amountTournament));
-        return feeRepository.save(fee);
-    }
-
-    public Fee update(Long id, Fee feeDetails) {
+        fee.setAmount(baseAmount(fee.getRank()).add(amountTournament));
+        Map<FeeCombination, FeeSchedule> before = snapshotPrices(FeeCombination.of(fee));
+        Fee saved = feeRepository.save(fee);
+        applyPriceChanges(before);
+        return saved;
+    }
+
+    /**
+     * Creates an active fee for every rank and role combination the tournament
+     * does not have yet, priced as the rank's base amount plus the tournament
+     * surcharge. Existing fees are left untouched, so running it again only
+     * fills gaps. Rows are written in a single JDBC batch because identity ids
+     * keep Hibernate from batching inserts. The tournament row is locked
+     * first, so two runs cannot both see the same gap and fill it twice.
+     * Returns the number of fees created.
+     */
+    public int generateMatrix(Long tournamentId, BigDecimal amountTournament) {
+        lockTournament(tournamentId);
+        Set<FeeCombination> existing = new HashSet<>();
+        for (Fee fee : feeRepository.findByTournamentId(tournamentId)) {
+            existing.add(FeeCombination.of(fee));
+        }
+
+        List<FeeCombination> missing = new ArrayList<>();
+        for (Referee.Rank rank : Referee.Rank.values()) {
+            for (MatchAssignment.RefereeRole role : MatchAssignment.RefereeRole.values()) {
+                FeeCombination c = new FeeCombination(tournamentId, rank, role);
+                if (!existing.contains(c)) {
+                    missing.add(c);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+
+        Map<FeeCombination, FeeSchedule> before = snapshotPrices(missing.toArray(new FeeCombination[0]));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate("""
+            INSERT INTO fee (tournament_id, rank, role, amount, active, created_at, updated_at)
+            VALUES (?, ?, ?, ?, TRUE, ?, ?)
+            """, missing, missing.size(), (ps, c) -> {
+                ps.setLong(1, tournamentId);
+                ps.setString(2, c.rank().name());
+                ps.setString(3, c.role().name());
+                ps.setBigDecimal(4, baseAmount(c.rank()).add(amountTournament));
+                ps.setTimestamp(5, now);
+                ps.setTimestamp(6, now);
+            });
+        applyPriceChanges(before);
+        return missing.size();
+    }
+
+    /**
+     * Locks the tournament until the transaction ends. Writers of its fees
+     * take this lock before reading what exists, in id order when there are
+     * two: the unique constraint on
+     * the version start does not cover undated fees, since NULLs never clash.
+     */
+    private void lockTournament(Long tournamentId) {
+        tournamentRepository.lockById(tournamentId)
+            .orElseThrow(() -> new RuntimeException("Torneo no encontrado"));
+    }
+
+    /**
+     * Rejects a version of the combination {@code fee} belongs to that would
+     * cover days another version already covers, which includes starting the
+     * same day or both having no start. {@code ignoredId} is the row the
+     * version replaces or is cut from, if any. Callers hold the tournament
+     * lock, so no other version can appear before they save.
+     */
+    private void checkNoOverlap(Fee fee, LocalDate from, LocalDate to, Long ignoredId) {
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new RuntimeException("La fecha de fin de la fee es anterior a la de inicio");
+        }
+        for (Fee other : feeRepository.findByTournamentIdAndRankAndRole(fee.getTournament().getId(), fee.getRank(),
+                fee.getRole())) {
+            if (other.getId().equals(ignoredId)) {
+                continue;
+            }
+            boolean startsBeforeOtherEnds = from == null || other.getEffectiveTo() == null
+                || !from.isAfter(other.getEffectiveTo());
+            boolean endsAfterOtherStarts = to == null || other.getEffectiveFrom() == null
+                || !to.isBefore(other.getEffectiveFrom());
+            if (startsBeforeOtherEnds && endsAfterOtherStarts) {
+                throw new RuntimeException("Ya existe una fee para " + fee.getRank().getDisplayName() + " / " + fee.getRole().getDisplayName()
+                    + " vigente " + describeRange(other) + " que se superpone con la nueva");
+            }
+        }
+    }
+
+    private static String describeRange(Fee fee) {
+        return (fee.getEffectiveFrom() != null ? "desde el " + fee.getEffectiveFrom() : "desde siempre")
+            + (fee.getEffectiveTo() != null ? " hasta el " + fee.getEffectiveTo() : " sin fecha de fin");
+    }
+
+    // Base amount per rank, overridable with fees.base-amount.<RANK>
+    private BigDecimal baseAmount(Referee.Rank rank) {
+        return environment.getProperty("fees.base-amount." + rank.name(), BigDecimal.class,
+            DEFAULT_BASE_AMOUNTS.getOrDefault(rank, new BigDecimal("100000.00")));
+    }
+
+    /**
+     * Applies the edited fields. Without {@code versionFrom} the fee is
+     * corrected in place, re-pricing every match it covers. With it, a new
+     * amount becomes a new version starting that day and the current version
+     * keeps pricing the matches played before it.
+     */
+    public Fee update(Long id, Fee feeDetails, LocalDate versionFrom) {
         Optional<Fee> feeOpt = feeRepository.findById(id);
         if (feeOpt.isPresent()) {
             Fee fee = feeOpt.get();
-            fee.setTournament(feeDetails.getTournament());
-            fee.setRank(feeDetails.getRank());
-            fee.setRole(feeDetails.getRole());
-            fee.setAmount(feeDetails.getAmount());
-            fee.setDescription(feeDetails.getDescription());
-            return feeRepository.save(fee);
+            new TreeSet<>(List.of(fee.getTournament().getId(), feeDetails.getTournament().getId()))
+                .forEach(this::lockTournament);
+            Map<FeeCombination, FeeSchedule> before = snapshotPrices(FeeCombination.of(fee), FeeCombination.of(feeDetails));
+            Fee saved;
+            if (startsNewVersion(fee, feeDetails, versionFrom)) {
+                checkNoOverlap(fee, versionFrom, fee.getEffectiveTo(), fee.getId());
+                Fee next = new Fee(fee.getTournament(), fee.getRank(), fee.getRole(), feeDetails.getAmount());
+                next.setDescription(feeDetails.getDescription());
+                next.setActive(fee.isActive());
+                next.setEffectiveFrom(versionFrom);
+                next.setEffectiveTo(fee.getEffectiveTo());
+                fee.setEffectiveTo(versionFrom.minusDays(1));
+                feeRepository.save(fee);
+                saved = feeRepository.save(next);
+            } else {
+                if (!FeeCombination.of(fee).equals(FeeCombination.of(feeDetails))) {
+                    // Moved to another combination, whose versions it must fit between
+                    checkNoOverlap(feeDetails, fee.getEffectiveFrom(), fee.getEffectiveTo(), fee.getId());
+                }
+                fee.setTournament(feeDetails.getTournament());
+                fee.setRank(feeDetails.getRank());
+                fee.setRole(feeDetails.getRole());
+                fee.setAmount(feeDetails.getAmount());
+                fee.setDescription(feeDetails.getDescription());
+                saved = feeRepository.save(fee);
+            }
+            applyPriceChanges(before);
+            return saved;
         }
         throw new RuntimeException("Fee no encontrada");
     }
 
+    // A new version only makes sense for an amount change inside the version's own range
+    private static boolean startsNewVersion(Fee fee, Fee feeDetails, LocalDate versionFrom) {
+        return versionFrom != null
+            && feeDetails.getAmount() != null
+            && fee.getAmount().compareTo(feeDetails.getAmount()) != 0
+            && FeeCombination.of(fee).equals(FeeCombination.of(feeDetails))
+            && (fee.getEffectiveFrom() == null || versionFrom.isAfter(fee.getEffectiveFrom()))
+            && (fee.getEffectiveTo() == null || !versionFrom.isAfter(fee.getEffectiveTo()));
+    }
+
     public void toggleStatus(Long id) {
         Optional<Fee> feeOpt = feeRepository.findById(id);
         if (feeOpt.isPresent()) {
             Fee fee = feeOpt.get();
+            Map<FeeCombination, FeeSchedule> before = snapshotPrices(FeeCombination.of(fee));
             fee.setActive(!fee.isActive());
             feeRepository.save(fee);
+            applyPriceChanges(before);
         }
     }
 
     public void deleteById(Long id) {
-        feeRepository.deleteById(id);
+        Optional<Fee> feeOpt = feeRepository.findById(id);
+        if (feeOpt.isPresent()) {
+            Map<FeeCombination, FeeSchedule> before = snapshotPrices(FeeCombination.of(feeOpt.get()));
+            feeRepository.deleteById(id);
+            applyPriceChanges(before);
+        }
+    }
+
+    private Map<FeeCombination, FeeSchedule> snapshotPrices(FeeCombination... combinations) {
+        Map<FeeCombination, FeeSchedule> schedules = new LinkedHashMap<>();
+        for (FeeCombination c : combinations) {
+            schedules.putIfAbsent(c, feeMatrixCache.getSchedule(c.tournamentId(), c.rank(), c.role()));
+        }
+        return schedules;
+    }
+
+    /**
+     * Evicts the affected matrices and pushes any price difference into the
+     * settlement ledger. The new versions are read inside this transaction
+     * and kept out of the shared cache until it commits.
+     */
+    private void applyPriceChanges(Map<FeeCombination, FeeSchedule> before) {
+        before.keySet().forEach(c -> feeMatrixCache.evict(c.tournamentId()));
+        before.forEach((c, oldSchedule) -> ledgerService.onFeeChange(c.tournamentId(), c.rank(), c.role(),
+            oldSchedule, feeMatrixCache.loadSchedule(c.tournamentId(), c.rank(), c.role())));
+    }
+
+    private record FeeCombination(Long tournamentId, Referee.Rank rank, MatchAssignment.RefereeRole role) {
+        static FeeCombination of(Fee fee) {
+            return new FeeCombination(fee.getTournament().getId(), fee.getRank(), fee.getRole());
+        }
     }
 
     public BigDecimal calculatePayment(MatchAssignment assignment) {
-        Optional<Fee> feeOpt = findByTournamentRankAndRol(
+        return calculatePayment(
             assignment.getMatch().getTournament().getId(),
             assignment.getReferee().getRank(),
-            assignment.getRole()
+            assignment.getRole(),
+            assignment.getMatch().getDateHour()
         );
-        
-        return feeOpt.map(Fee::getAmount).orElse(BigDecimal.ZERO);
-    }
-
-    public List<Fee> findByFilters(String search, String tournament, String rank) {
-        List<Fee> fees = findAll();
-        
-        if (search != null && !search.trim().isEmpty()) {
-            fees = fees.stream()
-                .filter(t -> (t.getDescription() != null && t.getDescription().toLowerCase().contains(search.toLowerCase())) ||
-                           t.getTournament().getName().toLowerCase().contains(search.toLowerCase()))
-                .toList();
-        }
-        
-        if (tournament != null && !tournament.trim().isEmpty()) {
-            Long tournamentId = Long.parseLong(tournament);
-            fees = fees.stream()
-                .filter(t -> t.getTournament().getId().equals(tournamentId))
-                .toList();
-        }
-        
-        if (rank != null && !rank.trim().isEmpty()) {
-            Referee.Rank rankEnum = Referee.Rank.valueOf(rank);
-            fees = fees.stream()
-                .filter(t -> t.getRank().equals(rankEnum))
-                .toList();
-        }
-        
-        return fees;
+    }
+
+    // Amount of the fee version in force on the day of the match
+    public BigDecimal calculatePayment(Long tournamentId, Referee.Rank rank, MatchAssignment.RefereeRole role,
+                                       LocalDateTime matchDate) {
+        return feeMatrixCache.getAmount(tournamentId, rank, role, matchDate.toLocalDate());
+    }
+
+    public Map<String, Long> getCacheStats() {
+        return feeMatrixCache.getStats();
+    }
+
+    public Page<Fee> findByFilters(String search, String tournament, String rank, Pageable pageable) {
+        Long tournamentId = tournament != null && !tournament.trim().isEmpty() ? Long.parseLong(tournament.trim()) : null;
+        Referee.Rank rankEnum = rank != null && !rank.trim().isEmpty() ? Referee.Rank.valueOf(rank.trim()) : null;
+        return feeRepository.findAll(FeeSpecifications.withFilters(search, tournamentId, rankEnum), pageable);
     }
 }
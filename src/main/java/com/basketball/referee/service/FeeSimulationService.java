@@ -0,0 +1,339 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.model.Referee;
+import com.basketball.referee.repository.MatchAssignmentRepository;
+import com.basketball.referee.repository.MatchAssignmentRepository.SimulationRow;
+import com.basketball.referee.service.FeeMatrixCache.FeeSchedule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * What-if pricing over completed assignments. Every completed assignment is
+ * loaded once into parallel primitive arrays ordered by match date; scenarios
+ * then replace some fees of the current matrix and are priced against that
+ * snapshot in memory, one scenario per thread, without writing anything. The
+ * ledger drops the snapshot whenever completed assignments change; prices
+ * are always read from the fee cache, so fee edits need no invalidation.
+ */
+@Service
+@Transactional(readOnly = true)
+public class FeeSimulationService {
+
+    private static final Referee.Rank[] RANKS = Referee.Rank.values();
+    private static final MatchAssignment.RefereeRole[] ROLES = MatchAssignment.RefereeRole.values();
+    private static final int COMBINATIONS = RANKS.length * ROLES.length;
+    private static final long NO_OVERRIDE = Long.MIN_VALUE;
+
+    @Autowired
+    private MatchAssignmentRepository assignmentRepository;
+
+    @Autowired
+    private FeeMatrixCache feeMatrixCache;
+
+    private final TransactionHooks.CommitFence fence = new TransactionHooks.CommitFence();
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Prices every scenario over the completed assignments played between
+     * {@code start} and {@code end} (inclusive, either may be null). Baseline
+     * amounts use the fee version in force on each match day; a scenario's
+     * proposed amounts replace them for the whole range, and combinations a
+     * scenario does not mention keep their baseline amount.
+     */
+    public List<ScenarioResult> simulate(LocalDate start, LocalDate end, List<Scenario> scenarios) {
+        Snapshot data = getSnapshot();
+        int from = start != null ? data.firstIndexOnOrAfter((int) start.toEpochDay()) : 0;
+        int to = Math.max(from, end != null ? data.firstIndexOnOrAfter((int) end.toEpochDay() + 1) : data.size);
+        long[] baseline = baselinePrices(data, from, to);
+
+        return scenarios.parallelStream()
+            .map(scenario -> evaluate(data, from, to, baseline, scenario))
+            .collect(Collectors.toList());
+    }
+
+    // Drops the snapshot so the next simulation reads completed assignments again
+    public void refresh() {
+        snapshot = null;
+    }
+
+    /**
+     * Drops the snapshot once the current transaction commits. Called by the
+     * ledger for every change to the set of completed assignments, or to the
+     * date, tournament or rank they are priced by.
+     */
+    public void invalidate() {
+        fence.afterCommit(() -> snapshot = null);
+    }
+
+    public LocalDateTime getSnapshotLoadedAt() {
+        Snapshot data = snapshot;
+        return data != null ? data.loadedAt : null;
+    }
+
+    private ScenarioResult evaluate(Snapshot data, int from, int to, long[] baseline, Scenario scenario) {
+        // Proposed cents per tournament index and combination, NO_OVERRIDE where the scenario keeps the baseline
+        long[][] proposed = new long[data.tournamentIds.length][];
+        if (scenario.getFees() != null) {
+            for (ProposedFee fee : scenario.getFees()) {
+                if (fee.getTournamentId() == null || fee.getRank() == null || fee.getRole() == null || fee.getAmount() == null) {
+                    throw new RuntimeException("Fee propuesta incompleta en el escenario " + scenario.getName());
+                }
+                Integer t = data.tournamentIndex.get(fee.getTournamentId());
+                if (t == null) {
+                    // No completed assignments in that tournament, nothing to reprice
+                    continue;
+                }
+                if (proposed[t] == null) {
+                    proposed[t] = new long[COMBINATIONS];
+                    Arrays.fill(proposed[t], NO_OVERRIDE);
+                }
+                proposed[t][combination(fee.getRank(), fee.getRole())] = RoleAmounts.toCents(fee.getAmount());
+            }
+        }
+
+        long baselineCents = 0;
+        long simulatedCents = 0;
+        int affectedMatches = 0;
+        BitSet affectedReferees = new BitSet(data.refereeIds.length);
+        for (int i = from; i < to; i++) {
+            long before = baseline[i - from];
+            long[] overrides = proposed[data.tournament[i]];
+            long after = overrides != null && overrides[data.combination[i]] != NO_OVERRIDE
+                ? overrides[data.combination[i]] : before;
+            baselineCents += before;
+            simulatedCents += after;
+            if (before != after) {
+                affectedMatches++;
+                affectedReferees.set(data.referee[i]);
+            }
+        }
+
+        ScenarioResult result = new ScenarioResult();
+        result.setName(scenario.getName());
+        result.setMatches(to - from);
+        result.setAffectedMatches(affectedMatches);
+        result.setAffectedReferees(affectedReferees.cardinality());
+        result.setBaselineAmount(RoleAmounts.fromCents(baselineCents, RoleAmounts.MAX_SCALE));
+        result.setSimulatedAmount(RoleAmounts.fromCents(simulatedCents, RoleAmounts.MAX_SCALE));
+        result.setDifference(RoleAmounts.fromCents(simulatedCents - baselineCents, RoleAmounts.MAX_SCALE));
+        return result;
+    }
+
+    // Current price in cents of each row in [from, to), shared by every scenario of the request
+    private long[] baselinePrices(Snapshot data, int from, int to) {
+        FeeSchedule[][] schedules = new FeeSchedule[data.tournamentIds.length][];
+        long[] prices = new long[to - from];
+        LocalDate date = null;
+        for (int i = from; i < to; i++) {
+            int t = data.tournament[i];
+            int c = data.combination[i];
+            if (schedules[t] == null) {
+                schedules[t] = new FeeSchedule[COMBINATIONS];
+                for (Referee.Rank rank : RANKS) {
+                    for (MatchAssignment.RefereeRole role : ROLES) {
+                        schedules[t][combination(rank, role)] = feeMatrixCache.getSchedule(data.tournamentIds[t], rank, role);
+                    }
+                }
+            }
+            // Rows are in day order, so the date only changes a few times
+            if (date == null || date.toEpochDay() != data.day[i]) {
+                date = LocalDate.ofEpochDay(data.day[i]);
+            }
+            prices[i - from] = RoleAmounts.toCents(schedules[t][c].amountAt(date));
+        }
+        return prices;
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot data = snapshot;
+        if (data == null) {
+            synchronized (this) {
+                data = snapshot;
+                if (data == null) {
+                    // A change committing during the load may be missing from it, so it is used once and not kept
+                    long token = fence.open();
+                    data = load();
+                    if (fence.isClean(token)) {
+                        snapshot = data;
+                    }
+                }
+            }
+        }
+        return data;
+    }
+
+    private Snapshot load() {
+        SnapshotBuilder builder = new SnapshotBuilder();
+        try (Stream<SimulationRow> rows = assignmentRepository.streamCompletedForSimulation()) {
+            rows.forEach(builder::add);
+        }
+        return builder.build();
+    }
+
+    private static int combination(Referee.Rank rank, MatchAssignment.RefereeRole role) {
+        return rank.ordinal() * ROLES.length + role.ordinal();
+    }
+
+    // Column i of every array describes the same assignment; rows are sorted by day
+    private static final class Snapshot {
+        final int size;
+        final int[] day;
+        final int[] tournament;
+        final int[] referee;
+        final byte[] combination;
+        final long[] tournamentIds;
+        final long[] refereeIds;
+        final Map<Long, Integer> tournamentIndex;
+        final LocalDateTime loadedAt = LocalDateTime.now();
+
+        Snapshot(int size, int[] day, int[] tournament, int[] referee, byte[] combination,
+                 long[] tournamentIds, long[] refereeIds, Map<Long, Integer> tournamentIndex) {
+            this.size = size;
+            this.day = day;
+            this.tournament = tournament;
+            this.referee = referee;
+            this.combination = combination;
+            this.tournamentIds = tournamentIds;
+            this.refereeIds = refereeIds;
+            this.tournamentIndex = tournamentIndex;
+        }
+
+        int firstIndexOnOrAfter(int epochDay) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (day[mid] < epochDay) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static final class SnapshotBuilder {
+        private int size;
+        private int[] day = new int[1024];
+        private int[] tournament = new int[1024];
+        private int[] referee = new int[1024];
+        private byte[] combination = new byte[1024];
+        private final Map<Long, Integer> tournamentIndex = new HashMap<>();
+        private final Map<Long, Integer> refereeIndex = new HashMap<>();
+
+        void add(SimulationRow row) {
+            if (size == day.length) {
+                int capacity = size * 2;
+                day = Arrays.copyOf(day, capacity);
+                tournament = Arrays.copyOf(tournament, capacity);
+                referee = Arrays.copyOf(referee, capacity);
+                combination = Arrays.copyOf(combination, capacity);
+            }
+            day[size] = (int) row.getMatchDate().toLocalDate().toEpochDay();
+            tournament[size] = tournamentIndex.computeIfAbsent(row.getTournamentId(), id -> tournamentIndex.size());
+            referee[size] = refereeIndex.computeIfAbsent(row.getRefereeId(), id -> refereeIndex.size());
+            combination[size] = (byte) combination(row.getRank(), row.getRole());
+            size++;
+        }
+
+        Snapshot build() {
+            return new Snapshot(size, Arrays.copyOf(day, size), Arrays.copyOf(tournament, size),
+                Arrays.copyOf(referee, size), Arrays.copyOf(combination, size),
+                ids(tournamentIndex), ids(refereeIndex), Map.copyOf(tournamentIndex));
+        }
+
+        private static long[] ids(Map<Long, Integer> index) {
+            long[] ids = new long[index.size()];
+            index.forEach((id, i) -> ids[i] = id);
+            return ids;
+        }
+    }
+
+    // Request and response bodies
+    public static class Scenario {
+        private String name;
+        private List<ProposedFee> fees;
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public List<ProposedFee> getFees() { return fees; }
+        public void setFees(List<ProposedFee> fees) { this.fees = fees; }
+    }
+
+    public static class ProposedFee {
+        private Long tournamentId;
+        private Referee.Rank rank;
+        private MatchAssignment.RefereeRole role;
+        private BigDecimal amount;
+
+        public Long getTournamentId() { return tournamentId; }
+        public void setTournamentId(Long tournamentId) { this.tournamentId = tournamentId; }
+
+        public Referee.Rank getRank() { return rank; }
+        public void setRank(Referee.Rank rank) { this.rank = rank; }
+
+        public MatchAssignment.RefereeRole getRole() { return role; }
+        public void setRole(MatchAssignment.RefereeRole role) { this.role = role; }
+
+        public BigDecimal getAmount() { return amount; }
+        public void setAmount(BigDecimal amount) { this.amount = amount; }
+    }
+
+    public static class SimulationRequest {
+        private LocalDate start;
+        private LocalDate end;
+        private List<Scenario> scenarios;
+
+        public LocalDate getStart() { return start; }
+        public void setStart(LocalDate start) { this.start = start; }
+
+        public LocalDate getEnd() { return end; }
+        public void setEnd(LocalDate end) { this.end = end; }
+
+        public List<Scenario> getScenarios() { return scenarios; }
+        public void setScenarios(List<Scenario> scenarios) { this.scenarios = scenarios; }
+    }
+
+    public static class ScenarioResult {
+        private String name;
+        private int matches;
+        private int affectedMatches;
+        private int affectedReferees;
+        private BigDecimal baselineAmount;
+        private BigDecimal simulatedAmount;
+        private BigDecimal difference;
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public int getMatches() { return matches; }
+        public void setMatches(int matches) { this.matches = matches; }
+
+        public int getAffectedMatches() { return affectedMatches; }
+        public void setAffectedMatches(int affectedMatches) { this.affectedMatches = affectedMatches; }
+
+        public int getAffectedReferees() { return affectedReferees; }
+        public void setAffectedReferees(int affectedReferees) { this.affectedReferees = affectedReferees; }
+
+        public BigDecimal getBaselineAmount() { return baselineAmount; }
+        public void setBaselineAmount(BigDecimal baselineAmount) { this.baselineAmount = baselineAmount; }
+
+        public BigDecimal getSimulatedAmount() { return simulatedAmount; }
+        public void setSimulatedAmount(BigDecimal simulatedAmount) { this.simulatedAmount = simulatedAmount; }
+
+        public BigDecimal getDifference() { return difference; }
+        public void setDifference(BigDecimal difference) { this.difference = difference; }
+    }
+}
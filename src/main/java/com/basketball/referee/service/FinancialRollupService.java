@@ -0,0 +1,209 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.model.Referee;
+import com.basketball.referee.repository.ClosedPeriodRepository;
+import com.basketball.referee.repository.MatchAssignmentRepository;
+import com.basketball.referee.repository.MatchAssignmentRepository.CompletedCounts;
+import com.basketball.referee.repository.SettlementSnapshotRepository;
+import com.basketball.referee.repository.SettlementSnapshotRepository.SnapshotCell;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory rollup of payable amounts by (tournament, month, rank, role).
+ * Open months are loaded from completed assignments priced with the fee
+ * matrix and then moved by the same deltas the settlement ledger receives;
+ * closed months are read from their snapshots, so the dashboard shows what
+ * was paid. Deltas are applied after commit, so rolled back changes never
+ * show up on the dashboard.
+ *
+ * Loads build a new map without holding the lock deltas take, so a commit
+ * callback never waits behind a scan of the whole history, and the new map
+ * is swapped in when done. A load that a commit crossed may already contain
+ * a delta that is still to be applied; it is served but marked inexact, and
+ * the next read replaces it with a fresh load in the background. Only the
+ * very first read waits for a load.
+ */
+@Service
+public class FinancialRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(FinancialRollupService.class);
+
+    @Autowired
+    private MatchAssignmentRepository assignmentRepository;
+
+    @Autowired
+    private SettlementSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private ClosedPeriodRepository closedPeriodRepository;
+
+    @Autowired
+    private FeeMatrixCache feeMatrixCache;
+
+    private final TransactionHooks.CommitFence fence = new TransactionHooks.CommitFence();
+    // One load at a time; deltas only take this object's monitor, never this one
+    private final Object loadLock = new Object();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    // Guarded by this
+    private Rollup rollup;
+    private boolean exact;
+
+    public void record(Long tournamentId, YearMonth period, Referee.Rank rank, MatchAssignment.RefereeRole role,
+                       long matchesDelta, BigDecimal amountDelta) {
+        CellKey key = new CellKey(tournamentId, period, rank, role);
+        fence.afterCommit(() -> apply(key, matchesDelta, amountDelta));
+    }
+
+    // Replaces the rollup with a fresh load; the current one is served until then
+    public void invalidate() {
+        fence.afterCommit(() -> {
+            synchronized (this) {
+                exact = false;
+            }
+        });
+    }
+
+    public FinancialDashboard getDashboard() {
+        synchronized (this) {
+            if (rollup != null) {
+                if (!exact) {
+                    refreshInBackground();
+                }
+                return summarize(rollup.cells());
+            }
+        }
+        load();
+        synchronized (this) {
+            return summarize(rollup.cells());
+        }
+    }
+
+    private static FinancialDashboard summarize(Map<CellKey, Cell> cells) {
+        FinancialDashboard dashboard = new FinancialDashboard();
+        for (Map.Entry<CellKey, Cell> e : cells.entrySet()) {
+            CellKey key = e.getKey();
+            BigDecimal amount = e.getValue().amount;
+            long matches = e.getValue().matches;
+            dashboard.totalAmount = dashboard.totalAmount.add(amount);
+            dashboard.totalMatches += matches;
+            dashboard.byTournament.merge(key.tournamentId(), amount, BigDecimal::add);
+            dashboard.byMonth.merge(key.period(), amount, BigDecimal::add);
+            if (key.rank() != null) {
+                dashboard.byRank.merge(key.rank(), amount, BigDecimal::add);
+            }
+            dashboard.byRole.merge(key.role(), amount, BigDecimal::add);
+        }
+
+        BigDecimal previous = null;
+        for (Map.Entry<YearMonth, BigDecimal> e : dashboard.byMonth.entrySet()) {
+            dashboard.monthOverMonth.put(e.getKey(), previous == null ? null : e.getValue().subtract(previous));
+            previous = e.getValue();
+        }
+        return dashboard;
+    }
+
+    private synchronized void apply(CellKey key, long matchesDelta, BigDecimal amountDelta) {
+        // Before the first load there is nothing to move; closed months only change through their snapshots
+        if (rollup == null || rollup.closed().contains(key.period())) {
+            return;
+        }
+        Map<CellKey, Cell> cells = rollup.cells();
+        Cell cell = cells.computeIfAbsent(key, k -> new Cell());
+        cell.matches += matchesDelta;
+        cell.amount = cell.amount.add(amountDelta);
+        if (cell.matches == 0 && cell.amount.signum() == 0) {
+            cells.remove(key);
+        }
+    }
+
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("financial-rollup-refresh").start(() -> {
+            try {
+                load();
+            } catch (Exception e) {
+                log.warn("Financial rollup refresh failed", e);
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    private void load() {
+        synchronized (loadLock) {
+            long token = fence.open();
+            Rollup fresh = read();
+            synchronized (this) {
+                rollup = fresh;
+                // Deltas committed while reading may be in the new map or not; serve it and load again
+                exact = fence.isClean(token);
+            }
+        }
+    }
+
+    private Rollup read() {
+        Set<YearMonth> closed = new HashSet<>();
+        closedPeriodRepository.findAll().forEach(period -> closed.add(YearMonth.parse(period.getPeriod())));
+
+        Map<CellKey, Cell> cells = new HashMap<>();
+        for (CompletedCounts counts : assignmentRepository.countCompletedByPeriod()) {
+            YearMonth period = YearMonth.from(counts.getMatchDay());
+            if (closed.contains(period)) {
+                continue;
+            }
+            CellKey key = new CellKey(counts.getTournamentId(), period, counts.getRank(), counts.getRole());
+            BigDecimal price = feeMatrixCache.getAmount(counts.getTournamentId(), counts.getRank(), counts.getRole(),
+                counts.getMatchDay());
+            Cell cell = cells.computeIfAbsent(key, k -> new Cell());
+            cell.matches += counts.getMatches();
+            cell.amount = cell.amount.add(price.multiply(BigDecimal.valueOf(counts.getMatches())));
+        }
+        for (SnapshotCell frozen : snapshotRepository.sumByCell()) {
+            CellKey key = new CellKey(frozen.getTournamentId(), YearMonth.parse(frozen.getPeriod()),
+                frozen.getRank(), frozen.getRole());
+            Cell cell = cells.computeIfAbsent(key, k -> new Cell());
+            cell.matches += frozen.getMatches();
+            cell.amount = cell.amount.add(frozen.getAmount());
+        }
+        return new Rollup(cells, closed);
+    }
+
+    private record Rollup(Map<CellKey, Cell> cells, Set<YearMonth> closed) {}
+
+    private record CellKey(Long tournamentId, YearMonth period, Referee.Rank rank, MatchAssignment.RefereeRole role) {}
+
+    private static class Cell {
+        long matches;
+        BigDecimal amount = BigDecimal.ZERO;
+    }
+
+    public static class FinancialDashboard {
+        private BigDecimal totalAmount = BigDecimal.ZERO;
+        private long totalMatches;
+        private final Map<Long, BigDecimal> byTournament = new HashMap<>();
+        private final SortedMap<YearMonth, BigDecimal> byMonth = new TreeMap<>();
+        private final Map<Referee.Rank, BigDecimal> byRank = new EnumMap<>(Referee.Rank.class);
+        private final Map<MatchAssignment.RefereeRole, BigDecimal> byRole = new EnumMap<>(MatchAssignment.RefereeRole.class);
+        private final SortedMap<YearMonth, BigDecimal> monthOverMonth = new TreeMap<>();
+
+        public BigDecimal getTotalAmount() { return totalAmount; }
+        public long getTotalMatches() { return totalMatches; }
+        public Map<Long, BigDecimal> getByTournament() { return byTournament; }
+        public SortedMap<YearMonth, BigDecimal> getByMonth() { return byMonth; }
+        public Map<Referee.Rank, BigDecimal> getByRank() { return byRank; }
+        public Map<MatchAssignment.RefereeRole, BigDecimal> getByRole() { return byRole; }
+        public SortedMap<YearMonth, BigDecimal> getMonthOverMonth() { return monthOverMonth; }
+    }
+}
@@ -0,0 +1,688 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.Court;
+import com.basketball.referee.model.Match;
+import com.basketball.referee.model.Tournament;
+import com.basketball.referee.repository.CourtRepository;
+import com.basketball.referee.repository.MatchRepository;
+import com.basketball.referee.repository.MatchRepository.CourtBooking;
+import com.basketball.referee.repository.MatchRepository.TeamBooking;
+import com.basketball.referee.repository.TournamentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Builds a round-robin or knockout fixture for a tournament and stores it as
+ * PROGRAMMED matches.
+ *
+ * The requested date window is cut into time slots per court, minus the
+ * slots where a match would overlap one already booked on that court; every
+ * match lasts the configured match duration, whatever the slot length.
+ * Matches are then placed round by round in the earliest slot where both
+ * teams have rested long enough, counting matches they already play in
+ * other tournaments, using skip pointers so full slots are never scanned
+ * twice.
+ * If the first pass had to shorten rests or leave matches out, randomized
+ * orders within each round are tried until the time limit and the best
+ * schedule is kept.
+ */
+@Service
+@Transactional
+public class FixtureService {
+
+    private static final int MAX_ATTEMPTS = 500;
+    private static final int MAX_TIME_LIMIT_SECONDS = 60;
+
+    @Autowired
+    private TournamentRepository tournamentRepository;
+
+    @Autowired
+    private CourtRepository courtRepository;
+
+    @Autowired
+    private MatchRepository matchRepository;
+
+    @Autowired
+    private MatchImportService importService;
+
+    @Autowired
+    private CourtScheduleIndex courtScheduleIndex;
+
+    /**
+     * Generates the fixture of a tournament that has no matches yet; the
+     * tournament row stays locked until the matches are stored, so two
+     * generations for it cannot both pass that check.
+     */
+    public FixtureResult generate(Long tournamentId, FixtureRequest request) {
+        long started = System.nanoTime();
+        Tournament tournament = tournamentRepository.lockById(tournamentId)
+            .orElseThrow(() -> new RuntimeException("Tournament no encontrado"));
+        long existing = matchRepository.countByTournamentIdAndStateNot(tournamentId, Match.MatchState.CANCELED);
+        if (existing > 0) {
+            throw new RuntimeException("El tournament ya tiene " + existing
+                + " matches; cancélelos o elimínelos antes de generar un nuevo fixture");
+        }
+
+        List<String> teams = request.getTeamList();
+        if (teams.size() < 2) {
+            throw new RuntimeException("Se necesitan al menos 2 equipos");
+        }
+        if (new HashSet<>(teams).size() != teams.size()) {
+            throw new RuntimeException("Hay equipos repetidos");
+        }
+        if (request.getSlotMinutes() <= 0) {
+            throw new RuntimeException("La duración del slot debe ser mayor que cero");
+        }
+        if (request.getMinRestHours() < 0) {
+            throw new RuntimeException("El descanso mínimo no puede ser negativo");
+        }
+        if (request.getDayStart() == null || request.getDayEnd() == null
+                || !request.getDayEnd().isAfter(request.getDayStart())) {
+            throw new RuntimeException("El horario diario no es válido");
+        }
+        List<Court> courts = request.getCourtIds() == null ? List.of()
+            : courtRepository.findAllById(request.getCourtIds()).stream()
+                .filter(Court::isActive)
+                .sorted(Comparator.comparing(Court::getName))
+                .toList();
+        if (courts.isEmpty()) {
+            throw new RuntimeException("Seleccione al menos una court activa");
+        }
+        LocalDate from = request.getStartDate() != null ? request.getStartDate() : tournament.getStartDate();
+        LocalDate to = request.getEndDate() != null ? request.getEndDate() : tournament.getEndDate();
+        if (to.isBefore(from)) {
+            throw new RuntimeException("La date de end es anterior a la de start");
+        }
+
+        int durationMinutes = courtScheduleIndex.getDurationMinutes();
+        SlotGrid grid = new SlotGrid(from, to, request.getDayStart(), request.getDayEnd(),
+            request.getSlotMinutes(), durationMinutes, courts);
+        if (grid.slots == 0) {
+            throw new RuntimeException("El horario diario no admite ningún slot");
+        }
+        // The courts stay locked until the fixture is stored, so no booking can land on a slot taken as free
+        courtRepository.lockByIds(grid.courtIds());
+        grid.block(matchRepository.findCourtBookings(grid.courtIds(),
+            from.atStartOfDay().minusMinutes(durationMinutes), to.atTime(LocalTime.MAX).plusMinutes(durationMinutes)));
+
+        Bracket bracket = request.getFormat() == Format.KNOCKOUT
+            ? Bracket.knockout(teams)
+            : Bracket.roundRobin(teams, request.isDoubleRound());
+
+        long restMinutes = request.getMinRestHours() * 60L;
+        long[][] teamMatches = teamMatches(teams, from.atStartOfDay().minusMinutes(durationMinutes + restMinutes),
+            to.atTime(LocalTime.MAX).plusMinutes(restMinutes));
+        int timeLimit = Math.max(1, Math.min(request.getTimeLimitSeconds(), MAX_TIME_LIMIT_SECONDS));
+        long deadline = started + timeLimit * 1_000_000_000L;
+
+        Schedule best = new Schedule(grid, bracket, restMinutes, teamMatches, bracket.naturalOrder());
+        int attempts = 1;
+        Random random = new Random(tournamentId);
+        boolean timeLimitReached = false;
+        while (!best.isPerfect() && attempts < MAX_ATTEMPTS) {
+            if (System.nanoTime() > deadline) {
+                timeLimitReached = true;
+                break;
+            }
+            Schedule candidate = new Schedule(grid, bracket, restMinutes, teamMatches, bracket.shuffledOrder(random));
+            attempts++;
+            if (candidate.isBetterThan(best)) {
+                best = candidate;
+            }
+        }
+
+        List<MatchImportService.NewMatch> matches = new ArrayList<>(bracket.size());
+        for (int m = 0; m < bracket.size(); m++) {
+            if (best.slot[m] < 0) {
+                continue;
+            }
+            matches.add(new MatchImportService.NewMatch(tournamentId, grid.courts.get(best.court[m]).getId(),
+                bracket.name(bracket.home[m]), bracket.name(bracket.away[m]),
+                grid.startOf(best.slot[m]), bracket.label[m]));
+        }
+        matches.sort(Comparator.comparing(MatchImportService.NewMatch::dateHour));
+        importService.insertAll(matches);
+
+        FixtureResult result = new FixtureResult();
+        result.format = request.getFormat();
+        result.generated = matches.size();
+        result.unscheduled = best.unscheduled;
+        result.attempts = attempts;
+        if (!matches.isEmpty()) {
+            result.firstMatch = matches.get(0).dateHour();
+            result.lastMatch = matches.get(matches.size() - 1).dateHour();
+        }
+        if (best.relaxedRest > 0) {
+            result.relaxedConstraints.add("Descanso mínimo de " + request.getMinRestHours()
+                + " h reducido en " + best.relaxedRest + " matches");
+        }
+        if (best.unscheduled > 0) {
+            result.relaxedConstraints.add(best.unscheduled
+                + " matches sin horario: la ventana de fechas o las courts no alcanzan");
+        }
+        if (timeLimitReached) {
+            result.relaxedConstraints.add("Búsqueda detenida por el límite de " + timeLimit
+                + " s tras " + attempts + " intentos");
+        }
+        result.generationMillis = (System.nanoTime() - started) / 1_000_000;
+        return result;
+    }
+
+    // Start minutes of the matches each team already plays in the window, indexed like the team list
+    private long[][] teamMatches(List<String> teams, LocalDateTime start, LocalDateTime end) {
+        Map<String, Integer> teamIndex = new HashMap<>();
+        for (int i = 0; i < teams.size(); i++) {
+            teamIndex.put(teams.get(i).toLowerCase(), i);
+        }
+        List<List<Long>> starts = new ArrayList<>();
+        teams.forEach(team -> starts.add(new ArrayList<>()));
+        for (TeamBooking booking : matchRepository.findTeamBookings(teamIndex.keySet(), start, end)) {
+            long minute = epochMinute(booking.getDateHour());
+            addStart(starts, teamIndex, booking.getLocalTeam(), minute);
+            addStart(starts, teamIndex, booking.getVisitorTeam(), minute);
+        }
+        long[][] matches = new long[teams.size()][];
+        for (int i = 0; i < matches.length; i++) {
+            matches[i] = starts.get(i).stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+        return matches;
+    }
+
+    private static void addStart(List<List<Long>> starts, Map<String, Integer> teamIndex, String team, long minute) {
+        Integer i = team != null ? teamIndex.get(team.trim().toLowerCase()) : null;
+        if (i != null) {
+            starts.get(i).add(minute);
+        }
+    }
+
+    private static long epochMinute(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    /**
+     * Every (day, start time) of the window as a slot index in time order,
+     * with the courts still free at each one.
+     */
+    private static final class SlotGrid {
+        final List<Court> courts;
+        final int durationMinutes;
+        final int slots;
+        final long[] start;
+        final BitSet busy;
+        final int[] freeCourts;
+
+        SlotGrid(LocalDate from, LocalDate to, LocalTime dayStart, LocalTime dayEnd, int slotMinutes,
+                 int durationMinutes, List<Court> courts) {
+            this.courts = courts;
+            this.durationMinutes = durationMinutes;
+            int perDay = (int) (Duration.between(dayStart, dayEnd).toMinutes() / slotMinutes);
+            int days = (int) (to.toEpochDay() - from.toEpochDay() + 1);
+            this.slots = perDay * days;
+            this.start = new long[slots];
+            for (int d = 0; d < days; d++) {
+                long dayFirst = epochMinute(from.plusDays(d).atTime(dayStart));
+                for (int s = 0; s < perDay; s++) {
+                    start[d * perDay + s] = dayFirst + (long) s * slotMinutes;
+                }
+            }
+            this.busy = new BitSet(slots * courts.size());
+            this.freeCourts = new int[slots];
+            Arrays.fill(freeCourts, courts.size());
+        }
+
+        List<Long> courtIds() {
+            return courts.stream().map(Court::getId).toList();
+        }
+
+        void block(List<CourtBooking> bookings) {
+            Map<Long, Integer> courtIndex = new HashMap<>();
+            for (int c = 0; c < courts.size(); c++) {
+                courtIndex.put(courts.get(c).getId(), c);
+            }
+            for (CourtBooking booking : bookings) {
+                int c = courtIndex.get(booking.getCourtId());
+                forEachOverlapping(epochMinute(booking.getDateHour()), t -> {
+                    int bit = t * courts.size() + c;
+                    if (!busy.get(bit)) {
+                        busy.set(bit);
+                        freeCourts[t]--;
+                    }
+                });
+            }
+        }
+
+        /**
+         * Every slot whose match would overlap one starting at the given
+         * minute on the same court. Taking all of them keeps a court's bit
+         * clear only where a whole match fits, even with slots shorter than
+         * a match.
+         */
+        void forEachOverlapping(long startMinute, IntConsumer action) {
+            for (int t = firstAtOrAfter(startMinute - durationMinutes + 1);
+                    t < slots && start[t] < startMinute + durationMinutes; t++) {
+                action.accept(t);
+            }
+        }
+
+        int firstAtOrAfter(long minute) {
+            int low = 0;
+            int high = slots;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (start[mid] < minute) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        LocalDateTime startOf(int slot) {
+            return LocalDateTime.ofEpochSecond(start[slot] * 60, 0, ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * The matches to place. Participants 0..teams-1 are the teams; in a
+     * knockout, later participants stand for the winner of an earlier match.
+     */
+    private static final class Bracket {
+        final List<String> names = new ArrayList<>();
+        final List<Integer> sourceMatch = new ArrayList<>();
+        int[] home = new int[16];
+        // Participant standing for the match's winner, -1 outside knockouts
+        int[] winner = new int[16];
+        int[] away = new int[16];
+        int[] round = new int[16];
+        String[] label = new String[16];
+        int matches;
+        int rounds;
+
+        static Bracket roundRobin(List<String> teams, boolean doubleRound) {
+            Bracket bracket = new Bracket();
+            teams.forEach(bracket::addTeam);
+            // Circle method: the first team stays put and the rest rotate; -1 is the bye of an odd league
+            List<Integer> circle = new ArrayList<>();
+            for (int i = 0; i < teams.size(); i++) {
+                circle.add(i);
+            }
+            if (circle.size() % 2 == 1) {
+                circle.add(-1);
+            }
+            int size = circle.size();
+            int legRounds = size - 1;
+            for (int r = 0; r < legRounds; r++) {
+                for (int i = 0; i < size / 2; i++) {
+                    int a = circle.get(i);
+                    int b = circle.get(size - 1 - i);
+                    if (a < 0 || b < 0) {
+                        continue;
+                    }
+                    boolean swap = (r + i) % 2 == 1;
+                    bracket.addMatch(swap ? b : a, swap ? a : b, r, "Fecha " + (r + 1));
+                    if (doubleRound) {
+                        bracket.addMatch(swap ? a : b, swap ? b : a, r + legRounds, "Fecha " + (r + legRounds + 1));
+                    }
+                }
+                circle.add(1, circle.remove(size - 1));
+            }
+            bracket.rounds = doubleRound ? legRounds * 2 : legRounds;
+            return bracket;
+        }
+
+        static Bracket knockout(List<String> teams) {
+            Bracket bracket = new Bracket();
+            teams.forEach(bracket::addTeam);
+            int size = Integer.highestOneBit(teams.size() - 1) << 1;
+            // Seed i meets seed size-1-i; seeds without a rival go straight to the next round
+            List<Integer> entering = new ArrayList<>();
+            for (int i = 0; i < size / 2; i++) {
+                int rival = size - 1 - i;
+                if (rival >= teams.size()) {
+                    entering.add(i);
+                } else {
+                    entering.add(bracket.addKnockoutMatch(i, rival, 0, roundName(size), entering.size()));
+                }
+            }
+            int r = 1;
+            for (int remaining = size / 2; remaining > 1; remaining /= 2, r++) {
+                List<Integer> next = new ArrayList<>();
+                for (int i = 0; i < entering.size() / 2; i++) {
+                    next.add(bracket.addKnockoutMatch(entering.get(i), entering.get(entering.size() - 1 - i),
+                        r, roundName(remaining), i));
+                }
+                entering = next;
+            }
+            bracket.rounds = r;
+            return bracket;
+        }
+
+        private static String roundName(int teams) {
+            return switch (teams) {
+                case 2 -> "Final";
+                case 4 -> "Semifinal";
+                case 8 -> "Cuartos de final";
+                case 16 -> "Octavos de final";
+                default -> "Ronda de " + teams;
+            };
+        }
+
+        private void addTeam(String name) {
+            names.add(name);
+            sourceMatch.add(-1);
+        }
+
+        // Returns the participant that stands for the winner
+        private int addKnockoutMatch(int home, int away, int round, String roundName, int index) {
+            String matchLabel = roundName + " - Partido " + (index + 1);
+            int m = addMatch(home, away, round, matchLabel);
+            names.add("Ganador " + matchLabel);
+            sourceMatch.add(m);
+            winner[m] = names.size() - 1;
+            return winner[m];
+        }
+
+        private int addMatch(int homeParticipant, int awayParticipant, int matchRound, String matchLabel) {
+            if (matches == home.length) {
+                int capacity = matches * 2;
+                home = Arrays.copyOf(home, capacity);
+                winner = Arrays.copyOf(winner, capacity);
+                away = Arrays.copyOf(away, capacity);
+                round = Arrays.copyOf(round, capacity);
+                label = Arrays.copyOf(label, capacity);
+            }
+            home[matches] = homeParticipant;
+            winner[matches] = -1;
+            away[matches] = awayParticipant;
+            round[matches] = matchRound;
+            label[matches] = matchLabel;
+            return matches++;
+        }
+
+        int size() {
+            return matches;
+        }
+
+        String name(int participant) {
+            return names.get(participant);
+        }
+
+        int[] naturalOrder() {
+            return byRound(null);
+        }
+
+        int[] shuffledOrder(Random random) {
+            return byRound(random);
+        }
+
+        // Rounds stay in sequence, so knockout winners are always placed after their match
+        private int[] byRound(Random random) {
+            List<List<Integer>> perRound = new ArrayList<>();
+            for (int r = 0; r < rounds; r++) {
+                perRound.add(new ArrayList<>());
+            }
+            for (int m = 0; m < matches; m++) {
+                perRound.get(round[m]).add(m);
+            }
+            int[] order = new int[matches];
+            int i = 0;
+            for (List<Integer> inRound : perRound) {
+                if (random != null) {
+                    Collections.shuffle(inRound, random);
+                }
+                for (int m : inRound) {
+                    order[i++] = m;
+                }
+            }
+            return order;
+        }
+    }
+
+    /** One greedy placement of every match, in the given order. */
+    private static final class Schedule {
+        final int[] slot;
+        final int[] court;
+        private final SlotGrid grid;
+        private final long[][] teamMatches;
+        int relaxedRest;
+        int unscheduled;
+        long lastEnd = Long.MIN_VALUE;
+
+        Schedule(SlotGrid grid, Bracket bracket, long restMinutes, long[][] teamMatches, int[] order) {
+            this.grid = grid;
+            this.teamMatches = teamMatches;
+            int courts = grid.courts.size();
+            slot = new int[bracket.size()];
+            court = new int[bracket.size()];
+            Arrays.fill(slot, -1);
+            BitSet busy = (BitSet) grid.busy.clone();
+            int[] freeCourts = grid.freeCourts.clone();
+            // next[t] leads to the first slot at or after t with a free court; slots == none left
+            int[] next = new int[grid.slots + 1];
+            for (int t = 0; t <= grid.slots; t++) {
+                next[t] = t < grid.slots && freeCourts[t] == 0 ? t + 1 : t;
+            }
+            long[] freeFrom = new long[bracket.names.size()];
+            boolean[] placed = new boolean[bracket.names.size()];
+            Arrays.fill(freeFrom, Long.MIN_VALUE);
+            for (int p = 0; p < placed.length; p++) {
+                placed[p] = bracket.sourceMatch.get(p) < 0;
+            }
+            // A team's last match before the window is where its rest starts, as with the fixture's own matches
+            for (int p = 0; p < teamMatches.length; p++) {
+                for (long matchStart : teamMatches[p]) {
+                    long matchEnd = matchStart + grid.durationMinutes;
+                    if (matchEnd <= grid.start[0]) {
+                        freeFrom[p] = Math.max(freeFrom[p], matchEnd);
+                    }
+                }
+            }
+
+            for (int m : order) {
+                int home = bracket.home[m];
+                int away = bracket.away[m];
+                if (!placed[home] || !placed[away]) {
+                    // Depends on a knockout match that found no slot
+                    unscheduled++;
+                    continue;
+                }
+                long previousEnd = Math.max(freeFrom[home], freeFrom[away]);
+                long earliest = previousEnd == Long.MIN_VALUE ? Long.MIN_VALUE : previousEnd + restMinutes;
+                int t = firstFree(next, earliest, home, away, restMinutes);
+                if (t == grid.slots && restMinutes > 0) {
+                    t = firstFree(next, previousEnd, home, away, 0);
+                    if (t < grid.slots) {
+                        relaxedRest++;
+                    }
+                }
+                if (t == grid.slots) {
+                    unscheduled++;
+                    continue;
+                }
+                int c = busy.nextClearBit(t * courts) - t * courts;
+                grid.forEachOverlapping(grid.start[t], u -> {
+                    int bit = u * courts + c;
+                    if (!busy.get(bit)) {
+                        busy.set(bit);
+                        if (--freeCourts[u] == 0) {
+                            next[u] = u + 1;
+                        }
+                    }
+                });
+                slot[m] = t;
+                court[m] = c;
+                long end = grid.start[t] + grid.durationMinutes;
+                lastEnd = Math.max(lastEnd, end);
+                freeFrom[home] = end;
+                freeFrom[away] = end;
+                int winner = bracket.winner[m];
+                if (winner >= 0) {
+                    placed[winner] = true;
+                    freeFrom[winner] = end;
+                }
+            }
+        }
+
+        // First slot from the given minute with a free court and no existing match of either team within rest
+        private int firstFree(int[] next, long earliest, int home, int away, long rest) {
+            while (true) {
+                int t = find(next, grid.firstAtOrAfter(earliest));
+                if (t == grid.slots) {
+                    return t;
+                }
+                long clear = Math.max(clearFrom(home, grid.start[t], rest), clearFrom(away, grid.start[t], rest));
+                if (clear == Long.MIN_VALUE) {
+                    return t;
+                }
+                earliest = clear;
+            }
+        }
+
+        // When the participant may start after the existing match a start at this minute would clash with, if any
+        private long clearFrom(int participant, long start, long rest) {
+            if (participant >= teamMatches.length) {
+                return Long.MIN_VALUE;
+            }
+            long duration = grid.durationMinutes;
+            for (long matchStart : teamMatches[participant]) {
+                if (matchStart < start + duration + rest && start < matchStart + duration + rest) {
+                    return matchStart + duration + rest;
+                }
+            }
+            return Long.MIN_VALUE;
+        }
+
+        private static int find(int[] next, int t) {
+            int root = t;
+            while (next[root] != root) {
+                root = next[root];
+            }
+            while (next[t] != root) {
+                int following = next[t];
+                next[t] = root;
+                t = following;
+            }
+            return root;
+        }
+
+        boolean isPerfect() {
+            return unscheduled == 0 && relaxedRest == 0;
+        }
+
+        boolean isBetterThan(Schedule other) {
+            if (unscheduled != other.unscheduled) {
+                return unscheduled < other.unscheduled;
+            }
+            if (relaxedRest != other.relaxedRest) {
+                return relaxedRest < other.relaxedRest;
+            }
+            return lastEnd < other.lastEnd;
+        }
+    }
+
+    public enum Format {
+        ROUND_ROBIN("Todos contra todos"),
+        KNOCKOUT("Eliminación directa");
+
+        private final String displayName;
+
+        Format(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    // Form backing object
+    public static class FixtureRequest {
+        private Format format = Format.ROUND_ROBIN;
+        private String teams;
+        private List<Long> courtIds;
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        private LocalDate startDate;
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        private LocalDate endDate;
+        @DateTimeFormat(iso = DateTimeFormat.ISO.TIME)
+        private LocalTime dayStart = LocalTime.of(9, 0);
+        @DateTimeFormat(iso = DateTimeFormat.ISO.TIME)
+        private LocalTime dayEnd = LocalTime.of(21, 0);
+        private int slotMinutes = 120;
+        private int minRestHours = 24;
+        private boolean doubleRound;
+        private int timeLimitSeconds = 10;
+
+        // One team per line, blank lines ignored
+        public List<String> getTeamList() {
+            if (teams == null) {
+                return List.of();
+            }
+            return teams.lines().map(String::trim).filter(line -> !line.isEmpty()).toList();
+        }
+
+        public Format getFormat() { return format; }
+        public void setFormat(Format format) { this.format = format; }
+
+        public String getTeams() { return teams; }
+        public void setTeams(String teams) { this.teams = teams; }
+
+        public List<Long> getCourtIds() { return courtIds; }
+        public void setCourtIds(List<Long> courtIds) { this.courtIds = courtIds; }
+
+        public LocalDate getStartDate() { return startDate; }
+        public void setStartDate(LocalDate startDate) { this.startDate = startDate; }
+
+        public LocalDate getEndDate() { return endDate; }
+        public void setEndDate(LocalDate endDate) { this.endDate = endDate; }
+
+        public LocalTime getDayStart() { return dayStart; }
+        public void setDayStart(LocalTime dayStart) { this.dayStart = dayStart; }
+
+        public LocalTime getDayEnd() { return dayEnd; }
+        public void setDayEnd(LocalTime dayEnd) { this.dayEnd = dayEnd; }
+
+        public int getSlotMinutes() { return slotMinutes; }
+        public void setSlotMinutes(int slotMinutes) { this.slotMinutes = slotMinutes; }
+
+        public int getMinRestHours() { return minRestHours; }
+        public void setMinRestHours(int minRestHours) { this.minRestHours = minRestHours; }
+
+        public boolean isDoubleRound() { return doubleRound; }
+        public void setDoubleRound(boolean doubleRound) { this.doubleRound = doubleRound; }
+
+        public int getTimeLimitSeconds() { return timeLimitSeconds; }
+        public void setTimeLimitSeconds(int timeLimitSeconds) { this.timeLimitSeconds = timeLimitSeconds; }
+    }
+
+    public static class FixtureResult {
+        private Format format;
+        private int generated;
+        private int unscheduled;
+        private int attempts;
+        private long generationMillis;
+        private LocalDateTime firstMatch;
+        private LocalDateTime lastMatch;
+        private final List<String> relaxedConstraints = new ArrayList<>();
+
+        public Format getFormat() { return format; }
+        public int getGenerated() { return generated; }
+        public int getUnscheduled() { return unscheduled; }
+        public int getAttempts() { return attempts; }
+        public long getGenerationMillis() { return generationMillis; }
+        public LocalDateTime getFirstMatch() { return firstMatch; }
+        public LocalDateTime getLastMatch() { return lastMatch; }
+        public List<String> getRelaxedConstraints() { return relaxedConstraints; }
+    }
+}
@@ -0,0 +1,148 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.Court;
+import com.basketball.referee.repository.CourtRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Free court time for rescheduling. Each court-day of the requested range is
+ * turned into a bitset of 15-minute units over the opening hours, marked from
+ * the bookings held by {@link CourtScheduleIndex}, and free runs of the
+ * requested length are read off with nextSetBit/nextClearBit. No match rows
+ * are read for courts the index already holds.
+ */
+@Service
+@Transactional(readOnly = true)
+public class FreeSlotService {
+
+    private static final int UNIT_MINUTES = 15;
+
+    @Autowired
+    private CourtRepository courtRepository;
+
+    @Autowired
+    private CourtScheduleIndex courtScheduleIndex;
+
+    /**
+     * Free slots of at least {@code minMinutes} between {@code from} and
+     * {@code to} (inclusive days), ordered by start and court name. Courts
+     * come from {@code courtIds} if given, otherwise every active court of
+     * {@code city} (or every active court). With {@code firstOnly} only the
+     * earliest slot is returned.
+     */
+    public List<FreeSlot> findFreeSlots(Collection<Long> courtIds, String city, LocalDate from, LocalDate to,
+                                        LocalTime dayStart, LocalTime dayEnd, int minMinutes, boolean firstOnly) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new RuntimeException("El rango de fechas no es válido");
+        }
+        if (dayStart == null || dayEnd == null || !dayEnd.isAfter(dayStart)) {
+            throw new RuntimeException("El horario diario no es válido");
+        }
+        if (minMinutes <= 0) {
+            throw new RuntimeException("La duración mínima debe ser mayor que cero");
+        }
+
+        List<Court> courts = findCourts(courtIds, city);
+        int units = (int) (Duration.between(dayStart, dayEnd).toMinutes() / UNIT_MINUTES);
+        int needed = (minMinutes + UNIT_MINUTES - 1) / UNIT_MINUTES;
+        List<FreeSlot> slots = new ArrayList<>();
+        if (needed > units) {
+            return slots;
+        }
+
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            LocalDateTime open = day.atTime(dayStart);
+            LocalDateTime close = open.plusMinutes((long) units * UNIT_MINUTES);
+            FreeSlot firstOfDay = null;
+            for (Court court : courts) {
+                BitSet busy = busyUnits(court.getId(), open, close, units);
+                int start = busy.nextClearBit(0);
+                while (start < units) {
+                    int end = busy.nextSetBit(start);
+                    if (end < 0 || end > units) {
+                        end = units;
+                    }
+                    if (end - start >= needed) {
+                        FreeSlot slot = new FreeSlot(court, open.plusMinutes((long) start * UNIT_MINUTES),
+                            open.plusMinutes((long) end * UNIT_MINUTES));
+                        if (firstOnly) {
+                            if (firstOfDay == null || slot.getStart().isBefore(firstOfDay.getStart())) {
+                                firstOfDay = slot;
+                            }
+                            break;
+                        }
+                        slots.add(slot);
+                    }
+                    start = busy.nextClearBit(end);
+                }
+            }
+            if (firstOfDay != null) {
+                // Days are visited in order, so the first day with a slot holds the earliest one
+                return List.of(firstOfDay);
+            }
+        }
+        slots.sort(Comparator.comparing(FreeSlot::getStart).thenComparing(FreeSlot::getCourtName));
+        return slots;
+    }
+
+    private List<Court> findCourts(Collection<Long> courtIds, String city) {
+        List<Court> courts;
+        if (courtIds != null && !courtIds.isEmpty()) {
+            courts = courtRepository.findAllById(courtIds);
+        } else if (city != null && !city.isBlank()) {
+            courts = courtRepository.findByCityIgnoreCase(city.trim());
+        } else {
+            courts = courtRepository.findByActiveTrue();
+        }
+        return courts.stream()
+            .filter(Court::isActive)
+            .sorted(Comparator.comparing(Court::getName))
+            .toList();
+    }
+
+    // Bit i is set when any match holds the court during unit i after opening; partial units count as busy
+    private BitSet busyUnits(Long courtId, LocalDateTime open, LocalDateTime close, int units) {
+        BitSet busy = new BitSet(units);
+        for (CourtScheduleIndex.Booking booking : courtScheduleIndex.findBetween(courtId, open, close)) {
+            long fromMinute = Duration.between(open, booking.getStart()).toMinutes();
+            long toMinute = Duration.between(open, booking.getEnd()).toMinutes();
+            int first = (int) Math.max(0, Math.floorDiv(fromMinute, UNIT_MINUTES));
+            int last = (int) Math.min(units, Math.ceilDiv(toMinute, UNIT_MINUTES));
+            if (first < last) {
+                busy.set(first, last);
+            }
+        }
+        return busy;
+    }
+
+    public static class FreeSlot {
+        private final Long courtId;
+        private final String courtName;
+        private final String city;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+
+        FreeSlot(Court court, LocalDateTime start, LocalDateTime end) {
+            this.courtId = court.getId();
+            this.courtName = court.getName();
+            this.city = court.getCity();
+            this.start = start;
+            this.end = end;
+        }
+
+        public Long getCourtId() { return courtId; }
+        public String getCourtName() { return courtName; }
+        public String getCity() { return city; }
+        public LocalDateTime getStart() { return start; }
+        public LocalDateTime getEnd() { return end; }
+        public long getMinutes() { return Duration.between(start, end).toMinutes(); }
+    }
+}
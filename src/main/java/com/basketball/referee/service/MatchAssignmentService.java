@@ -1,26 +1,67 @@
 package com.basketball.referee.service;
 
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.basketball.referee.model.Referee;
 import com.basketball.referee.model.MatchAssignment;
 import com.basketball.referee.model.Match;
+import com.basketball.referee.model.NotificationOutbox;
 import com.basketball.referee.repository.MatchAssignmentRepository;
+import com.basketball.referee.repository.MatchAssignmentRepository.CompletedCounts;
+import com.basketball.referee.repository.MatchRepository;
+import com.basketball.referee.repository.RefereeRepository;
 
 @Service
 @Transactional
 public class MatchAssignmentService {
 
+    private static final Set<MatchAssignment.AssignmentState> HELD =
+        EnumSet.of(MatchAssignment.AssignmentState.PENDING, MatchAssignment.AssignmentState.ACCEPTED);
+
+    private static final DateTimeFormatter DATE_HOUR = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
     @Autowired
     private MatchAssignmentRepository assignmentRepository;
 
+    @Autowired
+    private SettlementLedgerService ledgerService;
+
+    @Autowired
+    private RefereeScheduleIndex scheduleIndex;
+
+    @Autowired
+    private MatchRepository matchRepository;
+
+    @Autowired
+    private RefereeRepository refereeRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatisticsRegistry statistics;
+
+    @Autowired
+    private NotificationOutboxService outboxService;
+
     public List<MatchAssignment> findAll() {
         return assignmentRepository.findAll();
     }
@@ -55,30 +96,58 @@ public class MatchAssignmentService {
         return assignmentRepository.findByRefereeAndDateRange(refereeId, startOfMonth, endOfMonth);
     }
 
+    public List<MatchAssignment> findCompletedByRefereeAndMonth(Long refereeId, YearMonth yearMonth) {
+        LocalDateTime startOfMonth = yearMonth.atDay(1).atStartOfDay();
+        LocalDateTime endOfMonth = yearMonth.atEndOfMonth().atTime(23, 59, 59);
+        return assignmentRepository.findCompletedByRefereeAndDateRange(refereeId, startOfMonth, endOfMonth);
+    }
+
     public List<MatchAssignment> findCompletedByReferee(Long refereeId) {
         return assignmentRepository.findCompletedAssignmentsByReferee(refereeId);
     }
 
     public MatchAssignment save(MatchAssignment assignment) {
-        return assignmentRepository.save(assignment);
+        boolean isNew = assignment.getId() == null;
+        MatchAssignment saved = assignmentRepository.save(assignment);
+        scheduleIndex.onSave(saved);
+        if (isNew) {
+            statistics.assignmentStateChanged(null, saved.getState());
+        } else {
+            statistics.invalidate();
+        }
+        return saved;
     }
 
     public MatchAssignment createAssignment(Match match, Referee referee, MatchAssignment.RefereeRole role) {
+        checkRefereeAvailable(referee, match);
         MatchAssignment assignment = new MatchAssignment();
         assignment.setMatch(match);
         assignment.setReferee(referee);
         assignment.setRole(role);
         assignment.setState(MatchAssignment.AssignmentState.PENDING);
-        return assignmentRepository.save(assignment);
+        MatchAssignment saved = assignmentRepository.save(assignment);
+        scheduleIndex.onSave(saved);
+        statistics.assignmentStateChanged(null, saved.getState());
+        outboxService.record(NotificationOutbox.EventType.ASSIGNMENT_CREATED, saved);
+        return saved;
     }
 
     public void acceptAssignment(Long assignmentId) {
         Optional<MatchAssignment> assignmentOpt = assignmentRepository.findById(assignmentId);
         if (assignmentOpt.isPresent()) {
             MatchAssignment assignment = assignmentOpt.get();
+            MatchAssignment.AssignmentState previousState = assignment.getState();
+            if (previousState == MatchAssignment.AssignmentState.REJECTED) {
+                // The referee may have taken another match at that time since rejecting this one
+                checkRefereeAvailable(assignment.getReferee(), assignment.getMatch());
+            }
             assignment.setState(MatchAssignment.AssignmentState.ACCEPTED);
+            outboxService.record(NotificationOutbox.EventType.ASSIGNMENT_ACCEPTED, assignment);
             assignment.setResponseDate(LocalDateTime.now());
             assignmentRepository.save(assignment);
+            ledgerService.onStateChange(assignment, previousState);
+            statistics.assignmentStateChanged(previousState, assignment.getState());
+            scheduleIndex.onSave(assignment);
         }
     }
 
@@ -86,10 +155,19 @@ public class MatchAssignmentService {
         Optional<MatchAssignment> assignmentOpt = assignmentRepository.findById(assignmentId);
         if (assignmentOpt.isPresent()) {
             MatchAssignment assignment = assignmentOpt.get();
+            MatchAssignment.AssignmentState previousState = assignment.getState();
+            if (previousState == MatchAssignment.AssignmentState.REJECTED) {
+                // The referee may have taken another match at that time since rejecting this one
+                checkRefereeAvailable(assignment.getReferee(), assignment.getMatch());
+            }
             assignment.setState(MatchAssignment.AssignmentState.ACCEPTED);
+            outboxService.record(NotificationOutbox.EventType.ASSIGNMENT_ACCEPTED, assignment);
             assignment.setResponseDate(LocalDateTime.now());
             assignment.setComments(comments);
             assignmentRepository.save(assignment);
+            ledgerService.onStateChange(assignment, previousState);
+            statistics.assignmentStateChanged(previousState, assignment.getState());
+            scheduleIndex.onSave(assignment);
         }
     }
 
@@ -97,19 +175,29 @@ public class MatchAssignmentService {
         Optional<MatchAssignment> assignmentOpt = assignmentRepository.findById(assignmentId);
         if (assignmentOpt.isPresent()) {
             MatchAssignment assignment = assignmentOpt.get();
+            MatchAssignment.AssignmentState previousState = assignment.getState();
             assignment.setState(MatchAssignment.AssignmentState.REJECTED);
+            outboxService.record(NotificationOutbox.EventType.ASSIGNMENT_REJECTED, assignment);
             assignment.setResponseDate(LocalDateTime.now());
             assignmentRepository.save(assignment);
+            ledgerService.onStateChange(assignment, previousState);
+            statistics.assignmentStateChanged(previousState, assignment.getState());
+            scheduleIndex.onSave(assignment);
         }
     }
     public void rejectAssignment(Long assignmentId, String comments) {
         Optional<MatchAssignment> assignmentOpt = assignmentRepository.findById(assignmentId);
         if (assignmentOpt.isPresent()) {
             MatchAssignment assignment = assignmentOpt.get();
+            MatchAssignment.AssignmentState previousState = assignment.getState();
             assignment.setState(MatchAssignment.AssignmentState.REJECTED);
+            outboxService.record(NotificationOutbox.EventType.ASSIGNMENT_REJECTED, assignment);
             assignment.setResponseDate(LocalDateTime.now());
             assignment.setComments(comments);
             assignmentRepository.save(assignment);
+            ledgerService.onStateChange(assignment, previousState);
+            statistics.assignmentStateChanged(previousState, assignment.getState());
+            scheduleIndex.onSave(assignment);
         }
     }
 
@@ -117,13 +205,17 @@ public class MatchAssignmentService {
         Optional<MatchAssignment> assignmentOpt = assignmentRepository.findById(assignmentId);
         if (assignmentOpt.isPresent()) {
             MatchAssignment assignment = assignmentOpt.get();
+            MatchAssignment.AssignmentState previousState = assignment.getState();
             assignment.setState(MatchAssignment.AssignmentState.COMPLETED);
             assignmentRepository.save(assignment);
+            ledgerService.onStateChange(assignment, previousState);
+            statistics.assignmentStateChanged(previousState, assignment.getState());
+            scheduleIndex.onSave(assignment);
         }
     }
 
     public long countByState(MatchAssignment.AssignmentState state) {
-        return assignmentRepository.countByState(state);
+        return statistics.countAssignments(state);
     }
 
     public long countPendingByReferee(Long refereeId) {
@@ -135,6 +227,14 @@ public class MatchAssignmentService {
     }
 
     public void deleteById(Long id) {
+        assignmentRepository.findById(id).ifPresent(assignment -> {
+            ledgerService.onDelete(assignment);
+            scheduleIndex.onDelete(assignment.getReferee().getId(), id);
+            statistics.assignmentStateChanged(assignment.getState(), null);
+            if (HELD.contains(assignment.getState())) {
+                outboxService.record(NotificationOutbox.EventType.ASSIGNMENT_CANCELLED, assignment);
+            }
+        });
         assignmentRepository.deleteById(id);
     }
 
@@ -142,29 +242,253 @@ public class MatchAssignmentService {
         return assignmentRepository.findByMatchId(matchId);
     }
 
-    public void assignReferees(Long matchId, List<Long> refereeIds, List<String> roles) {
-        // First, remove existing assignments for this match
-        List<MatchAssignment> existingAssignments = findByMatch(matchId);
-        existingAssignments.forEach(assignment -> deleteById(assignment.getId()));
-
-        // Create new assignments
+    /**
+     * Sets the referees of a match to the selected (referee, role) pairs;
+     * empty selects are skipped. See {@link #reconcileAssignments(Map)}.
+     */
+    public Reconciliation assignReferees(Long matchId, List<Long> refereeIds, List<String> roles) {
+        List<RefereeSlot> slots = new ArrayList<>();
         for (int i = 0; i < refereeIds.size(); i++) {
-            MatchAssignment assignment = new MatchAssignment();
-            assignment.setMatch(new Match()); // Will be set by repository
-            assignment.getMatch().setId(matchId);
-            assignment.setReferee(new Referee());
-            assignment.getReferee().setId(refereeIds.get(i));
-            assignment.setRole(MatchAssignment.RefereeRole.valueOf(roles.get(i)));
-            assignment.setState(MatchAssignment.AssignmentState.PENDING);
-            assignmentRepository.save(assignment);
+            if (refereeIds.get(i) != null) {
+                slots.add(new RefereeSlot(refereeIds.get(i), MatchAssignment.RefereeRole.valueOf(roles.get(i))));
+            }
+        }
+        return reconcileAssignments(Map.of(matchId, slots));
+    }
+
+    /**
+     * Brings the assignments of each match in line with the requested
+     * (referee, role) pairs, e.g. for a whole round in one transaction. Rows
+     * that already match a pair are kept with their state and response;
+     * rejected ones are replaced by a new PENDING row. Only the difference is
+     * written, as one DELETE and one batched INSERT. New pairs are checked
+     * for double bookings first, and nothing is written if any check fails.
+     */
+    public Reconciliation reconcileAssignments(Map<Long, List<RefereeSlot>> requested) {
+        if (requested.isEmpty()) {
+            return new Reconciliation(0, 0, 0);
+        }
+        Map<Long, Match> matches = new HashMap<>();
+        matchRepository.findAllById(requested.keySet()).forEach(match -> matches.put(match.getId(), match));
+        if (matches.size() != requested.size()) {
+            throw new RuntimeException("Match no encontrado");
+        }
+        Set<Long> refereeIds = new HashSet<>();
+        requested.values().forEach(slots -> slots.forEach(slot -> refereeIds.add(slot.refereeId())));
+        Map<Long, Referee> referees = new HashMap<>();
+        refereeRepository.findAllById(refereeIds).forEach(referee -> referees.put(referee.getId(), referee));
+        if (referees.size() != refereeIds.size()) {
+            throw new RuntimeException("Árbitro no encontrado");
+        }
+
+        Map<String, MatchAssignment> existing = new HashMap<>();
+        for (MatchAssignment assignment : assignmentRepository.findByMatchIdIn(requested.keySet())) {
+            existing.merge(slotKey(assignment.getMatch().getId(), assignment.getReferee().getId(), assignment.getRole()),
+                assignment, (current, other) -> current.getState() == MatchAssignment.AssignmentState.REJECTED ? other : current);
+        }
+
+        Set<String> kept = new HashSet<>();
+        List<NewAssignment> added = new ArrayList<>();
+        for (Map.Entry<Long, List<RefereeSlot>> entry : requested.entrySet()) {
+            Set<Long> seen = new HashSet<>();
+            for (RefereeSlot slot : entry.getValue()) {
+                if (!seen.add(slot.refereeId())) {
+                    throw new RuntimeException("El árbitro " + referees.get(slot.refereeId()).getUser().getFullName()
+                        + " no puede ocupar dos roles en el mismo match");
+                }
+                String key = slotKey(entry.getKey(), slot.refereeId(), slot.role());
+                MatchAssignment current = existing.get(key);
+                if (current != null && current.getState() != MatchAssignment.AssignmentState.REJECTED) {
+                    kept.add(key);
+                } else {
+                    added.add(new NewAssignment(entry.getKey(), slot.refereeId(), slot.role()));
+                }
+            }
+        }
+        List<MatchAssignment> removed = existing.entrySet().stream()
+            .filter(e -> !kept.contains(e.getKey()))
+            .map(Map.Entry::getValue)
+            .toList();
+        Set<Long> removedIds = new HashSet<>();
+        removed.forEach(assignment -> removedIds.add(assignment.getId()));
+
+        checkAvailable(added, matches, referees, removedIds);
+
+        outboxService.record(removed.stream()
+            .filter(assignment -> HELD.contains(assignment.getState()))
+            .map(assignment -> new NotificationOutboxService.Event(NotificationOutbox.EventType.ASSIGNMENT_CANCELLED,
+                assignment.getReferee().getId(), assignment.getMatch().getId(), assignment.getRole()))
+            .toList());
+        for (MatchAssignment assignment : removed) {
+            ledgerService.onDelete(assignment);
+            scheduleIndex.onDelete(assignment.getReferee().getId(), assignment.getId());
+            statistics.assignmentStateChanged(assignment.getState(), null);
+        }
+        if (!removedIds.isEmpty()) {
+            assignmentRepository.deleteByIds(removedIds);
+        }
+        insertPending(added);
+        return new Reconciliation(kept.size(), removed.size(), added.size());
+    }
+
+    /**
+     * Inserts the assignments as PENDING with one JDBC batch, since IDENTITY
+     * ids keep Hibernate from batching. Callers validate them first.
+     */
+    public void insertPending(List<NewAssignment> assignments) {
+        if (assignments.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate("""
+            INSERT INTO match_assignments (match_id, referee_id, referee_role, state, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """, assignments, assignments.size(), (ps, assignment) -> {
+                ps.setLong(1, assignment.matchId());
+                ps.setLong(2, assignment.refereeId());
+                ps.setString(3, assignment.role().name());
+                ps.setString(4, MatchAssignment.AssignmentState.PENDING.name());
+                ps.setTimestamp(5, now);
+                ps.setTimestamp(6, now);
+            });
+        scheduleIndex.evict(assignments.stream().map(NewAssignment::refereeId).distinct().toList());
+        statistics.assignmentsMoved(null, MatchAssignment.AssignmentState.PENDING, assignments.size());
+        outboxService.record(assignments.stream()
+            .map(assignment -> new NotificationOutboxService.Event(NotificationOutbox.EventType.ASSIGNMENT_CREATED,
+                assignment.refereeId(), assignment.matchId(), assignment.role()))
+            .toList());
+    }
+
+    // Clashes with rows about to be removed do not count; new pairs are also checked against each other
+    private void checkAvailable(List<NewAssignment> added, Map<Long, Match> matches, Map<Long, Referee> referees,
+                                Set<Long> removedIds) {
+        if (added.isEmpty()) {
+            return;
+        }
+        refereeRepository.lockByIds(added.stream().map(NewAssignment::refereeId).distinct().toList());
+        Map<Long, List<Match>> addedByReferee = new HashMap<>();
+        for (NewAssignment assignment : added) {
+            Match match = matches.get(assignment.matchId());
+            Referee referee = referees.get(assignment.refereeId());
+            Optional<String> clash = scheduleIndex.findConflicts(referee.getId(), match.getDateHour(), match.getId())
+                .stream()
+                .filter(booking -> !removedIds.contains(booking.getAssignmentId()))
+                .findFirst()
+                .map(booking -> booking.getDescription() + " (" + booking.getStart().format(DATE_HOUR) + ")");
+            if (clash.isEmpty()) {
+                clash = addedByReferee.getOrDefault(referee.getId(), List.of()).stream()
+                    .filter(other -> Math.abs(Duration.between(other.getDateHour(), match.getDateHour()).toMinutes())
+                        < scheduleIndex.getDurationMinutes())
+                    .findFirst()
+                    .map(other -> other.getLocalTeam() + " vs " + other.getVisitorTeam() + " ("
+                        + other.getDateHour().format(DATE_HOUR) + ")");
+            }
+            if (clash.isPresent()) {
+                throw new RuntimeException("El árbitro " + referee.getUser().getFullName() + " ya está asignado a "
+                    + clash.get());
+            }
+            addedByReferee.computeIfAbsent(referee.getId(), id -> new ArrayList<>()).add(match);
+        }
+    }
+
+    private static String slotKey(Long matchId, Long refereeId, MatchAssignment.RefereeRole role) {
+        return matchId + "/" + refereeId + "/" + role;
+    }
+
+    /**
+     * Whether the referee holds no other match overlapping this one, for
+     * filtering the candidates of the assign screen. The match's own
+     * assignments do not count.
+     */
+    public boolean isRefereeAvailable(Long refereeId, Match match) {
+        return scheduleIndex.isFree(refereeId, match.getDateHour(), match.getId());
+    }
+
+    // A match moved in time or is being deleted; its referees' schedules are reloaded on next use
+    public void onMatchChanged(Long matchId) {
+        scheduleIndex.evict(assignmentRepository.findRefereeIdsByMatches(List.of(matchId)));
+    }
+
+    // Locks the referee first, so no other assignment of theirs can commit between this check and the save
+    private void checkRefereeAvailable(Referee referee, Match match) {
+        refereeRepository.lockByIds(List.of(referee.getId()));
+        List<RefereeScheduleIndex.Booking> conflicts =
+            scheduleIndex.findConflicts(referee.getId(), match.getDateHour(), match.getId());
+        if (!conflicts.isEmpty()) {
+            RefereeScheduleIndex.Booking other = conflicts.get(0);
+            throw new RuntimeException("El árbitro " + referee.getUser().getFullName() + " ya está asignado a "
+                + other.getDescription() + " ("
+                + other.getStart().format(DATE_HOUR) + ")");
         }
     }
 
     public void cancelAllAssignments(Long matchId) {
-        List<MatchAssignment> assignments = findByMatch(matchId);
-        assignments.forEach(assignment -> {
-            assignment.setState(MatchAssignment.AssignmentState.REJECTED);
-            assignmentRepository.save(assignment);
-        });
+        cancelAssignments(List.of(matchId));
+    }
+
+    /**
+     * Rejects every assignment of the matches with one UPDATE. Completed ones
+     * leave the settlement ledger. Returns the number of assignments changed.
+     */
+    public int cancelAssignments(Collection<Long> matchIds) {
+        if (matchIds.isEmpty()) {
+            return 0;
+        }
+        List<CompletedCounts> leavingLedger =
+            assignmentRepository.countByMatchesAndState(matchIds, MatchAssignment.AssignmentState.COMPLETED);
+        scheduleIndex.evict(assignmentRepository.findRefereeIdsByMatches(matchIds));
+        // Every assignment still holding its referee is about to be rejected
+        outboxService.record(assignmentRepository.findBookingsByMatches(matchIds).stream()
+            .map(booking -> new NotificationOutboxService.Event(NotificationOutbox.EventType.ASSIGNMENT_CANCELLED,
+                booking.getRefereeId(), booking.getMatchId(), booking.getRole()))
+            .toList());
+        int updated = assignmentRepository.updateStateByMatches(matchIds,
+            EnumSet.complementOf(EnumSet.of(MatchAssignment.AssignmentState.REJECTED)),
+            MatchAssignment.AssignmentState.REJECTED, LocalDateTime.now());
+        ledgerService.onBulkStateChange(leavingLedger, -1);
+        // Rows come from several states, so the counters are recounted
+        statistics.invalidate();
+        return updated;
+    }
+
+    /**
+     * Completes every ACCEPTED assignment of the matches with one UPDATE and
+     * adds them to the settlement ledger. Returns the number of assignments
+     * changed.
+     */
+    public int completeAcceptedAssignments(Collection<Long> matchIds) {
+        if (matchIds.isEmpty()) {
+            return 0;
+        }
+        List<CompletedCounts> enteringLedger =
+            assignmentRepository.countByMatchesAndState(matchIds, MatchAssignment.AssignmentState.ACCEPTED);
+        scheduleIndex.evict(assignmentRepository.findRefereeIdsByMatches(matchIds));
+        int updated = assignmentRepository.updateStateByMatches(matchIds,
+            EnumSet.of(MatchAssignment.AssignmentState.ACCEPTED),
+            MatchAssignment.AssignmentState.COMPLETED, LocalDateTime.now());
+        ledgerService.onBulkStateChange(enteringLedger, 1);
+        statistics.assignmentsMoved(MatchAssignment.AssignmentState.ACCEPTED,
+            MatchAssignment.AssignmentState.COMPLETED, updated);
+        return updated;
+    }
+
+    public record RefereeSlot(Long refereeId, MatchAssignment.RefereeRole role) {}
+
+    public record NewAssignment(Long matchId, Long refereeId, MatchAssignment.RefereeRole role) {}
+
+    public static class Reconciliation {
+        private final int kept;
+        private final int removed;
+        private final int added;
+
+        Reconciliation(int kept, int removed, int added) {
+            this.kept = kept;
+            this.removed = removed;
+            this.added = added;
+        }
+
+        public int getKept() { return kept; }
+        public int getRemoved() { return removed; }
+        public int getAdded() { return added; }
     }
 }
@@ -0,0 +1,130 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.Match;
+import com.basketball.referee.repository.MatchRepository;
+import com.basketball.referee.repository.MatchRepository.CalendarRow;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Month calendars built from one joined query and kept in memory until a
+ * match in that month changes, so moving between months does not touch the
+ * database once a month has been seen.
+ */
+@Service
+@Transactional(readOnly = true)
+public class MatchCalendarService {
+
+    @Autowired
+    private MatchRepository matchRepository;
+
+    private final Map<YearMonth, MonthCalendar> calendars = new ConcurrentHashMap<>();
+
+    public MonthCalendar getMonth(YearMonth yearMonth) {
+        return calendars.computeIfAbsent(yearMonth, this::load);
+    }
+
+    /**
+     * Drops the month now and again once the surrounding transaction commits,
+     * so a concurrent reload cannot keep the old rows.
+     */
+    public void evict(LocalDateTime dateHour) {
+        if (dateHour == null) {
+            return;
+        }
+        evict(YearMonth.from(dateHour));
+    }
+
+    public void evict(YearMonth yearMonth) {
+        calendars.remove(yearMonth);
+        TransactionHooks.afterCommit(() -> calendars.remove(yearMonth));
+    }
+
+    // Court and tournament names are copied into the calendar, so renaming either drops every month
+    public void evictAll() {
+        calendars.clear();
+        TransactionHooks.afterCommit(calendars::clear);
+    }
+
+    private MonthCalendar load(YearMonth yearMonth) {
+        List<CalendarRow> rows = matchRepository.findCalendarRows(
+            yearMonth.atDay(1).atStartOfDay(), yearMonth.atEndOfMonth().atTime(23, 59, 59));
+        return new MonthCalendar(yearMonth, rows);
+    }
+
+    // Immutable, so cached instances can be shared between requests
+    public static class MonthCalendar {
+        private final YearMonth yearMonth;
+        private final List<List<CalendarEntry>> days;
+        private final Map<Match.MatchState, Integer> countsByState = new EnumMap<>(Match.MatchState.class);
+        private final int total;
+
+        MonthCalendar(YearMonth yearMonth, List<CalendarRow> rows) {
+            this.yearMonth = yearMonth;
+            List<List<CalendarEntry>> byDay = new ArrayList<>(yearMonth.lengthOfMonth());
+            for (int i = 0; i < yearMonth.lengthOfMonth(); i++) {
+                byDay.add(new ArrayList<>());
+            }
+            for (CalendarRow row : rows) {
+                byDay.get(row.getDateHour().getDayOfMonth() - 1).add(new CalendarEntry(row));
+                countsByState.merge(row.getState(), 1, Integer::sum);
+            }
+            for (int i = 0; i < byDay.size(); i++) {
+                byDay.set(i, List.copyOf(byDay.get(i)));
+            }
+            this.days = List.copyOf(byDay);
+            this.total = rows.size();
+        }
+
+        public YearMonth getYearMonth() { return yearMonth; }
+        public int getTotal() { return total; }
+
+        // Matches of a day of this month, empty for days outside it
+        public List<CalendarEntry> getDay(LocalDate date) {
+            if (!YearMonth.from(date).equals(yearMonth)) {
+                return List.of();
+            }
+            return days.get(date.getDayOfMonth() - 1);
+        }
+
+        public int count(String state) {
+            return countsByState.getOrDefault(Match.MatchState.valueOf(state), 0);
+        }
+    }
+
+    public static class CalendarEntry {
+        private final Long id;
+        private final LocalDateTime dateHour;
+        private final String localTeam;
+        private final String visitorTeam;
+        private final Match.MatchState state;
+        private final String courtName;
+        private final String tournamentName;
+
+        CalendarEntry(CalendarRow row) {
+            this.id = row.getId();
+            this.dateHour = row.getDateHour();
+            this.localTeam = row.getLocalTeam();
+            this.visitorTeam = row.getVisitorTeam();
+            this.state = row.getState();
+            this.courtName = row.getCourtName();
+            this.tournamentName = row.getTournamentName();
+        }
+
+        public Long getId() { return id; }
+        public LocalDateTime getDateHour() { return dateHour; }
+        public String getLocalTeam() { return localTeam; }
+        public String getVisitorTeam() { return visitorTeam; }
+        public Match.MatchState getState() { return state; }
+        public String getCourtName() { return courtName; }
+        public String getTournamentName() { return tournamentName; }
+        public String getMatchDescription() { return localTeam + " vs " + visitorTeam; }
+    }
+}
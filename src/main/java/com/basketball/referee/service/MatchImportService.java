@@ -0,0 +1,403 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.Court;
+import com.basketball.referee.model.Match;
+import com.basketball.referee.model.Tournament;
+import com.basketball.referee.repository.CourtRepository;
+import com.basketball.referee.repository.MatchRepository;
+import com.basketball.referee.repository.MatchRepository.CourtBooking;
+import com.basketball.referee.repository.MatchRepository.MatchKeyRow;
+import com.basketball.referee.repository.TournamentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Bulk match import from CSV. The file is read line by line; each chunk of
+ * lines is validated in parallel against tournament and court names loaded
+ * once, and its valid rows are inserted with one JDBC batch. Invalid rows are
+ * reported by line number and skipped, and so are duplicates: a row whose
+ * tournament, court, date and hour and teams match a non-cancelled match
+ * already stored, or an earlier row of the same file, so importing a file
+ * twice does not create its matches twice. Rows that would overlap another
+ * match on the same court, stored or earlier in the file, are reported too.
+ * Each chunk commits on its own, so the court locks it takes are released
+ * before the next one; if the import stops midway, the chunks already
+ * committed stay, and importing the file again reports them as duplicates.
+ *
+ * Expected columns: tournament, court, local team, visitor team, date and
+ * hour (yyyy-MM-dd HH:mm or ISO), and optionally observations, separated by
+ * commas; fields containing commas go in double quotes. A first line
+ * starting with "tournament" is treated as a header.
+ */
+@Service
+@Transactional
+public class MatchImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final DateTimeFormatter DATE_HOUR = new DateTimeFormatterBuilder()
+        .appendPattern("yyyy-MM-dd")
+        .appendLiteral(' ')
+        .appendPattern("HH:mm[:ss]")
+        .toFormatter();
+
+    private static final DateTimeFormatter CLASH_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    @Autowired
+    private TournamentRepository tournamentRepository;
+
+    @Autowired
+    private CourtRepository courtRepository;
+
+    @Autowired
+    private MatchRepository matchRepository;
+
+    @Autowired
+    private MatchCalendarService calendarService;
+
+    @Autowired
+    private CourtScheduleIndex courtScheduleIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatisticsRegistry statistics;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${matches.import.chunk-size:5000}")
+    private int chunkSize;
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ImportReport importCsv(InputStream csv) throws IOException {
+        Map<String, Long> tournaments = new HashMap<>();
+        for (Tournament t : tournamentRepository.findAll()) {
+            tournaments.put(normalize(t.getName()), t.getId());
+        }
+        Map<String, Long> courts = new HashMap<>();
+        for (Court c : courtRepository.findAll()) {
+            courts.put(normalize(c.getName()), c.getId());
+        }
+
+        ImportReport report = new ImportReport();
+        // Line number of every row imported so far, by natural key
+        Map<MatchKey, Integer> imported = new HashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8), 64 * 1024)) {
+            List<RawLine> chunk = new ArrayList<>(chunkSize);
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1) {
+                    line = stripBom(line);
+                    if (line.toLowerCase().startsWith("tournament")) {
+                        continue;
+                    }
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                chunk.add(new RawLine(lineNumber, line));
+                if (chunk.size() == chunkSize) {
+                    commitChunk(chunk, tournaments, courts, imported, report);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                commitChunk(chunk, tournaments, courts, imported, report);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Inserts already validated matches in PROGRAMMED state with one JDBC
+     * batch and evicts the calendar months and court schedules they touch.
+     * Callers check the rows against court bookings first, holding the
+     * courts' row locks, as the CSV import and fixture generation do.
+     */
+    public void insertAll(List<NewMatch> matches) {
+        if (matches.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate("""
+            INSERT INTO matches (tournament_id, court_id, local_team, visitor_team, date_hour, state,
+                                 observations, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """, matches, matches.size(), (ps, match) -> {
+                ps.setLong(1, match.tournamentId());
+                ps.setLong(2, match.courtId());
+                ps.setString(3, match.localTeam());
+                ps.setString(4, match.visitorTeam());
+                ps.setTimestamp(5, Timestamp.valueOf(match.dateHour()));
+                ps.setString(6, Match.MatchState.PROGRAMMED.name());
+                ps.setString(7, match.observations());
+                ps.setTimestamp(8, now);
+                ps.setTimestamp(9, now);
+            });
+
+        Set<YearMonth> months = new HashSet<>();
+        Set<Long> courtIds = new HashSet<>();
+        for (NewMatch match : matches) {
+            months.add(YearMonth.from(match.dateHour()));
+            courtIds.add(match.courtId());
+        }
+        months.forEach(calendarService::evict);
+        courtScheduleIndex.evict(courtIds);
+        statistics.matchesMoved(null, Match.MatchState.PROGRAMMED, matches.size());
+    }
+
+    private void commitChunk(List<RawLine> chunk, Map<String, Long> tournaments, Map<String, Long> courts,
+                             Map<MatchKey, Integer> imported, ImportReport report) {
+        transactionTemplate.executeWithoutResult(status -> processChunk(chunk, tournaments, courts, imported, report));
+    }
+
+    private void processChunk(List<RawLine> chunk, Map<String, Long> tournaments, Map<String, Long> courts,
+                              Map<MatchKey, Integer> imported, ImportReport report) {
+        // Parsing and lookups are independent per line; results keep the chunk's order
+        List<ParsedRow> parsed = chunk.parallelStream()
+            .map(raw -> parse(raw, tournaments, courts))
+            .toList();
+
+        Set<Long> courtIds = new TreeSet<>();
+        LocalDateTime start = null;
+        LocalDateTime end = null;
+        for (ParsedRow row : parsed) {
+            if (row.match() != null) {
+                courtIds.add(row.match().courtId());
+                LocalDateTime dateHour = row.match().dateHour();
+                start = start == null || dateHour.isBefore(start) ? dateHour : start;
+                end = end == null || dateHour.isAfter(end) ? dateHour : end;
+            }
+        }
+        Set<MatchKey> stored = new HashSet<>();
+        CourtTimes booked = new CourtTimes(courtScheduleIndex.getDurationMinutes());
+        if (!courtIds.isEmpty()) {
+            // Courts stay locked until the chunk commits, so no other booking can slip in after this check
+            courtRepository.lockByIds(courtIds);
+            for (MatchKeyRow row : matchRepository.findMatchKeys(courtIds, start, end)) {
+                stored.add(new MatchKey(row.getTournamentId(), row.getCourtId(), row.getDateHour(),
+                    normalize(row.getLocalTeam()), normalize(row.getVisitorTeam())));
+            }
+            int duration = courtScheduleIndex.getDurationMinutes();
+            for (CourtBooking booking : matchRepository.findCourtBookings(courtIds,
+                    start.minusMinutes(duration), end.plusMinutes(duration))) {
+                booked.add(booking.getCourtId(), booking.getDateHour());
+            }
+        }
+
+        List<NewMatch> valid = new ArrayList<>(parsed.size());
+        for (ParsedRow row : parsed) {
+            if (row.error() != null) {
+                report.addError(row.lineNumber(), row.error());
+                continue;
+            }
+            NewMatch match = row.match();
+            MatchKey key = MatchKey.of(match);
+            // Rows of earlier chunks are already stored too, so the file is checked first for the better message
+            Integer firstLine = imported.get(key);
+            if (firstLine != null) {
+                report.addError(row.lineNumber(), "Partido duplicado: repite la línea " + firstLine);
+                continue;
+            }
+            if (stored.contains(key)) {
+                report.addError(row.lineNumber(), "Partido duplicado: ya existe un partido con el mismo "
+                    + "tournament, court, fecha y equipos");
+                continue;
+            }
+            LocalDateTime clash = booked.clash(match.courtId(), match.dateHour());
+            if (clash != null) {
+                report.addError(row.lineNumber(), "La court ya está ocupada por otro partido ("
+                    + clash.format(CLASH_FORMAT) + ")");
+                continue;
+            }
+            imported.put(key, row.lineNumber());
+            booked.add(match.courtId(), match.dateHour());
+            valid.add(match);
+        }
+        insertAll(valid);
+        report.imported += valid.size();
+    }
+
+    private static ParsedRow parse(RawLine raw, Map<String, Long> tournaments, Map<String, Long> courts) {
+        List<String> fields = splitCsv(raw.text());
+        if (fields.size() < 5) {
+            return ParsedRow.error(raw.number(), "Se esperaban al menos 5 columnas y hay " + fields.size());
+        }
+        Long tournamentId = tournaments.get(normalize(fields.get(0)));
+        if (tournamentId == null) {
+            return ParsedRow.error(raw.number(), "Tournament no encontrado: " + fields.get(0).trim());
+        }
+        Long courtId = courts.get(normalize(fields.get(1)));
+        if (courtId == null) {
+            return ParsedRow.error(raw.number(), "Court no encontrada: " + fields.get(1).trim());
+        }
+        String localTeam = fields.get(2).trim();
+        String visitorTeam = fields.get(3).trim();
+        if (localTeam.isEmpty()) {
+            return ParsedRow.error(raw.number(), "El equipo local es obligatorio");
+        }
+        if (visitorTeam.isEmpty()) {
+            return ParsedRow.error(raw.number(), "El equipo visitante es obligatorio");
+        }
+        LocalDateTime dateHour;
+        try {
+            dateHour = parseDateHour(fields.get(4).trim());
+        } catch (DateTimeParseException e) {
+            return ParsedRow.error(raw.number(), "Fecha y hora inválida: " + fields.get(4).trim());
+        }
+        String observations = fields.size() > 5 && !fields.get(5).isBlank() ? fields.get(5).trim() : null;
+        return new ParsedRow(raw.number(),
+            new NewMatch(tournamentId, courtId, localTeam, visitorTeam, dateHour, observations), null);
+    }
+
+    private static LocalDateTime parseDateHour(String value) {
+        if (value.indexOf('T') > 0) {
+            return LocalDateTime.parse(value);
+        }
+        return LocalDateTime.parse(value, DATE_HOUR);
+    }
+
+    // Splits one CSV line, honouring double-quoted fields with "" as an escaped quote
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(6);
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase();
+    }
+
+    private static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '﻿' ? line.substring(1) : line;
+    }
+
+    private record RawLine(int number, String text) {}
+
+    private record ParsedRow(int lineNumber, NewMatch match, String error) {
+        static ParsedRow error(int lineNumber, String error) {
+            return new ParsedRow(lineNumber, null, error);
+        }
+    }
+
+    // Start times booked per court, for clash checks within one chunk
+    private static final class CourtTimes {
+        private final int durationMinutes;
+        private final Map<Long, NavigableSet<LocalDateTime>> byCourt = new HashMap<>();
+
+        CourtTimes(int durationMinutes) {
+            this.durationMinutes = durationMinutes;
+        }
+
+        void add(Long courtId, LocalDateTime start) {
+            byCourt.computeIfAbsent(courtId, id -> new TreeSet<>()).add(start);
+        }
+
+        // Start of a booking on the court overlapping a match starting at start, or null
+        LocalDateTime clash(Long courtId, LocalDateTime start) {
+            NavigableSet<LocalDateTime> starts = byCourt.get(courtId);
+            if (starts == null) {
+                return null;
+            }
+            LocalDateTime before = starts.floor(start);
+            if (before != null && before.plusMinutes(durationMinutes).isAfter(start)) {
+                return before;
+            }
+            LocalDateTime after = starts.ceiling(start);
+            if (after != null && start.plusMinutes(durationMinutes).isAfter(after)) {
+                return after;
+            }
+            return null;
+        }
+    }
+
+    // Teams compare ignoring case and surrounding spaces, like tournament and court names
+    private record MatchKey(Long tournamentId, Long courtId, LocalDateTime dateHour, String localTeam,
+                            String visitorTeam) {
+        static MatchKey of(NewMatch match) {
+            return new MatchKey(match.tournamentId(), match.courtId(), match.dateHour(),
+                normalize(match.localTeam()), normalize(match.visitorTeam()));
+        }
+    }
+
+    public record NewMatch(Long tournamentId, Long courtId, String localTeam, String visitorTeam,
+                           LocalDateTime dateHour, String observations) {}
+
+    public static class ImportReport {
+        private int imported;
+        private int failed;
+        private final List<RowError> errors = new ArrayList<>();
+
+        void addError(int line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(line, message));
+            }
+        }
+
+        public int getImported() { return imported; }
+        public int getFailed() { return failed; }
+        // Only the first errors are kept; getFailed() has the full count
+        public List<RowError> getErrors() { return errors; }
+    }
+
+    public static class RowError {
+        private final int line;
+        private final String message;
+
+        RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine() { return line; }
+        public String getMessage() { return message; }
+    }
+}
@@ -1,14 +1,20 @@
 package com.basketball.referee.service;
 
 import com.basketball.referee.model.Match;
+import com.basketball.referee.repository.CourtRepository;
+import com.basketball.referee.repository.MatchAssignmentRepository.CompletedCounts;
 import com.basketball.referee.repository.MatchRepository;
+import com.basketball.referee.repository.MatchSpecifications;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
 
 @Service
 @Transactional
@@ -17,6 +23,24 @@ public class MatchService {
     @Autowired
     private MatchRepository matchRepository;
 
+    @Autowired
+    private MatchCalendarService calendarService;
+
+    @Autowired
+    private CourtRepository courtRepository;
+
+    @Autowired
+    private CourtScheduleIndex courtScheduleIndex;
+
+    @Autowired
+    private MatchAssignmentService assignmentService;
+
+    @Autowired
+    private StatisticsRegistry statistics;
+
+    @Autowired
+    private SettlementLedgerService ledgerService;
+
     public List<Match> findAll() {
         return matchRepository.findAll();
     }
@@ -50,25 +74,59 @@ public class MatchService {
     }
 
     public Match save(Match match) {
-        return matchRepository.save(match);
+        boolean isNew = match.getId() == null;
+        Match saved = matchRepository.save(match);
+        calendarService.evict(saved.getDateHour());
+        courtScheduleIndex.onSave(saved, null);
+        if (isNew) {
+            statistics.matchStateChanged(null, saved.getState());
+        } else {
+            statistics.invalidate();
+        }
+        return saved;
     }
 
     public Match create(Match match) {
         match.setState(Match.MatchState.PROGRAMMED);
-        return matchRepository.save(match);
+        checkCourtAvailable(match.getCourt().getId(), match.getDateHour(), null);
+        Match saved = matchRepository.save(match);
+        calendarService.evict(saved.getDateHour());
+        courtScheduleIndex.onSave(saved, null);
+        statistics.matchStateChanged(null, saved.getState());
+        return saved;
     }
 
     public Match update(Long id, Match matchDetails) {
         Optional<Match> matchOpt = matchRepository.findById(id);
         if (matchOpt.isPresent()) {
             Match match = matchOpt.get();
+            Long previousCourtId = match.getCourt().getId();
+            boolean rescheduled = !match.getDateHour().equals(matchDetails.getDateHour());
+            boolean repriced = rescheduled
+                || !match.getTournament().getId().equals(matchDetails.getTournament().getId());
+            // Completed assignments are priced by day and tournament, so moving the match moves them in the ledger
+            List<CompletedCounts> completed =
+                repriced ? ledgerService.findCompletedByMatch(id) : List.of();
+            if (match.getState() != Match.MatchState.CANCELED) {
+                checkCourtAvailable(matchDetails.getCourt().getId(), matchDetails.getDateHour(), id);
+            }
+            calendarService.evict(match.getDateHour());
             match.setTournament(matchDetails.getTournament());
             match.setCourt(matchDetails.getCourt());
             match.setLocalTeam(matchDetails.getLocalTeam());
             match.setVisitorTeam(matchDetails.getVisitorTeam());
             match.setDateHour(matchDetails.getDateHour());
             match.setObservations(matchDetails.getObservations());
-            return matchRepository.save(match);
+            calendarService.evict(match.getDateHour());
+            Match saved = matchRepository.save(match);
+            courtScheduleIndex.onSave(saved, previousCourtId);
+            if (rescheduled) {
+                assignmentService.onMatchChanged(id);
+            }
+            if (!completed.isEmpty()) {
+                ledgerService.onRekey(completed, ledgerService.findCompletedByMatch(id));
+            }
+            return saved;
         }
         throw new RuntimeException("Match no encontrado");
     }
@@ -77,8 +135,19 @@ public class MatchService {
         Optional<Match> matchOpt = matchRepository.findById(id);
         if (matchOpt.isPresent()) {
             Match match = matchOpt.get();
+            Match.MatchState previousState = match.getState();
+            if (previousState == Match.MatchState.CANCELED && nuevoState != Match.MatchState.CANCELED) {
+                // The court may have been given to another match while this one was cancelled
+                checkCourtAvailable(match.getCourt().getId(), match.getDateHour(), id);
+            }
             match.setState(nuevoState);
             matchRepository.save(match);
+            calendarService.evict(match.getDateHour());
+            courtScheduleIndex.onSave(match, null);
+            statistics.matchStateChanged(previousState, nuevoState);
+            if (nuevoState != previousState) {
+                cascadeToAssignments(List.of(id), nuevoState);
+            }
         }
     }
 
@@ -86,56 +155,199 @@ public class MatchService {
         Optional<Match> matchOpt = matchRepository.findById(id);
         if (matchOpt.isPresent()) {
             Match match = matchOpt.get();
+            Match.MatchState previousState = match.getState();
+            if (previousState == Match.MatchState.CANCELED) {
+                // Same as updateState: the court may have been given to another match meanwhile
+                checkCourtAvailable(match.getCourt().getId(), match.getDateHour(), id);
+            }
             match.setLocalResult(localResult);
             match.setVisitorResult(visitorResult);
             match.setState(Match.MatchState.FINISHED);
             matchRepository.save(match);
+            calendarService.evict(match.getDateHour());
+            courtScheduleIndex.onSave(match, null);
+            statistics.matchStateChanged(previousState, Match.MatchState.FINISHED);
+            assignmentService.completeAcceptedAssignments(List.of(id));
+        }
+    }
+
+    /**
+     * Cancels or finishes many matches at once, e.g. a whole round, with one
+     * UPDATE for the matches and one for their assignments. Matches already
+     * in that state, and cancelled ones when finishing, are left alone.
+     * Returns the number of matches changed.
+     */
+    public int changeStates(Collection<Long> matchIds, Match.MatchState newState) {
+        if (newState != Match.MatchState.CANCELED && newState != Match.MatchState.FINISHED) {
+            throw new RuntimeException("Solo se pueden cancelar o finalizar matches en bloque");
+        }
+        List<Long> changed = new ArrayList<>();
+        Set<YearMonth> months = new HashSet<>();
+        Set<Long> courtIds = new HashSet<>();
+        Map<Match.MatchState, Long> previousStates = new EnumMap<>(Match.MatchState.class);
+        for (Match match : matchRepository.findAllById(matchIds)) {
+            if (match.getState() == newState
+                    || (newState == Match.MatchState.FINISHED && match.getState() == Match.MatchState.CANCELED)) {
+                continue;
+            }
+            changed.add(match.getId());
+            previousStates.merge(match.getState(), 1L, Long::sum);
+            months.add(YearMonth.from(match.getDateHour()));
+            courtIds.add(match.getCourt().getId());
+        }
+        if (changed.isEmpty()) {
+            return 0;
+        }
+        matchRepository.updateStateByIds(changed, newState, LocalDateTime.now());
+        previousStates.forEach((previous, count) -> statistics.matchesMoved(previous, newState, count));
+        cascadeToAssignments(changed, newState);
+        months.forEach(calendarService::evict);
+        if (newState == Match.MatchState.CANCELED) {
+            courtScheduleIndex.evict(courtIds);
+        }
+        return changed.size();
+    }
+
+    // Cancelling a match rejects its assignments; finishing it completes the accepted ones
+    private void cascadeToAssignments(Collection<Long> matchIds, Match.MatchState newState) {
+        if (newState == Match.MatchState.CANCELED) {
+            assignmentService.cancelAssignments(matchIds);
+        } else if (newState == Match.MatchState.FINISHED) {
+            assignmentService.completeAcceptedAssignments(matchIds);
         }
     }
 
     public void deleteById(Long id) {
+        matchRepository.findById(id).ifPresent(match -> {
+            calendarService.evict(match.getDateHour());
+            courtScheduleIndex.onDelete(match.getCourt().getId(), id);
+            assignmentService.onMatchChanged(id);
+            ledgerService.onRekey(ledgerService.findCompletedByMatch(id), List.of());
+        });
         matchRepository.deleteById(id);
+        // Its assignments go with it, so everything is recounted
+        statistics.invalidate();
     }
 
-    public long countByState(Match.MatchState state) {
-        return matchRepository.countByState(state);
-    }
-
-    public List<Match> findByFilters(String search, String tournament, String state, String date) {
-        // This would typically use Criteria API or custom repository methods
-        // For now, implementing basic filtering
-        List<Match> matches = findAll();
-        
-        if (search != null && !search.trim().isEmpty()) {
-            matches = matches.stream()
-                .filter(p -> p.getLocalTeam().toLowerCase().contains(search.toLowerCase()) ||
-                           p.getVisitorTeam().toLowerCase().contains(search.toLowerCase()) ||
-                           p.getTournament().getName().toLowerCase().contains(search.toLowerCase()))
-                .toList();
+    /**
+     * Every pair of non-cancelled matches of the tournament that share a
+     * court at overlapping times, including clashes with other tournaments'
+     * matches on the same court.
+     */
+    @Transactional(readOnly = true)
+    public List<CourtConflict> findCourtConflicts(Long tournamentId) {
+        List<CourtConflict> conflicts = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Match match : matchRepository.findByTournamentId(tournamentId)) {
+            if (match.getState() == Match.MatchState.CANCELED) {
+                continue;
+            }
+            for (CourtScheduleIndex.Booking other : courtScheduleIndex.findOverlaps(
+                    match.getCourt().getId(), match.getDateHour(), match.getId())) {
+                String pair = Math.min(match.getId(), other.getMatchId()) + "/" + Math.max(match.getId(), other.getMatchId());
+                if (seen.add(pair)) {
+                    conflicts.add(new CourtConflict(match, other));
+                }
+            }
         }
-        
-        if (tournament != null && !tournament.trim().isEmpty()) {
-            Long tournamentId = Long.parseLong(tournament);
-            matches = matches.stream()
-                .filter(p -> p.getTournament().getId().equals(tournamentId))
-                .toList();
+        conflicts.sort(Comparator.comparing(CourtConflict::getDateHour));
+        return conflicts;
+    }
+
+    // Locks the court first, so no other booking of it can commit between this check and the save
+    private void checkCourtAvailable(Long courtId, LocalDateTime dateHour, Long matchId) {
+        courtRepository.lockByIds(List.of(courtId));
+        List<CourtScheduleIndex.Booking> overlaps = courtScheduleIndex.findOverlaps(courtId, dateHour, matchId);
+        if (!overlaps.isEmpty()) {
+            CourtScheduleIndex.Booking other = overlaps.get(0);
+            throw new RuntimeException("La court ya está ocupada por " + other.getDescription() + " ("
+                + other.getStart().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) + ")");
         }
-        
-        if (state != null && !state.trim().isEmpty()) {
-            Match.MatchState stateEnum = Match.MatchState.valueOf(state);
-            matches = matches.stream()
-                .filter(p -> p.getState().equals(stateEnum))
-                .toList();
+    }
+
+    public long countByState(Match.MatchState state) {
+        return statistics.countMatches(state);
+    }
+
+    /**
+     * One page of the admin match list, newest first. {@code cursor} is the
+     * value returned by {@link MatchPage#getNextCursor()} for the previous
+     * page, or null for the first one.
+     */
+    public MatchPage findByFilters(String search, String tournament, String state, String date,
+                                   String cursor, int size) {
+        Long tournamentId = tournament != null && !tournament.trim().isEmpty() ? Long.parseLong(tournament.trim()) : null;
+        Match.MatchState stateEnum = state != null && !state.trim().isEmpty() ? Match.MatchState.valueOf(state.trim()) : null;
+        LocalDate day = date != null && !date.trim().isEmpty() ? LocalDate.parse(date.trim()) : null;
+
+        LocalDateTime afterDateHour = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            int separator = cursor.lastIndexOf('_');
+            if (separator < 0) {
+                throw new RuntimeException("Cursor de paginación inválido");
+            }
+            afterDateHour = LocalDateTime.parse(cursor.substring(0, separator));
+            afterId = Long.parseLong(cursor.substring(separator + 1));
         }
-        
-        if (date != null && !date.trim().isEmpty()) {
-            LocalDateTime dateFiltro = LocalDateTime.parse(date + "T00:00:00");
-            LocalDateTime endDate = dateFiltro.plusDays(1);
-            matches = matches.stream()
-                .filter(p -> p.getDateHour().isAfter(dateFiltro) && p.getDateHour().isBefore(endDate))
-                .toList();
+
+        // One extra row tells whether there is a next page without a count query
+        Sort order = Sort.by(Sort.Order.desc("dateHour"), Sort.Order.desc("id"));
+        List<Match> rows = matchRepository.findBy(
+            MatchSpecifications.forList(search, tournamentId, stateEnum, day, afterDateHour, afterId),
+            q -> q.sortBy(order).limit(size + 1).all());
+
+        MatchPage page = new MatchPage();
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            Match last = rows.get(rows.size() - 1);
+            page.setNextCursor(last.getDateHour() + "_" + last.getId());
         }
-        
-        return matches;
+        page.setMatches(rows);
+        return page;
+    }
+
+    public static class MatchPage {
+        private List<Match> matches;
+        private String nextCursor;
+
+        public List<Match> getMatches() { return matches; }
+        public void setMatches(List<Match> matches) { this.matches = matches; }
+
+        public String getNextCursor() { return nextCursor; }
+        public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+        public boolean hasNext() { return nextCursor != null; }
+    }
+
+    public static class CourtConflict {
+        private final String courtName;
+        private final Long matchId;
+        private final String matchDescription;
+        private final LocalDateTime dateHour;
+        private final Long otherMatchId;
+        private final String otherDescription;
+        private final LocalDateTime otherDateHour;
+        private final boolean sameTournament;
+
+        CourtConflict(Match match, CourtScheduleIndex.Booking other) {
+            this.courtName = match.getCourt().getName();
+            this.matchId = match.getId();
+            this.matchDescription = match.getLocalTeam() + " vs " + match.getVisitorTeam();
+            this.dateHour = match.getDateHour();
+            this.otherMatchId = other.getMatchId();
+            this.otherDescription = other.getDescription();
+            this.otherDateHour = other.getStart();
+            this.sameTournament = match.getTournament().getId().equals(other.getTournamentId());
+        }
+
+        public String getCourtName() { return courtName; }
+        public Long getMatchId() { return matchId; }
+        public String getMatchDescription() { return matchDescription; }
+        public LocalDateTime getDateHour() { return dateHour; }
+        public Long getOtherMatchId() { return otherMatchId; }
+        public String getOtherDescription() { return otherDescription; }
+        public LocalDateTime getOtherDateHour() { return otherDateHour; }
+        public boolean isSameTournament() { return sameTournament; }
     }
 }
@@ -0,0 +1,16 @@
+package com.basketball.referee.service;
+
+/**
+ * A way of delivering notification digests to the outside world. Every
+ * enabled channel bean receives every digest; a digest counts as delivered
+ * only when all of them accept it, otherwise it is retried on the channels
+ * that have not accepted it yet.
+ */
+public interface NotificationChannel {
+
+    String getName();
+
+    boolean isEnabled();
+
+    void deliver(NotificationDigest digest) throws Exception;
+}
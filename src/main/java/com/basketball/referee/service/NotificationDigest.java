@@ -0,0 +1,74 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.NotificationOutbox;
+import com.basketball.referee.model.Referee;
+
+import java.util.*;
+
+/**
+ * The pending events of one referee, coalesced: for each (match, role) only
+ * the latest event is kept, and an assignment created and cancelled before
+ * the referee was told about it produces nothing at all.
+ */
+public class NotificationDigest {
+
+    private final Long refereeId;
+    private final String refereeName;
+    private final String email;
+    private final List<NotificationOutbox> events;
+
+    private NotificationDigest(Referee referee, List<NotificationOutbox> events) {
+        this.refereeId = referee.getId();
+        this.refereeName = referee.getUser().getFullName();
+        this.email = referee.getUser().getEmail();
+        this.events = events;
+    }
+
+    /** {@code events} must be in the order they were written. */
+    static NotificationDigest of(Referee referee, List<NotificationOutbox> events) {
+        Map<String, NotificationOutbox> first = new HashMap<>();
+        Map<String, NotificationOutbox> latest = new LinkedHashMap<>();
+        for (NotificationOutbox event : events) {
+            String key = event.getMatchId() + "/" + event.getRole();
+            first.putIfAbsent(key, event);
+            // Re-inserting moves the slot to where its latest event happened
+            latest.remove(key);
+            latest.put(key, event);
+        }
+        List<NotificationOutbox> kept = new ArrayList<>();
+        latest.forEach((key, event) -> {
+            boolean createdThenCancelled =
+                first.get(key).getEventType() == NotificationOutbox.EventType.ASSIGNMENT_CREATED
+                && event.getEventType() == NotificationOutbox.EventType.ASSIGNMENT_CANCELLED;
+            if (!createdThenCancelled) {
+                kept.add(event);
+            }
+        });
+        return new NotificationDigest(referee, kept);
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    public String getSubject() {
+        return events.size() == 1
+            ? events.get(0).getEventType().getDisplayName() + ": " + events.get(0).getSummary()
+            : events.size() + " novedades en tus asignaciones";
+    }
+
+    public String getBody() {
+        StringBuilder body = new StringBuilder("Hola ").append(refereeName).append(",\n\n");
+        for (NotificationOutbox event : events) {
+            body.append("- ").append(event.getEventType().getDisplayName())
+                .append(" (").append(event.getRole().getDisplayName()).append("): ")
+                .append(event.getSummary()).append('\n');
+        }
+        return body.append("\nPuedes ver el detalle en la sección de asignaciones del portal.\n").toString();
+    }
+
+    public Long getRefereeId() { return refereeId; }
+    public String getRefereeName() { return refereeName; }
+    public String getEmail() { return email; }
+    public List<NotificationOutbox> getEvents() { return events; }
+}
@@ -0,0 +1,232 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.NotificationOutbox;
+import com.basketball.referee.model.Referee;
+import com.basketball.referee.repository.RefereeRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers the outbox from a background thread, so admin requests only pay
+ * for one insert. Each run takes the oldest due events, groups them into one
+ * coalesced digest per referee and hands each digest to every enabled
+ * {@link NotificationChannel}. Events are marked sent only after delivery,
+ * so a crash in between sends them again: delivery is at least once.
+ * Failed digests are retried with exponential backoff and marked FAILED
+ * after {@code notifications.max-attempts}; the channels that did take the
+ * digest are recorded on its events, so a retry only goes to the others.
+ * The dispatcher runs on its own thread, since a slow mail server or webhook
+ * must not hold up the shared {@code @Scheduled} thread, and the same thread
+ * deletes events sent more than {@code notifications.sent-retention-days}
+ * ago.
+ */
+@Service
+public class NotificationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    @Autowired
+    private NotificationOutboxService outboxService;
+
+    @Autowired
+    private RefereeRepository refereeRepository;
+
+    @Autowired
+    private List<NotificationChannel> channels;
+
+    @Value("${notifications.batch-size:500}")
+    private int batchSize;
+
+    @Value("${notifications.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${notifications.retry-delay-seconds:60}")
+    private long retryDelaySeconds;
+
+    @Value("${notifications.dispatch-interval-ms:5000}")
+    private long dispatchIntervalMillis;
+
+    @Value("${notifications.purge-interval-ms:3600000}")
+    private long purgeIntervalMillis;
+
+    @Value("${notifications.sent-retention-days:7}")
+    private int sentRetentionDays;
+
+    private ScheduledExecutorService executor;
+
+    private final AtomicLong eventsDelivered = new AtomicLong();
+    private final AtomicLong eventsCoalesced = new AtomicLong();
+    private final AtomicLong digestsDelivered = new AtomicLong();
+    private final AtomicLong digestsFailed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong busyMillis = new AtomicLong();
+    private volatile LocalDateTime lastRun;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("notification-dispatcher").daemon().factory());
+        executor.scheduleWithFixedDelay(() -> runSafely(this::dispatch, "despacho"),
+            dispatchIntervalMillis, dispatchIntervalMillis, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(() -> runSafely(this::purgeSent, "limpieza"),
+            purgeIntervalMillis, purgeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // An exception escaping a task would cancel every later run of it
+    private static void runSafely(Runnable task, String name) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.warn("Falló la tarea de {} de notificaciones", name, e);
+        }
+    }
+
+    public void dispatch() {
+        // A full batch means more may be due; keep going instead of waiting for the next tick
+        int taken;
+        do {
+            taken = dispatchBatch();
+        } while (taken == batchSize);
+        lastRun = LocalDateTime.now();
+    }
+
+    private int dispatchBatch() {
+        List<NotificationOutbox> due = outboxService.findDue(batchSize);
+        if (due.isEmpty()) {
+            return 0;
+        }
+        long started = System.nanoTime();
+        Map<Long, List<NotificationOutbox>> byReferee = new LinkedHashMap<>();
+        for (NotificationOutbox event : due) {
+            byReferee.computeIfAbsent(event.getRefereeId(), id -> new ArrayList<>()).add(event);
+        }
+        Map<Long, Referee> referees = new HashMap<>();
+        refereeRepository.findWithUserByIdIn(byReferee.keySet()).forEach(r -> referees.put(r.getId(), r));
+        List<NotificationChannel> enabled = channels.stream().filter(NotificationChannel::isEnabled).toList();
+
+        List<Long> sent = new ArrayList<>();
+        for (Map.Entry<Long, List<NotificationOutbox>> entry : byReferee.entrySet()) {
+            List<Long> ids = entry.getValue().stream().map(NotificationOutbox::getId).toList();
+            Referee referee = referees.get(entry.getKey());
+            if (referee == null) {
+                outboxService.markFailed(ids, "Árbitro no encontrado", LocalDateTime.now(), 0);
+                digestsFailed.incrementAndGet();
+                continue;
+            }
+            NotificationDigest digest = NotificationDigest.of(referee, entry.getValue());
+            eventsCoalesced.addAndGet(ids.size() - digest.getEvents().size());
+            Map<String, List<Long>> delivered = new LinkedHashMap<>();
+            try {
+                for (NotificationChannel channel : enabled) {
+                    deliver(channel, referee, entry.getValue(), delivered);
+                }
+                if (!digest.isEmpty()) {
+                    digestsDelivered.incrementAndGet();
+                    eventsDelivered.addAndGet(digest.getEvents().size());
+                }
+                sent.addAll(ids);
+            } catch (Exception e) {
+                // Only written on failure: when every channel succeeds the events are marked sent anyway
+                delivered.forEach((channel, deliveredIds) -> outboxService.markDelivered(deliveredIds, channel));
+                int attempts = entry.getValue().stream().mapToInt(NotificationOutbox::getAttempts).max().orElse(0);
+                long delay = retryDelaySeconds << Math.min(attempts, 10);
+                outboxService.markFailed(ids, e.getMessage(), LocalDateTime.now().plusSeconds(delay), maxAttempts);
+                digestsFailed.incrementAndGet();
+                log.warn("No se pudo notificar al árbitro {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        outboxService.markSent(sent);
+        batches.incrementAndGet();
+        busyMillis.addAndGet((System.nanoTime() - started) / 1_000_000);
+        return due.size();
+    }
+
+    // A channel that took some of these events on an earlier attempt is only sent the rest
+    private static void deliver(NotificationChannel channel, Referee referee, List<NotificationOutbox> events,
+                                Map<String, List<Long>> delivered) throws Exception {
+        List<NotificationOutbox> pending = events.stream().filter(e -> !e.isDeliveredTo(channel.getName())).toList();
+        if (pending.isEmpty()) {
+            return;
+        }
+        NotificationDigest digest = NotificationDigest.of(referee, pending);
+        if (!digest.isEmpty()) {
+            channel.deliver(digest);
+        }
+        delivered.put(channel.getName(), pending.stream().map(NotificationOutbox::getId).toList());
+    }
+
+    void purgeSent() {
+        int purged = outboxService.purgeSent(LocalDateTime.now().minusDays(sentRetentionDays));
+        if (purged > 0) {
+            log.info("Se eliminaron {} notificaciones enviadas hace más de {} días", purged, sentRetentionDays);
+        }
+    }
+
+    public Metrics getMetrics() {
+        return new Metrics(this);
+    }
+
+    public static class Metrics {
+        private final long eventsDelivered;
+        private final long eventsCoalesced;
+        private final long digestsDelivered;
+        private final long digestsFailed;
+        private final long batches;
+        private final long busyMillis;
+        private final long pending;
+        private final long failed;
+        private final LocalDateTime lastRun;
+        private final List<String> channels;
+
+        Metrics(NotificationDispatcher dispatcher) {
+            this.eventsDelivered = dispatcher.eventsDelivered.get();
+            this.eventsCoalesced = dispatcher.eventsCoalesced.get();
+            this.digestsDelivered = dispatcher.digestsDelivered.get();
+            this.digestsFailed = dispatcher.digestsFailed.get();
+            this.batches = dispatcher.batches.get();
+            this.busyMillis = dispatcher.busyMillis.get();
+            this.pending = dispatcher.outboxService.countByStatus(NotificationOutbox.Status.PENDING);
+            this.failed = dispatcher.outboxService.countByStatus(NotificationOutbox.Status.FAILED);
+            this.lastRun = dispatcher.lastRun;
+            this.channels = dispatcher.channels.stream()
+                .filter(NotificationChannel::isEnabled)
+                .map(NotificationChannel::getName)
+                .toList();
+        }
+
+        public long getEventsDelivered() { return eventsDelivered; }
+        public long getEventsCoalesced() { return eventsCoalesced; }
+        public long getDigestsDelivered() { return digestsDelivered; }
+        public long getDigestsFailed() { return digestsFailed; }
+        public long getBatches() { return batches; }
+        public long getPending() { return pending; }
+        public long getFailed() { return failed; }
+        public LocalDateTime getLastRun() { return lastRun; }
+        public List<String> getChannels() { return channels; }
+
+        // Events handled per second of dispatcher work, delivered or coalesced away
+        public double getEventsPerSecond() {
+            return busyMillis == 0 ? 0 : (eventsDelivered + eventsCoalesced) * 1000.0 / busyMillis;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.Match;
+import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.model.NotificationOutbox;
+import com.basketball.referee.repository.MatchRepository;
+import com.basketball.referee.repository.NotificationOutboxRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Assignment events waiting to be sent. They are written with the same
+ * transaction as the change they describe, so an event exists exactly when
+ * the change commits. {@link NotificationDispatcher} delivers them later
+ * from a background thread.
+ */
+@Service
+@Transactional
+public class NotificationOutboxService {
+
+    private static final DateTimeFormatter DATE_HOUR = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    @Autowired
+    private NotificationOutboxRepository outboxRepository;
+
+    @Autowired
+    private MatchRepository matchRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void record(NotificationOutbox.EventType type, MatchAssignment assignment) {
+        record(List.of(new Event(type, assignment.getReferee().getId(), assignment.getMatch().getId(),
+            assignment.getRole())));
+    }
+
+    /** Writes the events with one JDBC batch, each with a summary of its match as it is now. */
+    public void record(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Set<Long> matchIds = new HashSet<>();
+        events.forEach(event -> matchIds.add(event.matchId()));
+        Map<Long, String> summaries = new HashMap<>();
+        for (Match match : matchRepository.findAllById(matchIds)) {
+            summaries.put(match.getId(), match.getLocalTeam() + " vs " + match.getVisitorTeam() + " - "
+                + match.getDateHour().format(DATE_HOUR) + " - " + match.getCourt().getName());
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate("""
+            INSERT INTO notification_outbox (event_type, referee_id, match_id, role, summary, status, attempts,
+                                             created_at, next_attempt_at)
+            VALUES (?, ?, ?, ?, ?, ?, 0, ?, ?)
+            """, events, events.size(), (ps, event) -> {
+                ps.setString(1, event.type().name());
+                ps.setLong(2, event.refereeId());
+                ps.setLong(3, event.matchId());
+                ps.setString(4, event.role().name());
+                ps.setString(5, summaries.getOrDefault(event.matchId(), "Match #" + event.matchId()));
+                ps.setString(6, NotificationOutbox.Status.PENDING.name());
+                ps.setTimestamp(7, now);
+                ps.setTimestamp(8, now);
+            });
+    }
+
+    @Transactional(readOnly = true)
+    public List<NotificationOutbox> findDue(int limit) {
+        return outboxRepository.findDue(LocalDateTime.now(), PageRequest.of(0, limit));
+    }
+
+    public void markSent(Collection<Long> ids) {
+        if (!ids.isEmpty()) {
+            outboxRepository.markSent(ids, LocalDateTime.now());
+        }
+    }
+
+    public void markDelivered(Collection<Long> ids, String channel) {
+        if (!ids.isEmpty()) {
+            outboxRepository.markDelivered(ids, channel);
+        }
+    }
+
+    public void markFailed(Collection<Long> ids, String error, LocalDateTime nextAttempt, int maxAttempts) {
+        if (!ids.isEmpty()) {
+            String message = error != null && error.length() > 500 ? error.substring(0, 500) : error;
+            outboxRepository.markFailed(ids, message, nextAttempt, maxAttempts);
+        }
+    }
+
+    /** Deletes events sent before the given time; failed ones are kept for inspection. */
+    public int purgeSent(LocalDateTime before) {
+        return outboxRepository.deleteSentBefore(before);
+    }
+
+    @Transactional(readOnly = true)
+    public long countByStatus(NotificationOutbox.Status status) {
+        return outboxRepository.countByStatus(status);
+    }
+
+    public record Event(NotificationOutbox.EventType type, Long refereeId, Long matchId,
+                        MatchAssignment.RefereeRole role) {}
+}
@@ -0,0 +1,360 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.Referee;
+import com.basketball.referee.service.SettlementService.SettlementData;
+import com.basketball.referee.service.SettlementService.SettlementLine;
+import com.basketball.referee.service.SettlementService.SettlementSummary;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Renders settlement statements off the request thread. Output is stored on
+ * disk in one directory per referee and month, under the SHA-256 of the
+ * statement content, so a statement whose lines have not changed is served
+ * from the existing file instead of rendered again. The directory is also
+ * how a statement rendered before a restart is found. A new render replaces
+ * the older files of its directory, and files not rendered again within
+ * {@code pdf.retention-days} are deleted.
+ */
+@Service
+public class PdfRenderService {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfRenderService.class);
+
+    public enum RenderState { QUEUED, RENDERING, DONE, FAILED }
+
+    @Autowired
+    private SettlementService settlementService;
+
+    @Autowired
+    private RefereeService refereeService;
+
+    @Autowired
+    private PdfService pdfService;
+
+    private final Path storageDir;
+    private final int workers;
+    private final ExecutorService executor;
+    // Bounds queued plus running work; single requests fail fast, bulk runs wait
+    private final Semaphore capacity;
+    private final Duration retention;
+    private final Map<String, RenderJob> jobs = new ConcurrentHashMap<>();
+
+    public PdfRenderService(@Value("${pdf.storage-dir:storage/statements}") String storageDir,
+                            @Value("${pdf.render.workers:0}") int workers,
+                            @Value("${pdf.render.queue-capacity:500}") int queueCapacity,
+                            @Value("${pdf.retention-days:90}") int retentionDays) {
+        this.storageDir = Paths.get(storageDir);
+        this.retention = Duration.ofDays(retentionDays);
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.workers, this.workers, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "pdf-render-" + threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        this.capacity = new Semaphore(this.workers + queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues a statement for rendering. Returns the existing job if one is
+     * already queued or rendering for the same referee and month.
+     */
+    public RenderJob request(Long refereeId, YearMonth yearMonth) {
+        RenderJob job = jobs.compute(key(refereeId, yearMonth), (k, current) ->
+            current != null && current.isActive() ? current : new RenderJob(refereeId, yearMonth));
+        if (job.claim()) {
+            if (!capacity.tryAcquire()) {
+                job.fail("La cola de renderizado está llena, intente más tarde");
+                return job;
+            }
+            submit(job);
+        }
+        return job;
+    }
+
+    /**
+     * Queues every referee with activity in the month. Submission happens on a
+     * background thread that waits for queue capacity, so all workers stay busy
+     * without overflowing the queue. Returns the number of statements queued.
+     */
+    public int requestAll(YearMonth yearMonth) {
+        List<SettlementSummary> summaries = settlementService.generateMonthlySummary(yearMonth);
+        Thread.ofVirtual().name("pdf-bulk-" + yearMonth).start(() -> {
+            for (SettlementSummary summary : summaries) {
+                RenderJob job = jobs.compute(key(summary.getRefereeId(), yearMonth), (k, current) ->
+                    current != null && current.isActive() ? current : new RenderJob(summary.getRefereeId(), yearMonth));
+                if (!job.claim()) {
+                    continue;
+                }
+                try {
+                    capacity.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    job.fail("Interrumpido");
+                    return;
+                }
+                submit(job);
+            }
+        });
+        return summaries.size();
+    }
+
+    public Optional<RenderJob> findJob(Long refereeId, YearMonth yearMonth) {
+        return Optional.ofNullable(jobs.get(key(refereeId, yearMonth)));
+    }
+
+    /**
+     * The statement rendered for the referee and month: the one this
+     * instance rendered last, otherwise the newest file in its directory,
+     * e.g. one rendered before a restart.
+     */
+    public Optional<Path> findOutput(Long refereeId, YearMonth yearMonth) {
+        Optional<Path> rendered = findJob(refereeId, yearMonth)
+            .filter(job -> job.getState() == RenderState.DONE)
+            .map(job -> directory(refereeId, yearMonth).resolve(job.getContentHash() + ".pdf"))
+            .filter(Files::exists);
+        return rendered.isPresent() ? rendered : newestOutput(directory(refereeId, yearMonth));
+    }
+
+    /**
+     * Deletes statements and leftover temporary files not written or reused
+     * within the retention period, the directories they leave empty, and the
+     * finished jobs of that age.
+     */
+    @Scheduled(fixedDelayString = "${pdf.sweep-interval-ms:86400000}",
+               initialDelayString = "${pdf.sweep-interval-ms:86400000}")
+    public void sweep() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> !job.isActive()
+            && job.getRequestedAt().isBefore(LocalDateTime.now().minus(retention)));
+        if (!Files.isDirectory(storageDir)) {
+            return;
+        }
+        int deleted = 0;
+        // Deepest paths first, so a directory is reached after the files in it
+        try (Stream<Path> paths = Files.walk(storageDir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                try {
+                    if (Files.isDirectory(path)) {
+                        if (!path.equals(storageDir)) {
+                            Files.delete(path);
+                        }
+                    } else if (Files.getLastModifiedTime(path).toInstant().isBefore(cutoff)) {
+                        Files.delete(path);
+                        deleted++;
+                    }
+                } catch (DirectoryNotEmptyException e) {
+                    // Still holds a statement within the retention period
+                } catch (IOException e) {
+                    log.warn("Could not delete old statement file {}", path, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Statement sweep of {} failed", storageDir, e);
+            return;
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} statement files older than {} days", deleted, retention.toDays());
+        }
+    }
+
+    private void submit(RenderJob job) {
+        try {
+            executor.execute(() -> {
+                try {
+                    render(job);
+                } finally {
+                    capacity.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            capacity.release();
+            job.fail(e.getMessage());
+        }
+    }
+
+    private void render(RenderJob job) {
+        job.state = RenderState.RENDERING;
+        try {
+            SettlementData settlement = settlementService.calculateSettlement(job.getRefereeId(), job.getYearMonth(), true);
+            Referee referee = refereeService.findById(job.getRefereeId())
+                .orElseThrow(() -> new RuntimeException("Árbitro no encontrado"));
+
+            String hash = contentHash(settlement, referee);
+            Path directory = directory(job.getRefereeId(), job.getYearMonth());
+            Path target = directory.resolve(hash + ".pdf");
+            if (Files.exists(target)) {
+                job.reused = true;
+                // Retention counts from the last time the statement was asked for
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            } else {
+                byte[] pdf = pdfService.generateSettlementPdf(settlement, referee);
+                Files.createDirectories(directory);
+                // Write to a temporary file first so a half-written PDF is never served
+                Path tmp = Files.createTempFile(directory, hash, ".tmp");
+                Files.write(tmp, pdf);
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            job.complete(hash);
+            deleteSuperseded(directory, target);
+        } catch (Exception e) {
+            log.warn("PDF render failed for referee {} {}", job.getRefereeId(), job.getYearMonth(), e);
+            job.fail(e.getMessage());
+        }
+    }
+
+    // Everything printed on the statement goes into the hash
+    private static String contentHash(SettlementData settlement, Referee referee) throws IOException {
+        StringBuilder content = new StringBuilder()
+            .append(referee.getId()).append('|')
+            .append(referee.getUser().getFullName()).append('|')
+            .append(referee.getRank()).append('|')
+            .append(referee.getSpecialty()).append('|')
+            .append(settlement.getYearMonth()).append('|')
+            .append(settlement.getTotalAmount().toPlainString()).append('\n');
+        settlement.getMatchesByRole().forEach((role, matches) -> content
+            .append(role).append('|').append(matches).append('|')
+            .append(settlement.getAmountsByRole().get(role).toPlainString()).append('\n'));
+        for (SettlementLine line : settlement.getLines()) {
+            content.append(line.getMatchDate()).append('|')
+                .append(line.getTournamentName()).append('|')
+                .append(line.getRole()).append('|')
+                .append(line.getAmount().toPlainString()).append('\n');
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Path directory(Long refereeId, YearMonth yearMonth) {
+        return storageDir.resolve(String.valueOf(refereeId)).resolve(yearMonth.toString());
+    }
+
+    private static Optional<Path> newestOutput(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".pdf"))
+                .max(Comparator.comparing(PdfRenderService::lastModified));
+        } catch (IOException e) {
+            log.warn("Could not list statements in {}", directory, e);
+            return Optional.empty();
+        }
+    }
+
+    // Older renders of the same statement are never served once a newer one exists
+    private static void deleteSuperseded(Path directory, Path current) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(path -> path.getFileName().toString().endsWith(".pdf")).toList()) {
+                if (!path.equals(current)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete superseded statements in {}", directory, e);
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String key(Long refereeId, YearMonth yearMonth) {
+        return refereeId + "/" + yearMonth;
+    }
+
+    public static class RenderJob {
+        private final Long refereeId;
+        private final YearMonth yearMonth;
+        private final LocalDateTime requestedAt = LocalDateTime.now();
+        private volatile RenderState state = RenderState.QUEUED;
+        private volatile String contentHash;
+        private volatile String error;
+        private volatile boolean reused;
+        private boolean submitted;
+
+        RenderJob(Long refereeId, YearMonth yearMonth) {
+            this.refereeId = refereeId;
+            this.yearMonth = yearMonth;
+        }
+
+        // Only the first caller to claim a queued job submits it
+        synchronized boolean claim() {
+            if (submitted || state != RenderState.QUEUED) {
+                return false;
+            }
+            submitted = true;
+            return true;
+        }
+
+        boolean isActive() {
+            return state == RenderState.QUEUED || state == RenderState.RENDERING;
+        }
+
+        void complete(String hash) {
+            this.contentHash = hash;
+            this.state = RenderState.DONE;
+        }
+
+        void fail(String error) {
+            this.error = error;
+            this.state = RenderState.FAILED;
+        }
+
+        public Long getRefereeId() { return refereeId; }
+        public YearMonth getYearMonth() { return yearMonth; }
+        public LocalDateTime getRequestedAt() { return requestedAt; }
+        public RenderState getState() { return state; }
+        public String getContentHash() { return contentHash; }
+        public String getError() { return error; }
+        public boolean isReused() { return reused; }
+    }
+}
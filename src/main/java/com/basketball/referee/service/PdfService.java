@@ -1,8 +1,8 @@
 package com.basketball.referee.service;
 
 import com.basketball.referee.model.Referee;
-import com.basketball.referee.model.MatchAssignment;
 import com.basketball.referee.service.SettlementService.SettlementData;
+import com.basketball.referee.service.SettlementService.SettlementLine;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,17 +21,20 @@ public class PdfService {
     private RefereeService refereeService;
 
     public byte[] generateSettlementPdf(SettlementData settlement) throws DocumentException, IOException {
-        Document document = new Document(PageSize.A4);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        PdfWriter writer = PdfWriter.getInstance(document, baos);
-
-        document.open();
-
         // Get referee information
         Referee referee = refereeService.findById(settlement.getRefereeId()).orElse(null);
         if (referee == null) {
             throw new RuntimeException("Árbitro no encontrado");
         }
+        return generateSettlementPdf(settlement, referee);
+    }
+
+    public byte[] generateSettlementPdf(SettlementData settlement, Referee referee) throws DocumentException, IOException {
+        Document document = new Document(PageSize.A4);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PdfWriter writer = PdfWriter.getInstance(document, baos);
+
+        document.open();
 
         // Fonts
         Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18, BaseColor.BLACK);
@@ -94,25 +97,22 @@ public class PdfService {
         detailTitle.setSpacingAfter(10);
         document.add(detailTitle);
 
-        PdfPTable detailTable = new PdfPTable(5);
+        PdfPTable detailTable = new PdfPTable(4);
         detailTable.setWidthPercentage(100);
         detailTable.setSpacingAfter(20);
 
         // Headers
         addCell(detailTable, "Date", headerFont);
-        addCell(detailTable, "Match", headerFont);
         addCell(detailTable, "Tournament", headerFont);
         addCell(detailTable, "Role", headerFont);
         addCell(detailTable, "Amount", headerFont);
 
-        for (MatchAssignment assignment : settlement.getAssignments()) {
-            BigDecimal payment = feeService.calculatePayment(assignment);
-            
-            addCell(detailTable, assignment.getMatch().getDateHour().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), normalFont);
-            addCell(detailTable, assignment.getMatch().getLocalTeam() + " vs " + assignment.getMatch().getVisitorTeam(), normalFont);
-            addCell(detailTable, assignment.getMatch().getTournament().getName(), normalFont);
-            addCell(detailTable, assignment.getRol().getDisplayName(), normalFont);
-            addCell(detailTable, "$" + payment.toString(), normalFont);
+        // Lines are already priced (or frozen, for closed months), so nothing is re-priced here
+        for (SettlementLine line : settlement.getLines()) {
+            addCell(detailTable, line.getMatchDate().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")), normalFont);
+            addCell(detailTable, line.getTournamentName(), normalFont);
+            addCell(detailTable, line.getRole().getDisplayName(), normalFont);
+            addCell(detailTable, "$" + line.getAmount().toString(), normalFont);
         }
 
         document.add(detailTable);
@@ -127,9 +127,6 @@ public class PdfService {
         return baos.toByteArray();
     }
 
-    @Autowired
-    private FeeService feeService;
-
     private void addCell(PdfPTable table, String text, Font font) {
         PdfPCell cell = new PdfPCell(new Phrase(text, font));
         cell.setPadding(8);
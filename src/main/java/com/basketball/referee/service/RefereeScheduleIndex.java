@@ -0,0 +1,153 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.repository.MatchAssignmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-referee index of the matches each referee holds through a PENDING or
+ * ACCEPTED assignment, loaded on first use. Like {@link CourtScheduleIndex},
+ * every match is taken to last {@code matches.duration-minutes}, so a
+ * referee's clashes at a given time are found with one range lookup instead
+ * of a date-range query, and an assignment change evicts the referee rather
+ * than patching it: the referee is read uncached until the changing
+ * transaction ends. Callers that check a referee before assigning lock the
+ * referee row first.
+ */
+@Service
+public class RefereeScheduleIndex {
+
+    private static final Comparator<Booking> BY_START =
+        Comparator.comparing(Booking::getStart).thenComparing(Booking::getAssignmentId);
+
+    @Autowired
+    private MatchAssignmentRepository assignmentRepository;
+
+    @Value("${matches.duration-minutes:120}")
+    private int durationMinutes;
+
+    private final Map<Long, RefereeBookings> referees = new ConcurrentHashMap<>();
+    // Referees with an assignment change in a transaction that has not finished yet
+    private final Map<Long, Integer> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Matches the referee holds that overlap a match starting at
+     * {@code dateHour}, leaving out {@code excludeMatchId} (the match being
+     * assigned, may be null).
+     */
+    public List<Booking> findConflicts(Long refereeId, LocalDateTime dateHour, Long excludeMatchId) {
+        if (refereeId == null || dateHour == null) {
+            return List.of();
+        }
+        List<Booking> conflicts = bookings(refereeId).overlapping(dateHour, durationMinutes);
+        conflicts.removeIf(booking -> booking.getMatchId().equals(excludeMatchId));
+        return conflicts;
+    }
+
+    public boolean isFree(Long refereeId, LocalDateTime dateHour, Long excludeMatchId) {
+        return findConflicts(refereeId, dateHour, excludeMatchId).isEmpty();
+    }
+
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    /** Evicts the assignment's referee. */
+    public void onSave(MatchAssignment assignment) {
+        evict(List.of(assignment.getReferee().getId()));
+    }
+
+    public void onDelete(Long refereeId, Long assignmentId) {
+        evict(List.of(refereeId));
+    }
+
+    // Also for writes that bypass the entities (bulk updates, moved matches); the referees are reloaded on next use
+    public void evict(Collection<Long> refereeIds) {
+        List<Long> ids = List.copyOf(refereeIds);
+        for (Long id : ids) {
+            writers.merge(id, 1, Integer::sum);
+            referees.remove(id);
+        }
+        TransactionHooks.afterCompletion(() -> {
+            for (Long id : ids) {
+                writers.computeIfPresent(id, (key, count) -> count == 1 ? null : count - 1);
+                referees.remove(id);
+            }
+        });
+    }
+
+    private RefereeBookings bookings(Long refereeId) {
+        if (writers.containsKey(refereeId)) {
+            return load(refereeId);
+        }
+        return referees.computeIfAbsent(refereeId, this::load);
+    }
+
+    private RefereeBookings load(Long refereeId) {
+        RefereeBookings referee = new RefereeBookings();
+        for (MatchAssignment assignment : assignmentRepository.findHeldByReferee(refereeId)) {
+            referee.add(new Booking(assignment, durationMinutes));
+        }
+        return referee;
+    }
+
+    private static final class RefereeBookings {
+        private final NavigableSet<Booking> byStart = new TreeSet<>(BY_START);
+
+        synchronized void add(Booking booking) {
+            byStart.add(booking);
+        }
+
+        // Only bookings starting in (start - duration, start + duration) can overlap a match starting at start
+        synchronized List<Booking> overlapping(LocalDateTime start, int durationMinutes) {
+            Booking from = Booking.probe(start.minusMinutes(durationMinutes), Long.MAX_VALUE);
+            Booking to = Booking.probe(start.plusMinutes(durationMinutes), Long.MIN_VALUE);
+            return new ArrayList<>(byStart.subSet(from, false, to, false));
+        }
+    }
+
+    // Immutable copy of what the index needs from an assignment and its match
+    public static class Booking {
+        private final Long assignmentId;
+        private final Long matchId;
+        private final MatchAssignment.RefereeRole role;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final String description;
+
+        Booking(MatchAssignment assignment, int durationMinutes) {
+            this.assignmentId = assignment.getId();
+            this.matchId = assignment.getMatch().getId();
+            this.role = assignment.getRole();
+            this.start = assignment.getMatch().getDateHour();
+            this.end = start.plusMinutes(durationMinutes);
+            this.description = assignment.getMatch().getLocalTeam() + " vs " + assignment.getMatch().getVisitorTeam();
+        }
+
+        private Booking(LocalDateTime start, Long assignmentId) {
+            this.assignmentId = assignmentId;
+            this.matchId = null;
+            this.role = null;
+            this.start = start;
+            this.end = start;
+            this.description = null;
+        }
+
+        static Booking probe(LocalDateTime start, long assignmentId) {
+            return new Booking(start, assignmentId);
+        }
+
+        public Long getAssignmentId() { return assignmentId; }
+        public Long getMatchId() { return matchId; }
+        public MatchAssignment.RefereeRole getRole() { return role; }
+        public LocalDateTime getStart() { return start; }
+        public LocalDateTime getEnd() { return end; }
+        public String getDescription() { return description; }
+    }
+}
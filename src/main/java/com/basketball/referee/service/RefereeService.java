@@ -4,6 +4,7 @@ import com.basketball.referee.model.Grade;
 import com.basketball.referee.model.Referee;
 import com.basketball.referee.model.User;
 import com.basketball.referee.service.UserService;
+import com.basketball.referee.repository.MatchAssignmentRepository.CompletedCounts;
 import com.basketball.referee.repository.RefereeRepository;
 import com.basketball.referee.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +34,12 @@ public class RefereeService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private StatisticsRegistry statistics;
+
+    @Autowired
+    private SettlementLedgerService ledgerService;
+
     private final String uploadDir = "uploads/photos/";
 
     public List<Referee> findAll() {
@@ -87,6 +94,7 @@ public class RefereeService {
     }
 
     public Referee save(Referee referee) {
+        statistics.invalidate();
         return refereeRepository.save(referee);
     }
 
@@ -95,6 +103,7 @@ public class RefereeService {
         if (userOpt.isPresent()) {
             referee.setUser(userOpt.get());
             referee.setActive(true);
+            statistics.activeChanged(StatisticsRegistry.Counter.REFEREES, false, true);
             return refereeRepository.save(referee);
         }
         throw new RuntimeException("Usuario no encontrado");
@@ -106,6 +115,7 @@ public class RefereeService {
             referee.setFotoUrl(photoUrl);
             referee.setActive(true);
             userService.createReferee(referee.getUser());
+            statistics.activeChanged(StatisticsRegistry.Counter.REFEREES, false, true);
             return refereeRepository.save(referee);
         } catch (IOException e) {
             throw new RuntimeException("Error al subir la foto: " + e.getMessage());
@@ -125,8 +135,8 @@ public class RefereeService {
             referee.setAddress(refereeDetails.getAddress());
             referee.setBirthDate(refereeDetails.getBirthDate());
             referee.setSpecialty(refereeDetails.getSpecialty());
-            referee.setRank(refereeDetails.getRank());
             referee.setObservations(refereeDetails.getObservations());
+            changeRank(referee, refereeDetails.getRank());
             referee.setFotoUrl(uploadPhoto(photo));
             return refereeRepository.save(referee);
         }
@@ -142,13 +152,26 @@ public class RefereeService {
             referee.setAddress(refereeDetails.getAddress());
             referee.setBirthDate(refereeDetails.getBirthDate());
             referee.setSpecialty(refereeDetails.getSpecialty());
-            referee.setRank(refereeDetails.getRank());
             referee.setObservations(refereeDetails.getObservations());
+            changeRank(referee, refereeDetails.getRank());
             return refereeRepository.save(referee);
         }
         throw new RuntimeException("Árbitro no encontrado");
     }
 
+    // Completed assignments are priced by rank, so a new rank re-prices them in the ledger
+    private void changeRank(Referee referee, Referee.Rank rank) {
+        if (referee.getRank() == rank) {
+            return;
+        }
+        List<CompletedCounts> completed = ledgerService.findCompletedByReferee(referee.getId());
+        referee.setRank(rank);
+        if (!completed.isEmpty()) {
+            refereeRepository.flush();
+            ledgerService.onRankChange(completed, ledgerService.findCompletedByReferee(referee.getId()));
+        }
+    }
+
     public String uploadPhoto(MultipartFile file) throws IOException {
         if (file.isEmpty()) {
             return null;
@@ -190,11 +213,13 @@ public class RefereeService {
             Referee referee = refereeOpt.get();
             referee.setActive(!referee.isActive());
             refereeRepository.save(referee);
+            statistics.activeChanged(StatisticsRegistry.Counter.REFEREES, !referee.isActive(), referee.isActive());
         }
     }
 
     public void deleteById(Long id) {
         refereeRepository.deleteById(id);
+        statistics.invalidate();
     }
 
     public boolean existsByDocument(String document) {
@@ -202,6 +227,6 @@ public class RefereeService {
     }
 
     public long countActive() {
-        return refereeRepository.findByActiveTrue().size();
+        return statistics.countActive(StatisticsRegistry.Counter.REFEREES);
     }
 }
@@ -0,0 +1,96 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.MatchAssignment;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Matches and amounts per role, accumulated as cents in arrays indexed by role
+ * ordinal. Amounts are turned back into {@link BigDecimal} only when read, and
+ * keep the scale that adding the same values as BigDecimal would have given.
+ */
+public final class RoleAmounts {
+
+    static final int MAX_SCALE = 2;
+
+    private static final MatchAssignment.RefereeRole[] ROLES = MatchAssignment.RefereeRole.values();
+
+    private final int[] matches = new int[ROLES.length];
+    private final long[] cents = new long[ROLES.length];
+    // Largest scale added per role, -1 while the role has no entries
+    private final int[] scales = new int[ROLES.length];
+    private int totalMatches;
+    private long totalCents;
+    private int totalScale = -1;
+
+    public RoleAmounts() {
+        Arrays.fill(scales, -1);
+    }
+
+    public void add(MatchAssignment.RefereeRole role, int matchCount, BigDecimal amount) {
+        int i = role.ordinal();
+        long amountCents = toCents(amount);
+        matches[i] += matchCount;
+        cents[i] = Math.addExact(cents[i], amountCents);
+        scales[i] = Math.max(scales[i], Math.max(amount.scale(), 0));
+        totalMatches += matchCount;
+        totalCents = Math.addExact(totalCents, amountCents);
+        totalScale = Math.max(totalScale, scales[i]);
+    }
+
+    public int getTotalMatches() {
+        return totalMatches;
+    }
+
+    // BigDecimal.ZERO when nothing was added, as summing from ZERO would give
+    public BigDecimal getTotalAmount() {
+        return totalScale < 0 ? BigDecimal.ZERO : fromCents(totalCents, totalScale);
+    }
+
+    /** Matches per role display name, in role order, for the roles that had entries. */
+    public Map<String, Integer> getMatchesByRole() {
+        Map<String, Integer> byRole = new LinkedHashMap<>();
+        for (int i = 0; i < ROLES.length; i++) {
+            if (scales[i] >= 0) {
+                byRole.put(ROLES[i].getDisplayName(), matches[i]);
+            }
+        }
+        return byRole;
+    }
+
+    /** Amount per role display name, in role order, for the roles that had entries. */
+    public Map<String, BigDecimal> getAmountsByRole() {
+        Map<String, BigDecimal> byRole = new LinkedHashMap<>();
+        for (int i = 0; i < ROLES.length; i++) {
+            if (scales[i] >= 0) {
+                byRole.put(ROLES[i].getDisplayName(), fromCents(cents[i], scales[i]));
+            }
+        }
+        return byRole;
+    }
+
+    /**
+     * Converts an amount to cents. Fee amounts are stored with two decimals,
+     * so anything finer is rejected rather than rounded.
+     */
+    static long toCents(BigDecimal amount) {
+        if (amount.scale() > MAX_SCALE) {
+            amount = amount.stripTrailingZeros();
+            if (amount.scale() > MAX_SCALE) {
+                throw new ArithmeticException("Amount con más de " + MAX_SCALE + " decimales: " + amount);
+            }
+        }
+        long unscaled = amount.unscaledValue().longValueExact();
+        for (int scale = amount.scale(); scale < MAX_SCALE; scale++) {
+            unscaled = Math.multiplyExact(unscaled, 10L);
+        }
+        return unscaled;
+    }
+
+    static BigDecimal fromCents(long cents, int scale) {
+        return BigDecimal.valueOf(cents, MAX_SCALE).setScale(scale);
+    }
+}
@@ -0,0 +1,208 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.ClosedPeriod;
+import com.basketball.referee.repository.MatchAssignmentRepository;
+import com.basketball.referee.repository.MatchAssignmentRepository.ExportRow;
+import com.basketball.referee.repository.SettlementSnapshotRepository;
+import com.basketball.referee.repository.SettlementSnapshotRepository.LineExportRow;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Streams settlement lines straight from the database to an output stream.
+ * Rows are read through a forward-only cursor and written one at a time, so
+ * memory use does not depend on the number of lines exported.
+ */
+@Service
+@Transactional(readOnly = true)
+public class SettlementExportService {
+
+    private static final String[] HEADER = {
+        "Árbitro ID", "Árbitro", "Periodo", "Fecha", "Tournament", "Role", "Amount"
+    };
+
+    public enum Format { CSV, XLSX }
+
+    @Autowired
+    private MatchAssignmentRepository assignmentRepository;
+
+    @Autowired
+    private SettlementSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private SettlementSnapshotService snapshotService;
+
+    @Autowired
+    private FeeService feeService;
+
+    /**
+     * Writes every completed assignment of the month and/or tournament. Closed
+     * months are exported from their snapshot, also when only a tournament is
+     * given; open months are priced with the current fee matrix. Returns the
+     * number of lines written.
+     */
+    public long export(YearMonth yearMonth, Long tournamentId, Format format, OutputStream out) throws IOException {
+        Set<YearMonth> closed = new TreeSet<>();
+        for (ClosedPeriod period : snapshotService.findClosedPeriods()) {
+            YearMonth month = YearMonth.parse(period.getPeriod());
+            if (yearMonth == null || yearMonth.equals(month)) {
+                closed.add(month);
+            }
+        }
+
+        try (LineWriter writer = format == Format.XLSX ? new XlsxLineWriter(out) : new CsvLineWriter(out)) {
+            writer.write(HEADER);
+            long[] count = {0};
+
+            for (YearMonth month : closed) {
+                try (Stream<LineExportRow> rows = snapshotRepository.streamLinesForExport(month.toString(), tournamentId)) {
+                    rows.forEach(row -> {
+                        writeLine(writer, row.getRefereeId(), row.getRefereeName(), row.getMatchDate(),
+                            row.getTournamentName(), row.getRole().getDisplayName(), row.getAmount());
+                        count[0]++;
+                    });
+                }
+            }
+
+            if (yearMonth == null || !closed.contains(yearMonth)) {
+                LocalDateTime start = yearMonth != null ? yearMonth.atDay(1).atStartOfDay() : null;
+                LocalDateTime end = yearMonth != null ? yearMonth.atEndOfMonth().atTime(23, 59, 59) : null;
+                try (Stream<ExportRow> rows = assignmentRepository.streamCompletedForExport(tournamentId, start, end)) {
+                    rows.filter(row -> !closed.contains(YearMonth.from(row.getMatchDate()))).forEach(row -> {
+                        BigDecimal amount = feeService.calculatePayment(row.getTournamentId(), row.getRank(), row.getRole(),
+                            row.getMatchDate());
+                        writeLine(writer, row.getRefereeId(), row.getFirstName() + " " + row.getLastName(),
+                            row.getMatchDate(), row.getTournamentName(), row.getRole().getDisplayName(), amount);
+                        count[0]++;
+                    });
+                }
+            }
+            return count[0];
+        }
+    }
+
+    private static void writeLine(LineWriter writer, Long refereeId, String refereeName, LocalDateTime matchDate,
+                                  String tournamentName, String role, BigDecimal amount) {
+        try {
+            writer.write(new String[] {
+                String.valueOf(refereeId), refereeName, YearMonth.from(matchDate).toString(),
+                matchDate.toString(), tournamentName, role, amount.toPlainString()
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface LineWriter extends AutoCloseable {
+        void write(String[] values) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private static class CsvLineWriter implements LineWriter {
+        private static final Pattern NUMBER = Pattern.compile("[+-]?\\d+(\\.\\d+)?");
+
+        private final Writer writer;
+
+        CsvLineWriter(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override
+        public void write(String[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escape(values[i]));
+            }
+            writer.write("\r\n");
+        }
+
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (isFormula(value)) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+            return value;
+        }
+
+        // Spreadsheets run a cell starting with one of these as a formula; amounts such as -1500.00 are left alone
+        private static boolean isFormula(String value) {
+            if (value.isEmpty() || "=+-@\t\r".indexOf(value.charAt(0)) < 0) {
+                return false;
+            }
+            return !NUMBER.matcher(value).matches();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+
+    // Keeps a window of rows in memory and spills older ones to a temporary file
+    private static class XlsxLineWriter implements LineWriter {
+        private static final int AMOUNT_COLUMN = 6;
+
+        private final OutputStream out;
+        private final SXSSFWorkbook workbook = new SXSSFWorkbook(200);
+        private final Sheet sheet;
+        private int rowIndex;
+
+        XlsxLineWriter(OutputStream out) {
+            this.out = out;
+            this.workbook.setCompressTempFiles(true);
+            this.sheet = workbook.createSheet("Settlements");
+        }
+
+        @Override
+        public void write(String[] values) {
+            Row row = sheet.createRow(rowIndex);
+            for (int i = 0; i < values.length; i++) {
+                if (i == AMOUNT_COLUMN && rowIndex > 0) {
+                    row.createCell(i).setCellValue(new BigDecimal(values[i]).doubleValue());
+                } else {
+                    row.createCell(i).setCellValue(values[i]);
+                }
+            }
+            rowIndex++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                workbook.write(out);
+                out.flush();
+            } finally {
+                workbook.dispose();
+                workbook.close();
+            }
+        }
+    }
+}
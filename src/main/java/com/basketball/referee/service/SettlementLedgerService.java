@@ -0,0 +1,306 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.model.Referee;
+import com.basketball.referee.model.SettlementLedgerEntry;
+import com.basketball.referee.repository.ClosedPeriodRepository;
+import com.basketball.referee.repository.MatchAssignmentRepository;
+import com.basketball.referee.repository.MatchAssignmentRepository.CompletedCounts;
+import com.basketball.referee.repository.RefereeRepository;
+import com.basketball.referee.repository.SettlementLedgerRepository;
+import com.basketball.referee.service.FeeMatrixCache.FeeSchedule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Keeps the settlement ledger (completed matches and amount per referee, month
+ * and role) in step with assignment and fee changes, inside the caller's
+ * transaction. Rows are changed with an in-place increment rather than read
+ * and written back, so concurrent completions for the same referee, month
+ * and role add up instead of overwriting each other. Every write first locks
+ * the referees' rows, which serializes live changes with a recompute of the
+ * same referees: a recompute never deletes a row under a pending increment,
+ * and an increment never lands on rows a recompute already counted it in.
+ *
+ * A closed month is settled from its snapshots, so a change that would add
+ * or remove completed assignments there is rejected. Closing a month takes
+ * the same referee locks, so a change either lands before the month is
+ * closed or sees it closed. Fee and rank changes still re-price closed months
+ * in the ledger, which keeps it equal to a rebuild, but the snapshots keep
+ * the amounts the month was closed with.
+ */
+@Service
+@Transactional
+public class SettlementLedgerService {
+
+    @Autowired
+    private SettlementLedgerRepository ledgerRepository;
+
+    @Autowired
+    private MatchAssignmentRepository assignmentRepository;
+
+    @Autowired
+    private RefereeRepository refereeRepository;
+
+    @Autowired
+    private ClosedPeriodRepository closedPeriodRepository;
+
+    @Autowired
+    private FeeMatrixCache feeMatrixCache;
+
+    @Autowired
+    private FinancialRollupService rollupService;
+
+    @Autowired
+    private FeeSimulationService simulationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public List<SettlementLedgerEntry> findByRefereeAndMonth(Long refereeId, YearMonth yearMonth) {
+        return ledgerRepository.findByRefereeIdAndPeriod(refereeId, yearMonth.toString());
+    }
+
+    public List<SettlementLedgerEntry> findByMonth(YearMonth yearMonth) {
+        return ledgerRepository.findByPeriod(yearMonth.toString());
+    }
+
+    public void onStateChange(MatchAssignment assignment, MatchAssignment.AssignmentState previousState) {
+        boolean wasCompleted = previousState == MatchAssignment.AssignmentState.COMPLETED;
+        boolean isCompleted = assignment.getState() == MatchAssignment.AssignmentState.COMPLETED;
+        if (!wasCompleted && isCompleted) {
+            apply(assignment, 1);
+        } else if (wasCompleted && !isCompleted) {
+            apply(assignment, -1);
+        }
+    }
+
+    public void onDelete(MatchAssignment assignment) {
+        if (assignment.getState() == MatchAssignment.AssignmentState.COMPLETED) {
+            apply(assignment, -1);
+        }
+    }
+
+    /**
+     * Applies a bulk state change given the assignments, grouped as in the
+     * ledger, that entered COMPLETED ({@code sign} 1) or left it
+     * ({@code sign} -1).
+     */
+    public void onBulkStateChange(List<CompletedCounts> changed, int sign) {
+        lockReferees(changed.stream().map(CompletedCounts::getRefereeId).toList());
+        checkOpen(changed.stream().map(counts -> YearMonth.from(counts.getMatchDay())).toList());
+        applyCounts(changed, sign);
+    }
+
+    private void applyCounts(List<CompletedCounts> changed, int sign) {
+        if (!changed.isEmpty()) {
+            simulationService.invalidate();
+        }
+        for (CompletedCounts counts : changed) {
+            LocalDate day = counts.getMatchDay();
+            long matchesDelta = sign * counts.getMatches();
+            BigDecimal amountDelta = feeMatrixCache.getAmount(counts.getTournamentId(), counts.getRank(),
+                counts.getRole(), day).multiply(BigDecimal.valueOf(matchesDelta));
+            add(counts.getRefereeId(), period(counts), counts.getRole(), (int) matchesDelta, amountDelta);
+            rollupService.record(counts.getTournamentId(), YearMonth.from(day), counts.getRank(), counts.getRole(),
+                matchesDelta, amountDelta);
+        }
+    }
+
+    /** Completed assignments of a match grouped as in the ledger, read before a change that moves them. */
+    public List<CompletedCounts> findCompletedByMatch(Long matchId) {
+        return assignmentRepository.countByMatchesAndState(List.of(matchId), MatchAssignment.AssignmentState.COMPLETED);
+    }
+
+    /** Completed assignments of a referee grouped as in the ledger, read before a change that moves them. */
+    public List<CompletedCounts> findCompletedByReferee(Long refereeId) {
+        return assignmentRepository.countCompletedByReferee(refereeId);
+    }
+
+    /**
+     * Moves completed assignments whose ledger row or price changed without
+     * a state change: a match moved to another day or tournament, or
+     * deleted. {@code before} is read before the change and {@code after}
+     * once it is saved; the old rows are taken out at the old prices and the
+     * new ones added at the new prices. Rejected if either side falls in a
+     * closed month.
+     */
+    public void onRekey(List<CompletedCounts> before, List<CompletedCounts> after) {
+        onBulkStateChange(before, -1);
+        onBulkStateChange(after, 1);
+    }
+
+    /**
+     * Re-prices a referee's completed assignments after a rank change, read
+     * as in {@link #onRekey}. Closed months are re-priced in the ledger too;
+     * their snapshots keep the rank they were closed with.
+     */
+    public void onRankChange(List<CompletedCounts> before, List<CompletedCounts> after) {
+        lockReferees(before.stream().map(CompletedCounts::getRefereeId).toList());
+        applyCounts(before, -1);
+        applyCounts(after, 1);
+    }
+
+    /**
+     * Re-prices every completed assignment of a (tournament, rank, role)
+     * combination after its fee versions changed from {@code before} to
+     * {@code after}. Only days whose price actually moved touch the ledger.
+     */
+    public void onFeeChange(Long tournamentId, Referee.Rank rank, MatchAssignment.RefereeRole role,
+                            FeeSchedule before, FeeSchedule after) {
+        List<CompletedCounts> completed = assignmentRepository.countCompletedByCombination(tournamentId, rank, role);
+        lockReferees(completed.stream().map(CompletedCounts::getRefereeId).toList());
+        for (CompletedCounts counts : completed) {
+            LocalDate day = counts.getMatchDay();
+            BigDecimal delta = after.amountAt(day).subtract(before.amountAt(day));
+            if (delta.signum() == 0) {
+                continue;
+            }
+            BigDecimal amountDelta = delta.multiply(BigDecimal.valueOf(counts.getMatches()));
+            add(counts.getRefereeId(), period(counts), role, 0, amountDelta);
+            rollupService.record(tournamentId, YearMonth.from(day), rank, role, 0, amountDelta);
+        }
+    }
+
+    /**
+     * Throws away the ledger and reconstructs it from completed assignments.
+     * Returns the number of ledger rows written.
+     */
+    public int rebuild() {
+        refereeRepository.lockAll();
+        ledgerRepository.deleteAllEntries();
+        Collection<SettlementLedgerEntry> entries = computeFromSource().values();
+        ledgerRepository.saveAll(entries);
+        return entries.size();
+    }
+
+    /**
+     * Recomputes the ledger rows of the given referees for one month from
+     * completed assignments. Returns the number of ledger rows written.
+     * The dashboard rollup and the fee simulation are built from completed
+     * assignments, not from ledger rows, so neither is invalidated here.
+     */
+    public int recomputeMonth(Collection<Long> refereeIds, YearMonth yearMonth) {
+        LocalDateTime startOfMonth = yearMonth.atDay(1).atStartOfDay();
+        LocalDateTime endOfMonth = yearMonth.atEndOfMonth().atTime(23, 59, 59);
+
+        lockReferees(refereeIds);
+        ledgerRepository.deleteByRefereesAndPeriod(refereeIds, yearMonth.toString());
+        Collection<SettlementLedgerEntry> entries = accumulate(
+            assignmentRepository.countCompletedByRefereesAndDateRange(refereeIds, startOfMonth, endOfMonth)).values();
+        ledgerRepository.saveAll(entries);
+        return entries.size();
+    }
+
+    /**
+     * Compares the stored ledger against a fresh computation from source rows
+     * and describes every row that differs. An empty list means the ledger is
+     * consistent.
+     */
+    @Transactional(readOnly = true)
+    public List<String> verify() {
+        Map<String, SettlementLedgerEntry> expected = computeFromSource();
+        List<String> differences = new ArrayList<>();
+
+        for (SettlementLedgerEntry stored : ledgerRepository.findAll()) {
+            String key = key(stored.getRefereeId(), stored.getPeriod(), stored.getRole());
+            SettlementLedgerEntry computed = expected.remove(key);
+            if (computed == null) {
+                if (stored.getMatches() != 0 || stored.getAmount().signum() != 0) {
+                    differences.add(key + ": en el ledger pero sin matches completados");
+                }
+            } else if (stored.getMatches() != computed.getMatches()
+                    || stored.getAmount().compareTo(computed.getAmount()) != 0) {
+                differences.add(key + ": ledger " + stored.getMatches() + "/" + stored.getAmount()
+                        + " vs calculado " + computed.getMatches() + "/" + computed.getAmount());
+            }
+        }
+        for (String key : expected.keySet()) {
+            differences.add(key + ": falta en el ledger");
+        }
+        return differences;
+    }
+
+    private Map<String, SettlementLedgerEntry> computeFromSource() {
+        return accumulate(assignmentRepository.countCompletedByPeriod());
+    }
+
+    private Map<String, SettlementLedgerEntry> accumulate(List<CompletedCounts> rows) {
+        Map<String, SettlementLedgerEntry> entries = new LinkedHashMap<>();
+        for (CompletedCounts counts : rows) {
+            String period = period(counts);
+            SettlementLedgerEntry entry = entries.computeIfAbsent(
+                key(counts.getRefereeId(), period, counts.getRole()),
+                k -> new SettlementLedgerEntry(counts.getRefereeId(), period, counts.getRole()));
+            BigDecimal price = feeMatrixCache.getAmount(counts.getTournamentId(), counts.getRank(), counts.getRole(),
+                counts.getMatchDay());
+            entry.setMatches(entry.getMatches() + counts.getMatches().intValue());
+            entry.setAmount(entry.getAmount().add(price.multiply(BigDecimal.valueOf(counts.getMatches()))));
+        }
+        return entries;
+    }
+
+    private void apply(MatchAssignment assignment, int sign) {
+        Long tournamentId = assignment.getMatch().getTournament().getId();
+        Referee.Rank rank = assignment.getReferee().getRank();
+        YearMonth yearMonth = YearMonth.from(assignment.getMatch().getDateHour());
+        BigDecimal price = feeMatrixCache.getAmount(tournamentId, rank, assignment.getRole(),
+            assignment.getMatch().getDateHour().toLocalDate());
+        BigDecimal amountDelta = sign > 0 ? price : price.negate();
+        lockReferees(List.of(assignment.getReferee().getId()));
+        checkOpen(List.of(yearMonth));
+
+        add(assignment.getReferee().getId(), yearMonth.toString(), assignment.getRole(), sign, amountDelta);
+        rollupService.record(tournamentId, yearMonth, rank, assignment.getRole(), sign, amountDelta);
+        simulationService.invalidate();
+    }
+
+    // Read after the referee locks, so a month closed by a transaction that held them is seen
+    private void checkOpen(Collection<YearMonth> months) {
+        for (YearMonth month : new TreeSet<>(months)) {
+            if (closedPeriodRepository.existsById(month.toString())) {
+                throw new RuntimeException("El mes " + month + " está cerrado: no se pueden modificar los matches "
+                    + "completados de ese período");
+            }
+        }
+    }
+
+    private void lockReferees(Collection<Long> refereeIds) {
+        if (!refereeIds.isEmpty()) {
+            refereeRepository.lockByIds(new TreeSet<>(refereeIds));
+        }
+    }
+
+    /**
+     * Adds to the (referee, period, role) row with one UPDATE and inserts it
+     * only when it does not exist yet. Callers hold the referee's row lock,
+     * so no other transaction can insert the same row in between.
+     */
+    private void add(Long refereeId, String period, MatchAssignment.RefereeRole role, int matches, BigDecimal amount) {
+        LocalDateTime now = LocalDateTime.now();
+        if (ledgerRepository.addToEntry(refereeId, period, role, matches, amount, now) > 0) {
+            return;
+        }
+        jdbcTemplate.update("""
+            INSERT INTO settlement_ledger (referee_id, period, role, matches, amount, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """, refereeId, period, role.name(), matches, amount, Timestamp.valueOf(now));
+    }
+
+    private static String period(CompletedCounts counts) {
+        return YearMonth.from(counts.getMatchDay()).toString();
+    }
+
+    private static String key(Long refereeId, String period, MatchAssignment.RefereeRole role) {
+        return refereeId + "/" + period + "/" + role;
+    }
+}
@@ -0,0 +1,305 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.SettlementRunChunk;
+import com.basketball.referee.model.SettlementRunRecord;
+import com.basketball.referee.repository.RefereeRepository;
+import com.basketball.referee.repository.SettlementRunRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Month-end settlement run. Active referees are split into chunks that are
+ * priced concurrently on virtual threads; each chunk recomputes its ledger rows
+ * in its own transaction, and at most {@code dbConcurrency} chunks hold a
+ * connection at the same time. Runs and the state of every chunk are stored,
+ * and a chunk is marked done in the same transaction that rewrites its ledger
+ * rows, so after a restart a run can be retried from where it stopped.
+ */
+@Service
+public class SettlementRunService {
+
+    private static final Logger log = LoggerFactory.getLogger(SettlementRunService.class);
+
+    @Autowired
+    private RefereeRepository refereeRepository;
+
+    @Autowired
+    private SettlementRunRepository runRepository;
+
+    @Autowired
+    private SettlementLedgerService ledgerService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${settlement.run.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${settlement.run.db-concurrency:4}")
+    private int dbConcurrency;
+
+    // Runs started or retried since startup; older ones are read from the database
+    private final Map<String, SettlementRun> runs = new ConcurrentHashMap<>();
+
+    // Chunks still pending when the application stopped never finished, so they are marked failed for a retry
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterrupted() {
+        Integer interrupted = transactionTemplate.execute(status -> {
+            int chunks = runRepository.failInterruptedChunks("Interrumpido por un reinicio", LocalDateTime.now());
+            runRepository.stopInterruptedRuns();
+            return chunks;
+        });
+        if (interrupted != null && interrupted > 0) {
+            log.warn("{} chunks de liquidación quedaron interrumpidos por un reinicio y pueden reintentarse", interrupted);
+        }
+    }
+
+    /**
+     * Starts a run for the month. Only one run per month may be going at a
+     * time, since two runs would rewrite the same ledger rows.
+     */
+    public synchronized SettlementRun start(YearMonth yearMonth) {
+        if (runs.values().stream().anyMatch(r -> r.isRunning() && r.getYearMonth().equals(yearMonth))) {
+            throw new RuntimeException("Ya hay una liquidación en curso para " + yearMonth);
+        }
+        List<Long> refereeIds = refereeRepository.findActiveIds();
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < refereeIds.size(); i += chunkSize) {
+            chunks.add(List.copyOf(refereeIds.subList(i, Math.min(i + chunkSize, refereeIds.size()))));
+        }
+
+        SettlementRun run = new SettlementRun(UUID.randomUUID().toString(), yearMonth, chunks, LocalDateTime.now());
+        SettlementRunRecord record = new SettlementRunRecord(run.getId(), yearMonth.toString(), run.getStartedAt());
+        for (int i = 0; i < chunks.size(); i++) {
+            record.addChunk(new SettlementRunChunk(i, chunks.get(i)));
+        }
+        runRepository.save(record);
+        runs.put(run.getId(), run);
+        execute(run);
+        return run;
+    }
+
+    /**
+     * Runs the failed chunks of a finished run again. Chunks that already
+     * committed are left alone.
+     */
+    public synchronized SettlementRun retry(String runId) {
+        SettlementRun run = findById(runId)
+            .orElseThrow(() -> new RuntimeException("Ejecución no encontrada"));
+        if (run.isRunning()) {
+            throw new RuntimeException("La ejecución todavía está en curso");
+        }
+        if (runs.values().stream().anyMatch(r -> r.isRunning() && r.getYearMonth().equals(run.getYearMonth()))) {
+            throw new RuntimeException("Ya hay una liquidación en curso para " + run.getYearMonth());
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            runRepository.resetFailedChunks(runId, LocalDateTime.now());
+            runRepository.updateRun(runId, true, run.getElapsed().toMillis());
+        });
+        runs.put(run.getId(), run);
+        execute(run);
+        return run;
+    }
+
+    public Optional<SettlementRun> findById(String runId) {
+        SettlementRun live = runs.get(runId);
+        if (live != null) {
+            return Optional.of(live);
+        }
+        return runRepository.findWithChunks(runId).map(SettlementRun::from);
+    }
+
+    public List<SettlementRun> findAll() {
+        List<SettlementRun> all = new ArrayList<>();
+        for (SettlementRunRecord record : runRepository.findAllWithChunks()) {
+            SettlementRun live = runs.get(record.getId());
+            all.add(live != null ? live : SettlementRun.from(record));
+        }
+        all.sort(Comparator.comparing(SettlementRun::getStartedAt).reversed());
+        return all;
+    }
+
+    private void execute(SettlementRun run) {
+        List<Integer> pending = run.pendingChunks();
+        run.begin();
+        Thread.ofVirtual().name("settlement-run-" + run.getId()).start(() -> {
+            Semaphore connections = new Semaphore(dbConcurrency);
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int index : pending) {
+                    executor.submit(() -> processChunk(run, index, connections));
+                }
+            }
+            run.finish();
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                    runRepository.updateRun(run.getId(), false, run.getElapsed().toMillis()));
+            } catch (Exception e) {
+                log.warn("Settlement run {} could not be marked finished", run.getId(), e);
+            }
+            log.info("Settlement run {} for {} finished: {} referees, {} failed chunks, {} referees/s",
+                run.getId(), run.getYearMonth(), run.getProcessedReferees(), run.getFailedChunks(),
+                String.format("%.1f", run.getThroughput()));
+        });
+    }
+
+    private void processChunk(SettlementRun run, int index, Semaphore connections) {
+        List<Long> chunk = run.chunks.get(index);
+        try {
+            connections.acquire();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    ledgerService.recomputeMonth(chunk, run.getYearMonth());
+                    runRepository.updateChunk(run.getId(), index, SettlementRunChunk.State.DONE, null,
+                        LocalDateTime.now());
+                });
+            } finally {
+                connections.release();
+            }
+            run.chunkCompleted(index, chunk.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            chunkFailed(run, index, "Interrumpido");
+        } catch (Exception e) {
+            log.warn("Settlement run {} chunk {} failed", run.getId(), index, e);
+            chunkFailed(run, index, e.getMessage());
+        }
+    }
+
+    private void chunkFailed(SettlementRun run, int index, String error) {
+        run.chunkFailed(index, error);
+        String stored = run.getErrors().get(index);
+        String truncated = stored.length() > 500 ? stored.substring(0, 500) : stored;
+        try {
+            transactionTemplate.executeWithoutResult(status -> runRepository.updateChunk(run.getId(), index,
+                SettlementRunChunk.State.FAILED, truncated, LocalDateTime.now()));
+        } catch (Exception e) {
+            // The chunk stays pending in the database, which a restart also turns into failed
+            log.warn("Settlement run {} chunk {} could not be marked failed", run.getId(), index, e);
+        }
+    }
+
+    public static class SettlementRun {
+
+        private final String id;
+        private final YearMonth yearMonth;
+        private final List<List<Long>> chunks;
+        private final SettlementRunChunk.State[] chunkStates;
+        private final Map<Integer, String> errors = new ConcurrentHashMap<>();
+        private final AtomicInteger processedReferees = new AtomicInteger();
+        private final LocalDateTime startedAt;
+        private volatile long attemptStartNanos;
+        private volatile long elapsedNanos;
+        private volatile boolean running;
+
+        SettlementRun(String id, YearMonth yearMonth, List<List<Long>> chunks, LocalDateTime startedAt) {
+            this.id = id;
+            this.yearMonth = yearMonth;
+            this.chunks = chunks;
+            this.startedAt = startedAt;
+            this.chunkStates = new SettlementRunChunk.State[chunks.size()];
+            Arrays.fill(chunkStates, SettlementRunChunk.State.PENDING);
+        }
+
+        // A stored run as it was left; chunks come ordered by index
+        static SettlementRun from(SettlementRunRecord record) {
+            List<List<Long>> chunks = record.getChunks().stream().map(SettlementRunChunk::getRefereeIds).toList();
+            SettlementRun run = new SettlementRun(record.getId(), YearMonth.parse(record.getPeriod()), chunks,
+                record.getStartedAt());
+            for (SettlementRunChunk chunk : record.getChunks()) {
+                run.chunkStates[chunk.getChunkIndex()] = chunk.getState();
+                if (chunk.getState() == SettlementRunChunk.State.DONE) {
+                    run.processedReferees.addAndGet(chunk.getRefereeIds().size());
+                } else if (chunk.getState() == SettlementRunChunk.State.FAILED) {
+                    run.errors.put(chunk.getChunkIndex(), chunk.getError() != null ? chunk.getError() : "Error desconocido");
+                }
+            }
+            run.elapsedNanos = Duration.ofMillis(record.getElapsedMillis()).toNanos();
+            run.running = record.isRunning();
+            return run;
+        }
+
+        synchronized List<Integer> pendingChunks() {
+            List<Integer> pending = new ArrayList<>();
+            for (int i = 0; i < chunkStates.length; i++) {
+                if (chunkStates[i] != SettlementRunChunk.State.DONE) {
+                    pending.add(i);
+                }
+            }
+            return pending;
+        }
+
+        synchronized void begin() {
+            for (int i = 0; i < chunkStates.length; i++) {
+                if (chunkStates[i] == SettlementRunChunk.State.FAILED) {
+                    chunkStates[i] = SettlementRunChunk.State.PENDING;
+                }
+            }
+            errors.clear();
+            running = true;
+            attemptStartNanos = System.nanoTime();
+        }
+
+        synchronized void chunkCompleted(int index, int referees) {
+            chunkStates[index] = SettlementRunChunk.State.DONE;
+            processedReferees.addAndGet(referees);
+        }
+
+        synchronized void chunkFailed(int index, String error) {
+            chunkStates[index] = SettlementRunChunk.State.FAILED;
+            errors.put(index, error != null ? error : "Error desconocido");
+        }
+
+        void finish() {
+            elapsedNanos += System.nanoTime() - attemptStartNanos;
+            running = false;
+        }
+
+        private synchronized int count(SettlementRunChunk.State state) {
+            int n = 0;
+            for (SettlementRunChunk.State s : chunkStates) {
+                if (s == state) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        public String getId() { return id; }
+        public YearMonth getYearMonth() { return yearMonth; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public boolean isRunning() { return running; }
+        public int getTotalChunks() { return chunks.size(); }
+        public int getCompletedChunks() { return count(SettlementRunChunk.State.DONE); }
+        public int getFailedChunks() { return count(SettlementRunChunk.State.FAILED); }
+        public int getTotalReferees() { return chunks.stream().mapToInt(List::size).sum(); }
+        public int getProcessedReferees() { return processedReferees.get(); }
+        public Map<Integer, String> getErrors() { return new TreeMap<>(errors); }
+
+        public Duration getElapsed() {
+            long nanos = elapsedNanos + (running ? System.nanoTime() - attemptStartNanos : 0);
+            return Duration.ofNanos(nanos);
+        }
+
+        // Referees per second over the time spent running
+        public double getThroughput() {
+            long millis = getElapsed().toMillis();
+            return millis == 0 ? 0 : processedReferees.get() * 1000.0 / millis;
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package com.basketball.referee.service;
 
 import com.basketball.referee.model.*;
+import com.basketball.referee.repository.SettlementLedgerRepository;
+import com.basketball.referee.repository.SettlementLedgerRepository.RoleTotals;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -21,49 +24,151 @@ public class SettlementService {
     @Autowired
     private FeeService feeService;
 
+    @Autowired
+    private SettlementLedgerService ledgerService;
+
+    @Autowired
+    private SettlementLedgerRepository ledgerRepository;
+
+    @Autowired
+    private SettlementSnapshotService snapshotService;
+
+    /**
+     * Totals of one referee's month for the settlement page. An open month is
+     * read from the referee's ledger rows alone, a closed one from its
+     * snapshot; the priced matches of an open month are left out.
+     */
     public SettlementData calculateSettlement(Long refereeId, YearMonth yearMonth) {
-        List<MatchAssignment> assignments = assignmentService.findByRefereeAndMonth(refereeId, yearMonth);
-        
-        // Filter only completed assignments
-        List<MatchAssignment> completedAssignments = assignments.stream()
-            .filter(a -> a.getState() == MatchAssignment.AssignmentState.COMPLETED)
-            .collect(Collectors.toList());
+        return calculateSettlement(refereeId, yearMonth, false);
+    }
+
+    /**
+     * With {@code withLines}, an open month also lists its completed matches,
+     * priced as the ledger prices them, and the totals are added up from those
+     * lines, as they are for a snapshot, so the list and the totals always
+     * agree.
+     */
+    public SettlementData calculateSettlement(Long refereeId, YearMonth yearMonth, boolean withLines) {
+        if (snapshotService.isClosed(yearMonth)) {
+            return fromSnapshot(refereeId, yearMonth);
+        }
 
         SettlementData settlement = new SettlementData();
         settlement.setRefereeId(refereeId);
         settlement.setYearMonth(yearMonth);
-        settlement.setAssignments(completedAssignments);
 
-        BigDecimal totalAmount = BigDecimal.ZERO;
-        Map<String, Integer> matchesByRole = new HashMap<>();
-        Map<String, BigDecimal> amountsByRole = new HashMap<>();
+        RoleAmounts totals;
+        if (withLines) {
+            List<MatchAssignment> completedAssignments = assignmentService.findCompletedByRefereeAndMonth(refereeId, yearMonth);
+            List<SettlementLine> lines = completedAssignments.stream()
+                .map(a -> new SettlementLine(a.getMatch().getDateHour(), a.getMatch().getTournament().getName(),
+                    a.getRole(), feeService.calculatePayment(a)))
+                .collect(Collectors.toList());
+            settlement.setAssignments(completedAssignments);
+            settlement.setLines(lines);
+            settlement.setLinesLoaded(true);
+            totals = groupByRole(lines);
+        } else {
+            settlement.setAssignments(Collections.emptyList());
+            settlement.setLines(Collections.emptyList());
+            // Totals come from the ledger, which is kept current as assignments complete and fees change
+            totals = new RoleAmounts();
+            for (SettlementLedgerEntry entry : ledgerService.findByRefereeAndMonth(refereeId, yearMonth)) {
+                if (entry.getMatches() != 0) {
+                    totals.add(entry.getRole(), entry.getMatches(), entry.getAmount());
+                }
+            }
+        }
 
-        for (MatchAssignment assignment : completedAssignments) {
-            BigDecimal payment = feeService.calculatePayment(assignment);
-            totalAmount = totalAmount.add(payment);
+        settlement.setTotalAmount(totals.getTotalAmount());
+        settlement.setMatchesByRole(totals.getMatchesByRole());
+        settlement.setAmountsByRole(totals.getAmountsByRole());
+        settlement.setTotalMatches(totals.getTotalMatches());
 
-            String role = assignment.getRole().getDisplayName();
-            matchesByRole.put(role, matchesByRole.getOrDefault(role, 0) + 1);
-            amountsByRole.put(role, amountsByRole.getOrDefault(role, BigDecimal.ZERO).add(payment));
-        }
+        return settlement;
+    }
+
+    private SettlementData fromSnapshot(Long refereeId, YearMonth yearMonth) {
+        SettlementData settlement = new SettlementData();
+        settlement.setRefereeId(refereeId);
+        settlement.setYearMonth(yearMonth);
+        settlement.setClosed(true);
+        settlement.setLinesLoaded(true);
+        settlement.setAssignments(Collections.emptyList());
 
-        settlement.setTotalAmount(totalAmount);
-        settlement.setMatchesByRole(matchesByRole);
-        settlement.setAmountsByRole(amountsByRole);
-        settlement.setTotalMatches(completedAssignments.size());
+        List<SettlementLine> lines = snapshotService.findSnapshot(refereeId, yearMonth)
+            .map(snapshot -> snapshot.getLines().stream()
+                .map(SettlementService::toLine)
+                .collect(Collectors.toList()))
+            .orElse(Collections.emptyList());
+        settlement.setLines(lines);
 
+        RoleAmounts totals = groupByRole(lines);
+        settlement.setTotalAmount(totals.getTotalAmount());
+        settlement.setMatchesByRole(totals.getMatchesByRole());
+        settlement.setAmountsByRole(totals.getAmountsByRole());
+        settlement.setTotalMatches(totals.getTotalMatches());
         return settlement;
     }
 
+    private static SettlementLine toLine(SettlementSnapshotLine line) {
+        return new SettlementLine(line.getMatchDate(), line.getTournamentName(), line.getRole(), line.getAmount());
+    }
+
+    private static RoleAmounts groupByRole(List<SettlementLine> lines) {
+        RoleAmounts totals = new RoleAmounts();
+        for (SettlementLine line : lines) {
+            totals.add(line.getRole(), 1, line.getAmount());
+        }
+        return totals;
+    }
+
     public List<SettlementSummary> generateMonthlySummary(YearMonth yearMonth) {
-        // This would typically be implemented with a custom repository query
-        // For now, we'll use a simplified approach
-        List<SettlementSummary> summaries = new ArrayList<>();
-        
-        // This is a placeholder - in a real implementation, you'd query all referees
-        // and calculate their liquidations
-        
-        return summaries;
+        if (snapshotService.isClosed(yearMonth)) {
+            List<SettlementSummary> summaries = new ArrayList<>();
+            for (SettlementSnapshot snapshot : snapshotService.findSnapshots(yearMonth)) {
+                SettlementSummary summary = new SettlementSummary();
+                summary.setRefereeId(snapshot.getRefereeId());
+                summary.setRefereeName(snapshot.getRefereeName());
+                summary.setTotalMatches(snapshot.getTotalMatches());
+                summary.setTotalAmount(snapshot.getTotalAmount());
+                RoleAmounts totals = new RoleAmounts();
+                for (SettlementSnapshotLine line : snapshot.getLines()) {
+                    totals.add(line.getRole(), 1, line.getAmount());
+                }
+                summary.setMatchesByRole(totals.getMatchesByRole());
+                summary.setAmountsByRole(totals.getAmountsByRole());
+                summaries.add(summary);
+            }
+            summaries.sort(Comparator.comparing(SettlementSummary::getRefereeName,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+            return summaries;
+        }
+
+        // Rows come from the ledger, which prices each match with the fee version in force that day.
+        // They arrive ordered by referee; role totals are converted to BigDecimal once per referee
+        Map<Long, SettlementSummary> summaries = new LinkedHashMap<>();
+        Map<Long, RoleAmounts> totalsByReferee = new HashMap<>();
+        for (RoleTotals row : ledgerRepository.summarizeByPeriod(yearMonth.toString())) {
+            summaries.computeIfAbsent(row.getRefereeId(), id -> {
+                SettlementSummary s = new SettlementSummary();
+                s.setRefereeId(id);
+                s.setRefereeName(row.getFirstName() + " " + row.getLastName());
+                return s;
+            });
+            totalsByReferee.computeIfAbsent(row.getRefereeId(), id -> new RoleAmounts())
+                .add(row.getRole(), row.getMatches().intValue(), row.getAmount());
+        }
+
+        for (SettlementSummary summary : summaries.values()) {
+            RoleAmounts totals = totalsByReferee.get(summary.getRefereeId());
+            summary.setTotalMatches(totals.getTotalMatches());
+            summary.setTotalAmount(totals.getTotalAmount());
+            summary.setMatchesByRole(totals.getMatchesByRole());
+            summary.setAmountsByRole(totals.getAmountsByRole());
+        }
+
+        return new ArrayList<>(summaries.values());
     }
 
     // Inner classes for data transfer
@@ -75,6 +180,9 @@ public class SettlementService {
         private Map<String, Integer> matchesByRole;
         private Map<String, BigDecimal> amountsByRole;
         private int totalMatches;
+        private List<SettlementLine> lines;
+        private boolean linesLoaded;
+        private boolean closed;
 
         // Getters and setters
         public Long getRefereeId() { return refereeId; }
@@ -97,6 +205,37 @@ public class SettlementService {
         
         public int getTotalMatches() { return totalMatches; }
         public void setTotalMatches(int totalMatches) { this.totalMatches = totalMatches; }
+
+        public List<SettlementLine> getLines() { return lines; }
+        public void setLines(List<SettlementLine> lines) { this.lines = lines; }
+
+        // False when only the totals were read; the lines are then empty
+        public boolean isLinesLoaded() { return linesLoaded; }
+        public void setLinesLoaded(boolean linesLoaded) { this.linesLoaded = linesLoaded; }
+
+        public boolean isClosed() { return closed; }
+        public void setClosed(boolean closed) { this.closed = closed; }
+    }
+
+    // One priced completed assignment, either live or frozen in a snapshot
+    public static class SettlementLine {
+        private final LocalDateTime matchDate;
+        private final String tournamentName;
+        private final MatchAssignment.RefereeRole role;
+        private final BigDecimal amount;
+
+        public SettlementLine(LocalDateTime matchDate, String tournamentName,
+                              MatchAssignment.RefereeRole role, BigDecimal amount) {
+            this.matchDate = matchDate;
+            this.tournamentName = tournamentName;
+            this.role = role;
+            this.amount = amount;
+        }
+
+        public LocalDateTime getMatchDate() { return matchDate; }
+        public String getTournamentName() { return tournamentName; }
+        public MatchAssignment.RefereeRole getRole() { return role; }
+        public BigDecimal getAmount() { return amount; }
     }
 
     public static class SettlementSummary {
@@ -104,6 +243,8 @@ public class SettlementService {
         private String refereeName;
         private int totalMatches;
         private BigDecimal totalAmount;
+        private Map<String, Integer> matchesByRole;
+        private Map<String, BigDecimal> amountsByRole;
 
         // Getters and setters
         public Long getRefereeId() { return refereeId; }
@@ -117,5 +258,11 @@ public class SettlementService {
         
         public BigDecimal getTotalAmount() { return totalAmount; }
         public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
+
+        public Map<String, Integer> getMatchesByRole() { return matchesByRole; }
+        public void setMatchesByRole(Map<String, Integer> matchesByRole) { this.matchesByRole = matchesByRole; }
+
+        public Map<String, BigDecimal> getAmountsByRole() { return amountsByRole; }
+        public void setAmountsByRole(Map<String, BigDecimal> amountsByRole) { this.amountsByRole = amountsByRole; }
     }
 }
@@ -0,0 +1,117 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.ClosedPeriod;
+import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.model.SettlementSnapshot;
+import com.basketball.referee.model.SettlementSnapshotLine;
+import com.basketball.referee.repository.ClosedPeriodRepository;
+import com.basketball.referee.repository.MatchAssignmentRepository;
+import com.basketball.referee.repository.RefereeRepository;
+import com.basketball.referee.repository.SettlementSnapshotRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Freezes the settlements of a month once it is paid. Closed months are read
+ * from the snapshot tables and never priced again, so later fee edits do not
+ * change them.
+ */
+@Service
+@Transactional
+public class SettlementSnapshotService {
+
+    @Autowired
+    private ClosedPeriodRepository closedPeriodRepository;
+
+    @Autowired
+    private SettlementSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private MatchAssignmentRepository assignmentRepository;
+
+    @Autowired
+    private RefereeRepository refereeRepository;
+
+    @Autowired
+    private FeeService feeService;
+
+    @Autowired
+    private FinancialRollupService rollupService;
+
+    @Transactional(readOnly = true)
+    public boolean isClosed(YearMonth yearMonth) {
+        return closedPeriodRepository.existsById(yearMonth.toString());
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<SettlementSnapshot> findSnapshot(Long refereeId, YearMonth yearMonth) {
+        return snapshotRepository.findWithLines(refereeId, yearMonth.toString());
+    }
+
+    @Transactional(readOnly = true)
+    public List<SettlementSnapshot> findSnapshots(YearMonth yearMonth) {
+        return snapshotRepository.findByPeriodWithLines(yearMonth.toString());
+    }
+
+    @Transactional(readOnly = true)
+    public List<ClosedPeriod> findClosedPeriods() {
+        return closedPeriodRepository.findAll();
+    }
+
+    /**
+     * Prices every completed assignment of the month one last time and stores
+     * the result. Returns the number of referee snapshots written. Holds
+     * every referee lock while it does, so ledger changes to the month either
+     * commit first and are included or wait and are then rejected.
+     */
+    public int closeMonth(YearMonth yearMonth, String closedBy) {
+        if (!yearMonth.isBefore(YearMonth.now())) {
+            throw new RuntimeException("Solo se pueden cerrar meses anteriores al actual");
+        }
+        refereeRepository.lockAll();
+        if (isClosed(yearMonth)) {
+            throw new RuntimeException("El mes " + yearMonth + " ya está cerrado");
+        }
+
+        LocalDateTime startOfMonth = yearMonth.atDay(1).atStartOfDay();
+        LocalDateTime endOfMonth = yearMonth.atEndOfMonth().atTime(23, 59, 59);
+        List<MatchAssignment> assignments = assignmentRepository.findCompletedByDateRange(startOfMonth, endOfMonth);
+
+        Map<Long, SettlementSnapshot> snapshots = new LinkedHashMap<>();
+        for (MatchAssignment assignment : assignments) {
+            SettlementSnapshot snapshot = snapshots.computeIfAbsent(assignment.getReferee().getId(),
+                id -> new SettlementSnapshot(id, assignment.getReferee().getUser().getFullName(), yearMonth.toString()));
+            BigDecimal amount = feeService.calculatePayment(assignment);
+            snapshot.addLine(new SettlementSnapshotLine(
+                assignment.getId(),
+                assignment.getMatch().getDateHour(),
+                assignment.getMatch().getTournament().getId(),
+                assignment.getMatch().getTournament().getName(),
+                assignment.getReferee().getRank(),
+                assignment.getRole(),
+                amount));
+        }
+
+        for (SettlementSnapshot snapshot : snapshots.values()) {
+            snapshot.setTotalMatches(snapshot.getLines().size());
+            snapshot.setTotalAmount(snapshot.getLines().stream()
+                .map(SettlementSnapshotLine::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add));
+        }
+
+        snapshotRepository.saveAll(snapshots.values());
+        closedPeriodRepository.save(new ClosedPeriod(yearMonth.toString(), closedBy));
+        // The dashboard reads the month from these snapshots from now on
+        rollupService.invalidate();
+        return snapshots.size();
+    }
+}
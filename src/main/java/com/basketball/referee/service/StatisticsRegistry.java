@@ -0,0 +1,245 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.Match;
+import com.basketball.referee.model.MatchAssignment;
+import com.basketball.referee.repository.CourtRepository;
+import com.basketball.referee.repository.MatchAssignmentRepository;
+import com.basketball.referee.repository.MatchRepository;
+import com.basketball.referee.repository.RefereeRepository;
+import com.basketball.referee.repository.TournamentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dashboard counters kept in memory: assignments and matches per state, plus
+ * active referees, tournaments and courts. They are seeded at startup with
+ * one GROUP BY per table. After that the services report every transition,
+ * applied once the transaction commits, so reading them costs no query.
+ * Writes whose effect is not known row by row (bulk cancellations,
+ * deletes that cascade, generic saves) mark the counters stale, and the
+ * next read reloads them. A periodic reconciliation compares them with the
+ * database and logs and corrects any drift. Both reads go through a
+ * {@link TransactionHooks.CommitFence}: a read that a transition crossed is
+ * neither trusted nor reported as drift.
+ */
+@Service
+public class StatisticsRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(StatisticsRegistry.class);
+
+    public enum Counter { REFEREES, TOURNAMENTS, COURTS }
+
+    @Autowired
+    private MatchAssignmentRepository assignmentRepository;
+
+    @Autowired
+    private MatchRepository matchRepository;
+
+    @Autowired
+    private RefereeRepository refereeRepository;
+
+    @Autowired
+    private TournamentRepository tournamentRepository;
+
+    @Autowired
+    private CourtRepository courtRepository;
+
+    private final Map<MatchAssignment.AssignmentState, AtomicLong> assignments =
+        new EnumMap<>(MatchAssignment.AssignmentState.class);
+    private final Map<Match.MatchState, AtomicLong> matches = new EnumMap<>(Match.MatchState.class);
+    private final Map<Counter, AtomicLong> active = new EnumMap<>(Counter.class);
+
+    private final TransactionHooks.CommitFence fence = new TransactionHooks.CommitFence();
+    private volatile boolean stale = true;
+
+    public StatisticsRegistry() {
+        for (MatchAssignment.AssignmentState state : MatchAssignment.AssignmentState.values()) {
+            assignments.put(state, new AtomicLong());
+        }
+        for (Match.MatchState state : Match.MatchState.values()) {
+            matches.put(state, new AtomicLong());
+        }
+        for (Counter counter : Counter.values()) {
+            active.put(counter, new AtomicLong());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void seed() {
+        reload();
+    }
+
+    public long countAssignments(MatchAssignment.AssignmentState state) {
+        ensureLoaded();
+        return assignments.get(state).get();
+    }
+
+    public long countMatches(Match.MatchState state) {
+        ensureLoaded();
+        return matches.get(state).get();
+    }
+
+    public long countActive(Counter counter) {
+        ensureLoaded();
+        return active.get(counter).get();
+    }
+
+    /** An assignment moved between states; {@code from} is null on insert, {@code to} on delete. */
+    public void assignmentStateChanged(MatchAssignment.AssignmentState from, MatchAssignment.AssignmentState to) {
+        assignmentsMoved(from, to, 1);
+    }
+
+    public void assignmentsMoved(MatchAssignment.AssignmentState from, MatchAssignment.AssignmentState to, long count) {
+        if (from == to || count == 0) {
+            return;
+        }
+        fence.afterCommit(() -> {
+            if (from != null) {
+                assignments.get(from).addAndGet(-count);
+            }
+            if (to != null) {
+                assignments.get(to).addAndGet(count);
+            }
+        });
+    }
+
+    /** A match moved between states; {@code from} is null on insert, {@code to} on delete. */
+    public void matchStateChanged(Match.MatchState from, Match.MatchState to) {
+        matchesMoved(from, to, 1);
+    }
+
+    public void matchesMoved(Match.MatchState from, Match.MatchState to, long count) {
+        if (from == to || count == 0) {
+            return;
+        }
+        fence.afterCommit(() -> {
+            if (from != null) {
+                matches.get(from).addAndGet(-count);
+            }
+            if (to != null) {
+                matches.get(to).addAndGet(count);
+            }
+        });
+    }
+
+    /** A referee, tournament or court was created, toggled or deleted. */
+    public void activeChanged(Counter counter, boolean wasActive, boolean isActive) {
+        if (wasActive != isActive) {
+            fence.afterCommit(() -> active.get(counter).addAndGet(isActive ? 1 : -1));
+        }
+    }
+
+    /**
+     * For writes whose per-row effect is unknown, such as deletes that
+     * cascade to matches and assignments; the counters are reloaded on next
+     * read.
+     */
+    public void invalidate() {
+        fence.afterCommit(() -> stale = true);
+    }
+
+    /**
+     * Recounts from the database and corrects any counter that drifted,
+     * logging the difference. If a transition committed while the counts
+     * were read, they cannot be compared and the run is skipped.
+     */
+    @Scheduled(fixedDelayString = "${stats.reconcile-interval-ms:600000}",
+               initialDelayString = "${stats.reconcile-interval-ms:600000}")
+    @Transactional(readOnly = true)
+    public synchronized void reconcile() {
+        if (stale) {
+            reload();
+            return;
+        }
+        long token = fence.open();
+        Snapshot fresh = Snapshot.read(this);
+        if (!fence.isClean(token)) {
+            log.debug("Conciliación de estadísticas omitida: hubo cambios durante la lectura");
+            return;
+        }
+        List<String> drift = new ArrayList<>();
+        correct(assignments, fresh.assignments, "asignaciones", drift);
+        correct(matches, fresh.matches, "matches", drift);
+        correct(active, fresh.active, "activos", drift);
+        if (!fence.isClean(token)) {
+            // A transition landed while the counters were being corrected and may have been overwritten
+            stale = true;
+        } else if (!drift.isEmpty()) {
+            drift.forEach(log::warn);
+            log.warn("Estadísticas del dashboard corregidas: {} contadores no coincidían con la base", drift.size());
+        }
+    }
+
+    private void ensureLoaded() {
+        if (stale) {
+            reload();
+        }
+    }
+
+    /**
+     * Concurrent readers that found the counters stale wait here, and only
+     * the first one reloads. A transition committing during the reload may
+     * be in the counts and also arrive as a delta, or be overwritten, so the
+     * counters then stay stale and the next read loads them again.
+     */
+    private synchronized void reload() {
+        if (!stale) {
+            return;
+        }
+        long token = fence.open();
+        Snapshot fresh = Snapshot.read(this);
+        fresh.assignments.forEach((state, count) -> assignments.get(state).set(count));
+        fresh.matches.forEach((state, count) -> matches.get(state).set(count));
+        fresh.active.forEach((counter, count) -> active.get(counter).set(count));
+        stale = !fence.isClean(token);
+    }
+
+    private static <K> void correct(Map<K, AtomicLong> counters, Map<K, Long> fresh, String group, List<String> drift) {
+        for (Map.Entry<K, Long> e : fresh.entrySet()) {
+            long previous = counters.get(e.getKey()).getAndSet(e.getValue());
+            if (previous != e.getValue()) {
+                drift.add("Contador de " + group + " " + e.getKey() + ": " + previous + " en memoria, "
+                    + e.getValue() + " en la base");
+            }
+        }
+    }
+
+    // Counts read from the database in one pass
+    private static final class Snapshot {
+        private final Map<MatchAssignment.AssignmentState, Long> assignments =
+            new EnumMap<>(MatchAssignment.AssignmentState.class);
+        private final Map<Match.MatchState, Long> matches = new EnumMap<>(Match.MatchState.class);
+        private final Map<Counter, Long> active = new EnumMap<>(Counter.class);
+
+        static Snapshot read(StatisticsRegistry registry) {
+            Snapshot snapshot = new Snapshot();
+            for (MatchAssignment.AssignmentState state : MatchAssignment.AssignmentState.values()) {
+                snapshot.assignments.put(state, 0L);
+            }
+            for (Match.MatchState state : Match.MatchState.values()) {
+                snapshot.matches.put(state, 0L);
+            }
+            registry.assignmentRepository.countGroupedByState()
+                .forEach(row -> snapshot.assignments.put(row.getState(), row.getTotal()));
+            registry.matchRepository.countGroupedByState()
+                .forEach(row -> snapshot.matches.put(row.getState(), row.getTotal()));
+            snapshot.active.put(Counter.REFEREES, registry.refereeRepository.countByActiveTrue());
+            snapshot.active.put(Counter.TOURNAMENTS, registry.tournamentRepository.countByActiveTrue());
+            snapshot.active.put(Counter.COURTS, registry.courtRepository.countByActiveTrue());
+            return snapshot;
+        }
+    }
+}
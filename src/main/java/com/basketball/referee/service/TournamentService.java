@@ -18,6 +18,12 @@ public class TournamentService {
     @Autowired
     private TournamentRepository tournamentRepository;
 
+    @Autowired
+    private MatchCalendarService calendarService;
+
+    @Autowired
+    private StatisticsRegistry statistics;
+
     public List<Tournament> findAll() {
         return tournamentRepository.findAll();
     }
@@ -51,11 +57,13 @@ public class TournamentService {
     }
 
     public Tournament save(Tournament tournament) {
+        statistics.invalidate();
         return tournamentRepository.save(tournament);
     }
 
     public Tournament create(Tournament tournament) {
         tournament.setActive(true);
+        statistics.activeChanged(StatisticsRegistry.Counter.TOURNAMENTS, false, true);
         tournament.setState(tournament.getState());
         return tournamentRepository.save(tournament);
     }
@@ -69,6 +77,8 @@ public class TournamentService {
             tournament.setStartDate(tournamentDetails.getStartDate());
             tournament.setEndDate(tournamentDetails.getEndDate());
             tournament.setState(tournamentDetails.getState());
+            tournament.setRequiredRank(tournamentDetails.getRequiredRank());
+            calendarService.evictAll();
             return tournamentRepository.save(tournament);
         }
         throw new RuntimeException("Tournament no encontrado");
@@ -80,6 +90,7 @@ public class TournamentService {
             Tournament tournament = tournamentOpt.get();
             tournament.setActive(!tournament.isActive());
             tournamentRepository.save(tournament);
+            statistics.activeChanged(StatisticsRegistry.Counter.TOURNAMENTS, !tournament.isActive(), tournament.isActive());
         }
     }
 
@@ -98,10 +109,11 @@ public class TournamentService {
 
     public void deleteById(Long id) {
         tournamentRepository.deleteById(id);
+        statistics.invalidate();
     }
 
     public long countActive() {
-        return tournamentRepository.findByActiveTrue().size();
+        return statistics.countActive(StatisticsRegistry.Counter.TOURNAMENTS);
     }
 
     public long countByState(Tournament.TournamentState state) {
@@ -0,0 +1,107 @@
+package com.basketball.referee.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Callbacks tied to the outcome of the current transaction, shared by the
+ * in-memory caches and counters. Outside a transaction every callback runs
+ * immediately.
+ */
+final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    /** Runs {@code action} once the current transaction commits; never on rollback. */
+    static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /** Runs {@code action} once the current transaction ends, whether it committed or rolled back. */
+    static void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Lets a cache loaded from the database tell whether deltas applied after
+     * commit may overlap what it read. There is a gap between a transaction's
+     * database commit and its after-commit callback: a load in that gap
+     * already sees the change, and the delta then arrives on top of it. The
+     * fence counts the transactions inside that gap and bumps a generation
+     * each time one enters it, so a load can check afterwards that none
+     * crossed it.
+     */
+    static final class CommitFence {
+
+        private final AtomicInteger committing = new AtomicInteger();
+        private final AtomicLong generation = new AtomicLong();
+
+        /** Like {@link TransactionHooks#afterCommit}, with the commit tracked by this fence. */
+        void afterCommit(Runnable action) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                generation.incrementAndGet();
+                action.run();
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private boolean entered;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    committing.incrementAndGet();
+                    generation.incrementAndGet();
+                    entered = true;
+                }
+
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (entered) {
+                        committing.decrementAndGet();
+                    }
+                }
+            });
+        }
+
+        /** Taken before a load; negative when a tracked commit is already under way. */
+        long open() {
+            long current = generation.get();
+            return committing.get() == 0 ? current : -1;
+        }
+
+        /**
+         * True if no tracked transaction started committing since
+         * {@link #open()} and none is still between its commit and its
+         * callbacks, so the load and the deltas do not overlap.
+         */
+        boolean isClean(long token) {
+            return token >= 0 && committing.get() == 0 && generation.get() == token;
+        }
+    }
+}
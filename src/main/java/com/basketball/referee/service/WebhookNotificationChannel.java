@@ -0,0 +1,72 @@
+package com.basketball.referee.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Posts each digest as JSON to {@code notifications.webhook.url}; disabled
+ * while the URL is empty. Any non-2xx answer counts as a failed delivery.
+ */
+@Service
+public class WebhookNotificationChannel implements NotificationChannel {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${notifications.webhook.url:}")
+    private String url;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+
+    @Override
+    public String getName() {
+        return "webhook";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return url != null && !url.isBlank();
+    }
+
+    @Override
+    public void deliver(NotificationDigest digest) throws IOException, InterruptedException {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("refereeId", digest.getRefereeId());
+        payload.put("refereeName", digest.getRefereeName());
+        payload.put("events", digest.getEvents().stream()
+            .map(event -> {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("id", event.getId());
+                item.put("type", event.getEventType().name());
+                item.put("matchId", event.getMatchId());
+                item.put("role", event.getRole().name());
+                item.put("summary", event.getSummary());
+                item.put("createdAt", event.getCreatedAt().toString());
+                return item;
+            })
+            .toList());
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+            .timeout(TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(payload)))
+            .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("El webhook respondió " + response.statusCode());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.Court;
+import com.basketball.referee.model.Match;
+import com.basketball.referee.model.MatchAssignment.RefereeRole;
+import com.basketball.referee.model.Referee;
+import com.basketball.referee.model.Tournament;
+import com.basketball.referee.model.User;
+import com.basketball.referee.repository.MatchAssignmentRepository;
+import com.basketball.referee.repository.MatchRepository;
+import com.basketball.referee.repository.RefereeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks how {@link AssignmentOptimizerService#propose} splits a day into
+ * blocks: only matches played at the same time compete for a referee, and
+ * that {@link AssignmentOptimizerService#apply} checks a proposal again
+ * before storing it.
+ */
+@ExtendWith(MockitoExtension.class)
+class AssignmentOptimizerServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 14);
+    private static final List<RefereeRole> FIRST_ONLY = List.of(RefereeRole.FIRST_REFEREE);
+
+    @Mock
+    private MatchRepository matchRepository;
+
+    @Mock
+    private MatchAssignmentRepository assignmentRepository;
+
+    @Mock
+    private RefereeRepository refereeRepository;
+
+    @Mock
+    private CourtScheduleIndex courtScheduleIndex;
+
+    @Mock
+    private MatchAssignmentService assignmentService;
+
+    @InjectMocks
+    private AssignmentOptimizerService optimizer;
+
+    private final Tournament tournament = new Tournament("Apertura", DAY, DAY);
+    private final Court court = court(1L, "Cancha 1");
+
+    @BeforeEach
+    void setUp() {
+        when(courtScheduleIndex.getDurationMinutes()).thenReturn(120);
+        when(assignmentRepository.findBookingsBetween(any(), any())).thenReturn(List.of());
+    }
+
+    @Test
+    void sameRefereeTakesConsecutiveMatchesOnTheSameCourt() {
+        Referee only = referee(1L);
+        when(refereeRepository.findActiveWithUser()).thenReturn(List.of(only));
+        when(matchRepository.findProgrammedForAssignment(any(), any(), any())).thenReturn(List.of(
+            match(10L, court, 10, 0), match(11L, court, 12, 0)));
+
+        // The travel buffer only applies between courts, so 12:00 on the same court is reachable
+        AssignmentOptimizerService.Proposal proposal = optimizer.propose(DAY, DAY, null, FIRST_ONLY, 30);
+
+        assertEquals(2, proposal.getAssignments().size());
+        assertTrue(proposal.getUnfilled().isEmpty());
+        proposal.getAssignments().forEach(a -> assertEquals(only.getId(), a.getRefereeId()));
+        assertEquals(2, proposal.getMaxLoad());
+    }
+
+    @Test
+    void chainedMatchesDoNotFormOneBlock() {
+        // 10:00 and 11:00 overlap, 11:00 and 12:00 overlap, but 10:00 and 12:00 do not
+        when(refereeRepository.findActiveWithUser()).thenReturn(List.of(referee(1L), referee(2L)));
+        when(matchRepository.findProgrammedForAssignment(any(), any(), any())).thenReturn(List.of(
+            match(10L, court, 10, 0), match(11L, court, 11, 0), match(12L, court, 12, 0)));
+
+        AssignmentOptimizerService.Proposal proposal = optimizer.propose(DAY, DAY, null, FIRST_ONLY, 0);
+
+        assertEquals(3, proposal.getAssignments().size());
+        assertTrue(proposal.getUnfilled().isEmpty());
+        assertEquals(proposal.getAssignments().get(0).getRefereeId(), proposal.getAssignments().get(2).getRefereeId());
+    }
+
+    @Test
+    void travelBufferStillAppliesBetweenBlocks() {
+        Court other = court(2L, "Cancha 2");
+        when(refereeRepository.findActiveWithUser()).thenReturn(List.of(referee(1L)));
+        when(matchRepository.findProgrammedForAssignment(any(), any(), any())).thenReturn(List.of(
+            match(10L, court, 10, 0), match(11L, other, 12, 0)));
+
+        AssignmentOptimizerService.Proposal proposal = optimizer.propose(DAY, DAY, null, FIRST_ONLY, 30);
+
+        assertEquals(1, proposal.getAssignments().size());
+        assertEquals(10L, proposal.getAssignments().get(0).getMatchId());
+        assertEquals(1, proposal.getUnfilled().size());
+        assertEquals(11L, proposal.getUnfilled().get(0).getMatchId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void applyChecksEverySelectionAgain() {
+        Court other = court(2L, "Cancha 2");
+        Referee field = referee(1L);
+        Referee second = referee(2L);
+        when(refereeRepository.lockByIds(any())).thenReturn(List.of(field, second));
+        // Match 11 was finished after the proposal, so it is no longer programmed
+        when(matchRepository.findProgrammedForAssignmentByIds(any())).thenReturn(List.of(
+            match(10L, court, 10, 0), match(12L, other, 12, 0)));
+
+        int created = optimizer.apply(List.of(
+            "10:1:FIRST_REFEREE",
+            "11:1:FIRST_REFEREE",
+            // Cancha 2 at 12:00 is inside the travel buffer after 10:00 on Cancha 1
+            "12:1:FIRST_REFEREE",
+            // A field referee cannot keep the table
+            "12:2:ANNOTATOR",
+            "12:2:SECOND_REFEREE"), 30);
+
+        ArgumentCaptor<List<MatchAssignmentService.NewAssignment>> rows = ArgumentCaptor.forClass(List.class);
+        verify(assignmentService).insertPending(rows.capture());
+        assertEquals(2, created);
+        assertEquals(List.of(
+            new MatchAssignmentService.NewAssignment(10L, 1L, RefereeRole.FIRST_REFEREE),
+            new MatchAssignmentService.NewAssignment(12L, 2L, RefereeRole.SECOND_REFEREE)), rows.getValue());
+    }
+
+    private Match match(Long id, Court court, int hour, int minute) {
+        Match match = new Match();
+        match.setId(id);
+        match.setTournament(tournament);
+        match.setCourt(court);
+        match.setLocalTeam("Local " + id);
+        match.setVisitorTeam("Visitante " + id);
+        match.setDateHour(LocalDateTime.of(DAY, LocalTime.of(hour, minute)));
+        return match;
+    }
+
+    private static Court court(Long id, String name) {
+        Court court = new Court(name, "Calle " + id);
+        court.setId(id);
+        return court;
+    }
+
+    private static Referee referee(Long id) {
+        User user = new User("arbitro" + id, "secret", "arbitro" + id + "@example.com", "Árbitro", String.valueOf(id));
+        Referee referee = new Referee();
+        referee.setId(id);
+        referee.setUser(user);
+        referee.setSpecialty(Referee.Specialty.FIELD);
+        referee.setRank(Referee.Rank.FIRST);
+        return referee;
+    }
+}
@@ -0,0 +1,55 @@
+package com.basketball.referee.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the RFC 2047 encoding of the Subject header.
+ */
+class EmailNotificationChannelTest {
+
+    @Test
+    void leavesAsciiSubjectsAlone() {
+        assertEquals("3 novedades en tus asignaciones",
+            EmailNotificationChannel.encodeHeader("3 novedades en tus asignaciones"));
+    }
+
+    @Test
+    void encodesNonAsciiSubjects() {
+        String subject = "Nueva asignación: Peñarol vs Atlético - 12/10/2025 20:00 - Cancha Ñuñoa";
+
+        String header = EmailNotificationChannel.encodeHeader(subject);
+
+        StringBuilder decoded = new StringBuilder();
+        for (String word : header.split("\r\n ")) {
+            assertTrue(word.startsWith("=?UTF-8?B?") && word.endsWith("?="), word);
+            assertTrue(word.length() <= 75, word);
+            String payload = word.substring("=?UTF-8?B?".length(), word.length() - 2);
+            decoded.append(new String(Base64.getDecoder().decode(payload), StandardCharsets.UTF_8));
+        }
+        assertEquals(subject, decoded.toString());
+    }
+
+    @Test
+    void neverSplitsACharacterAcrossWords() {
+        String subject = "ñ".repeat(40) + "🏀".repeat(20);
+
+        String header = EmailNotificationChannel.encodeHeader(subject);
+
+        StringBuilder decoded = new StringBuilder();
+        for (String word : header.split("\r\n ")) {
+            String payload = word.substring("=?UTF-8?B?".length(), word.length() - 2);
+            // Each word has to decode on its own, so no word may end in the middle of a character
+            String part = new String(Base64.getDecoder().decode(payload), StandardCharsets.UTF_8);
+            assertFalse(part.contains("\uFFFD"), part);
+            decoded.append(part);
+        }
+        assertEquals(subject, decoded.toString());
+    }
+}
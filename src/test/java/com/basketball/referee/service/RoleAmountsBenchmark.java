@@ -0,0 +1,96 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.MatchAssignment.RefereeRole;
+import com.basketball.referee.service.SettlementService.SettlementLine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Role totals for one referee's month, as the settlement summary builds them:
+ * {@link RoleAmounts} against the loop it replaced, which sorted the lines by
+ * role and merged into display-name keyed maps. Run {@link #main} from the IDE
+ * after {@code mvn test-compile}, which generates the JMH harness; it attaches
+ * the GC profiler, so {@code gc.alloc.rate.norm} reports bytes per call next
+ * to the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoleAmountsBenchmark {
+
+    private static final RefereeRole[] ROLES = RefereeRole.values();
+
+    @Param({"6", "60", "600"})
+    private int lines;
+
+    private RefereeRole[] roles;
+    private BigDecimal[] amounts;
+    private List<SettlementLine> settlementLines;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42L);
+        roles = new RefereeRole[lines];
+        amounts = new BigDecimal[lines];
+        settlementLines = new ArrayList<>(lines);
+        LocalDateTime matchDate = LocalDateTime.of(2026, 3, 14, 20, 0);
+        for (int i = 0; i < lines; i++) {
+            roles[i] = ROLES[random.nextInt(ROLES.length)];
+            amounts[i] = BigDecimal.valueOf(random.nextInt(5_000_000), 2);
+            settlementLines.add(new SettlementLine(matchDate, "Apertura", roles[i], amounts[i]));
+        }
+    }
+
+    @Benchmark
+    public void roleAmounts(Blackhole blackhole) {
+        RoleAmounts totals = new RoleAmounts();
+        for (int i = 0; i < lines; i++) {
+            totals.add(roles[i], 1, amounts[i]);
+        }
+        blackhole.consume(totals.getTotalAmount());
+        blackhole.consume(totals.getAmountsByRole());
+        blackhole.consume(totals.getMatchesByRole());
+    }
+
+    @Benchmark
+    public void displayNameMap(Blackhole blackhole) {
+        List<SettlementLine> sorted = new ArrayList<>(settlementLines);
+        sorted.sort(Comparator.comparing(SettlementLine::getRole));
+        Map<String, Integer> matchesByRole = new LinkedHashMap<>();
+        Map<String, BigDecimal> amountsByRole = new LinkedHashMap<>();
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (SettlementLine line : sorted) {
+            String role = line.getRole().getDisplayName();
+            matchesByRole.merge(role, 1, Integer::sum);
+            amountsByRole.merge(role, line.getAmount(), BigDecimal::add);
+            totalAmount = totalAmount.add(line.getAmount());
+        }
+        blackhole.consume(totalAmount);
+        blackhole.consume(amountsByRole);
+        blackhole.consume(matchesByRole);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(RoleAmountsBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
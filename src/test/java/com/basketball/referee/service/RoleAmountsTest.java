@@ -0,0 +1,151 @@
+package com.basketball.referee.service;
+
+import com.basketball.referee.model.MatchAssignment.RefereeRole;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks that {@link RoleAmounts} gives exactly what summing the same amounts
+ * as BigDecimal from {@code BigDecimal.ZERO} gives, value and scale included.
+ */
+class RoleAmountsTest {
+
+    private static final RefereeRole[] ROLES = RefereeRole.values();
+
+    private record Entry(RefereeRole role, int matches, BigDecimal amount) {}
+
+    @Test
+    void emptyTotalsAreZero() {
+        RoleAmounts totals = new RoleAmounts();
+
+        assertEquals(BigDecimal.ZERO, totals.getTotalAmount());
+        assertEquals(0, totals.getTotalMatches());
+        assertEquals(Map.of(), totals.getAmountsByRole());
+        assertEquals(Map.of(), totals.getMatchesByRole());
+    }
+
+    @Test
+    void keepsTheScaleOfTheBigDecimalSum() {
+        assertMatchesBigDecimal(List.of(
+            new Entry(RefereeRole.FIRST_REFEREE, 1, new BigDecimal("1500")),
+            new Entry(RefereeRole.FIRST_REFEREE, 1, new BigDecimal("0.1")),
+            new Entry(RefereeRole.SECOND_REFEREE, 1, new BigDecimal("0.10")),
+            new Entry(RefereeRole.SECOND_REFEREE, 1, new BigDecimal("2.5")),
+            new Entry(RefereeRole.ANNOTATOR, 1, new BigDecimal("1E+3")),
+            new Entry(RefereeRole.TIMEKEEPER, 1, new BigDecimal("0.00"))));
+    }
+
+    @Test
+    void acceptsTrailingZerosBeyondTwoDecimals() {
+        // 1.500 sums to scale 3 as BigDecimal; the cents path must give the same scale back
+        assertMatchesBigDecimal(List.of(
+            new Entry(RefereeRole.FIRST_REFEREE, 1, new BigDecimal("1.500")),
+            new Entry(RefereeRole.FIRST_REFEREE, 1, new BigDecimal("0.25")),
+            new Entry(RefereeRole.THIRD_REFEREE, 1, new BigDecimal("10.0000"))));
+    }
+
+    @Test
+    void rejectsAmountsThatWouldNeedRounding() {
+        RoleAmounts totals = new RoleAmounts();
+
+        assertThrows(ArithmeticException.class,
+            () -> totals.add(RefereeRole.FIRST_REFEREE, 1, new BigDecimal("0.005")));
+        assertThrows(ArithmeticException.class,
+            () -> totals.add(RefereeRole.FIRST_REFEREE, 1, new BigDecimal("1.015")));
+        assertEquals(BigDecimal.ZERO, totals.getTotalAmount());
+    }
+
+    @Test
+    void handlesNegativeDeltas() {
+        // Ledger rows go negative when a fee drops or a match is moved out of the month
+        assertMatchesBigDecimal(List.of(
+            new Entry(RefereeRole.FIRST_REFEREE, 3, new BigDecimal("4500.00")),
+            new Entry(RefereeRole.FIRST_REFEREE, -1, new BigDecimal("-1500.00")),
+            new Entry(RefereeRole.SECOND_REFEREE, 1, new BigDecimal("-0.01")),
+            new Entry(RefereeRole.SECOND_REFEREE, -1, new BigDecimal("0.01")),
+            new Entry(RefereeRole.OPERATOR_24, -2, new BigDecimal("-999.9"))));
+    }
+
+    @Test
+    void handlesLargeSums() {
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            entries.add(new Entry(ROLES[i % ROLES.length], 1, new BigDecimal("99999999999.99")));
+        }
+        assertMatchesBigDecimal(entries);
+    }
+
+    @Test
+    void failsInsteadOfOverflowing() {
+        RoleAmounts totals = new RoleAmounts();
+        BigDecimal nearMax = BigDecimal.valueOf(Long.MAX_VALUE / 2, 2);
+        totals.add(RefereeRole.FIRST_REFEREE, 1, nearMax);
+        totals.add(RefereeRole.FIRST_REFEREE, 1, nearMax);
+
+        assertThrows(ArithmeticException.class, () -> totals.add(RefereeRole.FIRST_REFEREE, 1, nearMax));
+        assertThrows(ArithmeticException.class,
+            () -> new RoleAmounts().add(RefereeRole.FIRST_REFEREE, 1, new BigDecimal(Long.MAX_VALUE).add(BigDecimal.ONE)));
+    }
+
+    @Test
+    void matchesBigDecimalOnRandomAmounts() {
+        Random random = new Random(20240601L);
+        for (int round = 0; round < 200; round++) {
+            List<Entry> entries = new ArrayList<>();
+            int size = random.nextInt(50);
+            for (int i = 0; i < size; i++) {
+                long unscaled = random.nextLong(-10_000_000L, 10_000_000L);
+                int scale = random.nextInt(-1, 3);
+                entries.add(new Entry(ROLES[random.nextInt(ROLES.length)], random.nextInt(-1, 4),
+                    BigDecimal.valueOf(unscaled, scale)));
+            }
+            assertMatchesBigDecimal(entries);
+        }
+    }
+
+    @Test
+    void centsRoundTrip() {
+        assertEquals(150_000L, RoleAmounts.toCents(new BigDecimal("1500")));
+        assertEquals(-1L, RoleAmounts.toCents(new BigDecimal("-0.01")));
+        assertEquals(100_000L, RoleAmounts.toCents(new BigDecimal("1E+3")));
+        assertEquals(new BigDecimal("1500.0"), RoleAmounts.fromCents(150_000L, 1));
+        assertEquals(new BigDecimal("-0.01"), RoleAmounts.fromCents(-1L, 2));
+    }
+
+    private static void assertMatchesBigDecimal(List<Entry> entries) {
+        RoleAmounts totals = new RoleAmounts();
+        Map<String, BigDecimal> expectedAmounts = new LinkedHashMap<>();
+        Map<String, Integer> expectedMatches = new LinkedHashMap<>();
+        for (RefereeRole role : ROLES) {
+            for (Entry entry : entries) {
+                if (entry.role() == role) {
+                    expectedAmounts.merge(role.getDisplayName(), BigDecimal.ZERO.add(entry.amount()), BigDecimal::add);
+                    expectedMatches.merge(role.getDisplayName(), entry.matches(), Integer::sum);
+                }
+            }
+        }
+        BigDecimal expectedTotal = BigDecimal.ZERO;
+        int expectedTotalMatches = 0;
+        for (Entry entry : entries) {
+            totals.add(entry.role(), entry.matches(), entry.amount());
+            expectedTotal = expectedTotal.add(entry.amount());
+            expectedTotalMatches += entry.matches();
+        }
+
+        // assertEquals uses BigDecimal.equals, so the scale has to match as well as the value
+        assertEquals(expectedTotal, totals.getTotalAmount());
+        assertEquals(expectedTotalMatches, totals.getTotalMatches());
+        assertEquals(expectedAmounts, totals.getAmountsByRole());
+        assertEquals(expectedMatches, totals.getMatchesByRole());
+        assertEquals(List.copyOf(expectedAmounts.keySet()), List.copyOf(totals.getAmountsByRole().keySet()));
+    }
+}